@@ -0,0 +1,36 @@
+package com.hoppinzq.red95.benchmark;
+
+import com.hoppinzq.red95.model.Location;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Location 距离计算
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocationBenchmark {
+    private Location a;
+    private Location b;
+
+    @Setup
+    public void setup() {
+        a = new Location(17, 42);
+        b = new Location(93, 8);
+    }
+
+    @Benchmark
+    public int manhattanDistance() {
+        return a.manhattanDistance(b);
+    }
+
+    @Benchmark
+    public double euclideanDistance() {
+        return a.euclideanDistance(b);
+    }
+}
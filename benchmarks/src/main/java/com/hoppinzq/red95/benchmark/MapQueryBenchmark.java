@@ -0,0 +1,57 @@
+package com.hoppinzq.red95.benchmark;
+
+import com.hoppinzq.red95.config.Red95Properties;
+import com.hoppinzq.red95.metrics.GameMetrics;
+import com.hoppinzq.red95.model.MapQueryResult;
+import com.hoppinzq.red95.service.GameSocketAPI;
+import com.hoppinzq.red95.simulator.GameSimulator;
+import com.hoppinzq.red95.simulator.SimulatorConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * mapQuery 在不同地图尺寸下的耗时，主要反映六个图层的解码成本；
+ * frames=true 时结果经由共享内存帧通道传递，对比省掉 JSON 编解码后的耗时
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MapQueryBenchmark {
+    @Param({"64", "128", "256"})
+    public int mapSize;
+
+    @Param({"false", "true"})
+    public boolean frames;
+
+    private GameSimulator server;
+    private GameSocketAPI api;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        SimulatorConfig config = new SimulatorConfig();
+        config.setActorCount(0);
+        config.setMapSize(mapSize);
+        server = new GameSimulator(config).start();
+        Red95Properties properties = new Red95Properties();
+        properties.getFrames().setEnabled(frames);
+        api = new GameSocketAPI("127.0.0.1", server.getPort(), null, "zh",
+                new GameMetrics(new SimpleMeterRegistry(), "bench"), properties);
+        api.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        api.close();
+        server.close();
+    }
+
+    @Benchmark
+    public MapQueryResult mapQuery() {
+        return api.mapQuery();
+    }
+}
@@ -0,0 +1,61 @@
+package com.hoppinzq.red95.benchmark;
+
+import com.hoppinzq.red95.config.Red95Properties;
+import com.hoppinzq.red95.metrics.GameMetrics;
+import com.hoppinzq.red95.model.Actor;
+import com.hoppinzq.red95.model.TargetsQueryParam;
+import com.hoppinzq.red95.service.GameSocketAPI;
+import com.hoppinzq.red95.simulator.GameSimulator;
+import com.hoppinzq.red95.simulator.SimulatorConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * queryActor 在不同单位数量下的耗时，主要反映响应解码成本；关闭了查询缓存，每次都访问模拟器
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryActorBenchmark {
+    @Param({"10", "100", "1000"})
+    public int actorCount;
+
+    private GameSimulator server;
+    private GameSocketAPI api;
+    private TargetsQueryParam query;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        SimulatorConfig config = new SimulatorConfig();
+        config.setActorCount(actorCount);
+        server = new GameSimulator(config).start();
+        Red95Properties properties = new Red95Properties();
+        properties.getQueryCache().setEnabled(false);
+        api = new GameSocketAPI("127.0.0.1", server.getPort(), null, "zh",
+                new GameMetrics(new SimpleMeterRegistry(), "bench"), properties);
+        api.init();
+        query = TargetsQueryParam.builder()
+                .type(Collections.emptyList())
+                .faction("任意")
+                .range("all")
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        api.close();
+        server.close();
+    }
+
+    @Benchmark
+    public List<Actor> queryActor() {
+        return api.queryActor(query);
+    }
+}
@@ -0,0 +1,42 @@
+package com.hoppinzq.red95.benchmark;
+
+import com.hoppinzq.red95.service.GameSocketAPI;
+import com.hoppinzq.red95.simulator.GameSimulator;
+import com.hoppinzq.red95.simulator.SimulatorConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sendRequest 端到端耗时：借连接、序列化、写请求、读响应、解析和校验，用 ping 命令测量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendRequestBenchmark {
+    private GameSimulator server;
+    private GameSocketAPI api;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        SimulatorConfig config = new SimulatorConfig();
+        config.setActorCount(0);
+        server = new GameSimulator(config).start();
+        api = new GameSocketAPI("127.0.0.1", server.getPort(), "zh");
+        api.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        api.close();
+        server.close();
+    }
+
+    @Benchmark
+    public boolean ping() {
+        return api.isServerRunning();
+    }
+}
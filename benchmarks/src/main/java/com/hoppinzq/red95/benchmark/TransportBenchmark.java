@@ -0,0 +1,76 @@
+package com.hoppinzq.red95.benchmark;
+
+import com.hoppinzq.red95.config.Red95Properties;
+import com.hoppinzq.red95.metrics.GameMetrics;
+import com.hoppinzq.red95.model.Actor;
+import com.hoppinzq.red95.model.TargetsQueryParam;
+import com.hoppinzq.red95.service.GameSocketAPI;
+import com.hoppinzq.red95.simulator.GameSimulator;
+import com.hoppinzq.red95.simulator.SimulatorConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TCP 回环和 Unix 域套接字的对比：模拟器同时监听两种地址，ping 反映建连和往返开销，
+ * queryActor(100个单位)反映传输较大响应时的差别；4个线程并发时看吞吐量。关闭了查询缓存
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class TransportBenchmark {
+    @Param({"tcp", "unix"})
+    public String transport;
+
+    private Path socketDir;
+    private GameSimulator server;
+    private GameSocketAPI api;
+    private TargetsQueryParam query;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        socketDir = Files.createTempDirectory("red95-bench");
+        SimulatorConfig config = new SimulatorConfig();
+        config.setActorCount(100);
+        config.setUnixSocket(socketDir.resolve("game.sock").toString());
+        server = new GameSimulator(config).start();
+
+        Red95Properties properties = new Red95Properties();
+        properties.getQueryCache().setEnabled(false);
+        String unixSocket = "unix".equals(transport) ? server.getUnixSocket().toString() : null;
+        api = new GameSocketAPI("127.0.0.1", server.getPort(), unixSocket, "zh",
+                new GameMetrics(new SimpleMeterRegistry(), "bench"), properties);
+        api.init();
+        query = TargetsQueryParam.builder()
+                .type(Collections.emptyList())
+                .faction("任意")
+                .range("all")
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        api.close();
+        server.close();
+        Files.deleteIfExists(socketDir);
+    }
+
+    @Benchmark
+    public boolean ping() {
+        return api.isServerRunning();
+    }
+
+    @Benchmark
+    public List<Actor> queryActor() {
+        return api.queryActor(query);
+    }
+}
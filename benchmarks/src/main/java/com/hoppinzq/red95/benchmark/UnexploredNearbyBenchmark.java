@@ -0,0 +1,56 @@
+package com.hoppinzq.red95.benchmark;
+
+import com.hoppinzq.red95.model.Location;
+import com.hoppinzq.red95.model.MapQueryResult;
+import com.hoppinzq.red95.service.GameSocketAPI;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getUnexploredNearbyPositions 在不同搜索半径下的耗时，纯本地计算，不访问服务器
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnexploredNearbyBenchmark {
+    private static final int MAP_SIZE = 128;
+
+    @Param({"5", "20", "50"})
+    public int radius;
+
+    private GameSocketAPI api;
+    private MapQueryResult map;
+    private Location center;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        api = new GameSocketAPI("127.0.0.1", 0, "zh");
+        Random random = new Random(42);
+        List<List<Boolean>> explored = new ArrayList<>(MAP_SIZE);
+        for (int x = 0; x < MAP_SIZE; x++) {
+            List<Boolean> column = new ArrayList<>(MAP_SIZE);
+            for (int y = 0; y < MAP_SIZE; y++) {
+                column.add(random.nextBoolean());
+            }
+            explored.add(column);
+        }
+        map = MapQueryResult.builder()
+                .mapWidth(MAP_SIZE)
+                .mapHeight(MAP_SIZE)
+                .isExplored(explored)
+                .build();
+        center = new Location(MAP_SIZE / 2, MAP_SIZE / 2);
+    }
+
+    @Benchmark
+    public List<Location> unexploredNearby() {
+        return api.getUnexploredNearbyPositions(map, center, radius);
+    }
+}
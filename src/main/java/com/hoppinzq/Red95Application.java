@@ -1,19 +1,30 @@
 package com.hoppinzq;
 
+import com.hoppinzq.red95.cluster.ClusterRouter;
+import com.hoppinzq.red95.cluster.ClusterRoutingToolCallback;
+import com.hoppinzq.red95.config.Red95Properties;
+import com.hoppinzq.red95.metrics.MeteredToolCallback;
 import com.hoppinzq.red95.service.CmdTools;
 import com.hoppinzq.red95.service.Red95Tools;
+import com.hoppinzq.red95.tracing.Tracer;
+import com.hoppinzq.red95.tracing.TracingToolCallback;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbacks;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * 使用请参考readme.md，有问题请微信：zhangqiff19
  */
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class Red95Application {
 
     public static void main(String[] args) {
@@ -21,7 +32,23 @@ public class Red95Application {
     }
 
     @Bean
-    public List<ToolCallback> zqTools(Red95Tools red95Tools, CmdTools cmdTools) {
-        return List.of(ToolCallbacks.from(red95Tools,cmdTools));
+    public List<ToolCallback> zqTools(Red95Tools red95Tools, CmdTools cmdTools, ClusterRouter clusterRouter,
+                                      Red95Properties properties, MeterRegistry meterRegistry, Tracer tracer) {
+        List<ToolCallback> tools = List.of(ToolCallbacks.from(red95Tools));
+        if (clusterRouter.isEnabled()) {
+            // 多节点部署时，游戏不归本节点的工具调用转发给持有者
+            Duration timeout = properties.getCluster().getForwardTimeout();
+            String secret = properties.getCluster().getSecret();
+            tools = tools.stream()
+                    .map(tool -> (ToolCallback) new ClusterRoutingToolCallback(tool, clusterRouter, timeout, secret))
+                    .toList();
+        }
+        // 启停游戏进程等本机工具始终在本节点执行，不参与转发
+        tools = Stream.concat(tools.stream(), Stream.of(ToolCallbacks.from(cmdTools))).toList();
+        // 在最外层追踪和计时，转发到其他节点的调用也按调用方看到的耗时记录
+        return tools.stream()
+                .map(tool -> (ToolCallback) new TracingToolCallback(tool, tracer))
+                .map(tool -> (ToolCallback) new MeteredToolCallback(tool, meterRegistry))
+                .toList();
     }
 }
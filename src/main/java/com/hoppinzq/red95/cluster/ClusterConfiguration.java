@@ -0,0 +1,23 @@
+package com.hoppinzq.red95.cluster;
+
+import com.hoppinzq.red95.config.Red95Properties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+@Configuration
+public class ClusterConfiguration {
+
+    // 会话归属存储，注册自定义的 SessionStateStore Bean 即可替换
+    @Bean
+    @ConditionalOnMissingBean
+    public SessionStateStore sessionStateStore(Red95Properties properties) {
+        Red95Properties.Cluster cluster = properties.getCluster();
+        if ("file".equals(cluster.getStateStore())) {
+            return new FileSessionStateStore(Paths.get(cluster.getStateDir()));
+        }
+        return new InMemorySessionStateStore();
+    }
+}
@@ -0,0 +1,54 @@
+package com.hoppinzq.red95.cluster;
+
+import com.hoppinzq.red95.config.Red95Properties;
+import com.hoppinzq.red95.service.Red95Tools;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbacks;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 接收其他节点转发过来的工具调用，直接在本节点执行，不再二次转发
+ * <p>
+ * 只在启用集群时注册，请求必须携带节点间共享密钥；只开放游戏会话相关的工具，启停游戏进程等本机工具不接受转发
+ */
+@RestController
+@ConditionalOnProperty(name = "red95.cluster.enabled", havingValue = "true")
+public class ClusterController {
+    private final Map<String, ToolCallback> localTools = new HashMap<>();
+    private final byte[] secret;
+
+    public ClusterController(Red95Tools red95Tools, Red95Properties properties) {
+        // 使用未包装的工具回调，避免节点之间来回转发
+        for (ToolCallback callback : ToolCallbacks.from(red95Tools)) {
+            localTools.put(callback.getToolDefinition().name(), callback);
+        }
+        this.secret = properties.getCluster().getSecret().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PostMapping(ClusterRoutingToolCallback.FORWARD_PATH + "{name}")
+    public String call(@PathVariable("name") String name,
+                       @RequestHeader(name = ClusterRoutingToolCallback.SECRET_HEADER, required = false) String secretHeader,
+                       @RequestBody String toolInput) {
+        if (secretHeader == null || secret.length == 0
+                || !MessageDigest.isEqual(secret, secretHeader.getBytes(StandardCharsets.UTF_8))) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "集群密钥不匹配");
+        }
+        ToolCallback callback = localTools.get(name);
+        if (callback == null) {
+            throw new IllegalArgumentException("未知工具: " + name);
+        }
+        return callback.call(toolInput);
+    }
+}
@@ -0,0 +1,88 @@
+package com.hoppinzq.red95.cluster;
+
+import com.hoppinzq.red95.config.Red95Properties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * 游戏会话亲和路由：已被认领的游戏发往持有者节点，未认领的按一致性哈希选择节点
+ */
+@Service
+@Slf4j
+public class ClusterRouter {
+
+    @Resource
+    private Red95Properties properties;
+
+    @Resource
+    private SessionStateStore sessionStateStore;
+
+    private ConsistentHashRing ring;
+
+    @PostConstruct
+    public void init() {
+        Red95Properties.Cluster cluster = properties.getCluster();
+        ring = new ConsistentHashRing(cluster.getNodes().keySet(), cluster.getVirtualNodes());
+        if (cluster.isEnabled() && !cluster.getNodes().containsKey(cluster.getNodeId())) {
+            throw new IllegalStateException("red95.cluster.node-id " + cluster.getNodeId() + " 不在 red95.cluster.nodes 中");
+        }
+        if (cluster.isEnabled() && (cluster.getSecret() == null || cluster.getSecret().isBlank())) {
+            throw new IllegalStateException("启用集群时必须配置 red95.cluster.secret");
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.getCluster().isEnabled();
+    }
+
+    public String getNodeId() {
+        return properties.getCluster().getNodeId();
+    }
+
+    /**
+     * @param gameId 游戏ID
+     * @return 负责该游戏的节点ID
+     */
+    public String ownerOf(String gameId) {
+        if (!isEnabled()) {
+            return getNodeId();
+        }
+        SessionState state = sessionStateStore.get(gameId);
+        if (state != null && ring.contains(state.getOwnerNode())
+                && !state.isExpired(System.currentTimeMillis(), claimTtlMillis())) {
+            return state.getOwnerNode();
+        }
+        return ring.nodeFor(gameId);
+    }
+
+    /**
+     * @return 游戏所在节点的地址，游戏由本节点负责时返回null
+     */
+    public String remoteUrlOf(String gameId) {
+        String owner = ownerOf(gameId);
+        if (owner == null || owner.equals(getNodeId())) {
+            return null;
+        }
+        return properties.getCluster().getNodes().get(owner);
+    }
+
+    /**
+     * 本节点创建游戏连接前调用，确保同一游戏只被一个节点持有；已持有的游戏再次调用即为续约
+     *
+     * @return 是否由本节点持有
+     */
+    public boolean claim(String gameId) {
+        SessionState state = sessionStateStore.claim(gameId, getNodeId(), claimTtlMillis());
+        return getNodeId().equals(state.getOwnerNode());
+    }
+
+    public long claimTtlMillis() {
+        return properties.getCluster().getClaimTtl().toMillis();
+    }
+
+    public void release(String gameId) {
+        sessionStateStore.release(gameId, getNodeId());
+    }
+}
@@ -0,0 +1,98 @@
+package com.hoppinzq.red95.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hoppinzq.red95.config.Red95Properties;
+import com.hoppinzq.red95.service.GameSocketAPI;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * 包装工具回调：游戏不归本节点时，把工具调用原样转发给持有该游戏连接的节点
+ */
+public class ClusterRoutingToolCallback implements ToolCallback {
+    public static final String FORWARD_PATH = "/cluster/tools/";
+    public static final String SECRET_HEADER = "X-Red95-Cluster-Secret";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(3))
+            .build();
+
+    private final ToolCallback delegate;
+    private final ClusterRouter router;
+    private final Duration timeout;
+    private final String secret;
+
+    public ClusterRoutingToolCallback(ToolCallback delegate, ClusterRouter router, Duration timeout, String secret) {
+        this.delegate = delegate;
+        this.router = router;
+        this.timeout = timeout;
+        this.secret = secret;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        String remote = router.remoteUrlOf(gameIdOf(toolInput));
+        return remote == null ? delegate.call(toolInput) : forward(remote, toolInput);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        String remote = router.remoteUrlOf(gameIdOf(toolInput));
+        return remote == null ? delegate.call(toolInput, toolContext) : forward(remote, toolInput);
+    }
+
+    private static String gameIdOf(String toolInput) {
+        try {
+            JsonNode gameId = objectMapper.readTree(toolInput).get("gameId");
+            if (gameId != null && gameId.isTextual() && !gameId.asText().isBlank()) {
+                return gameId.asText().trim();
+            }
+        } catch (IOException ignored) {
+        }
+        return Red95Properties.DEFAULT_GAME_ID;
+    }
+
+    private String forward(String nodeUrl, String toolInput) {
+        String name = getToolDefinition().name();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(nodeUrl + FORWARD_PATH + name))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header(SECRET_HEADER, secret)
+                .POST(HttpRequest.BodyPublishers.ofString(toolInput, StandardCharsets.UTF_8))
+                .build();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            if (response.statusCode() != 200) {
+                throw new GameSocketAPI.GameAPIError("FORWARD_ERROR",
+                        "转发到节点 " + nodeUrl + " 失败，状态码: " + response.statusCode() + "，" + response.body());
+            }
+            return response.body();
+        } catch (IOException e) {
+            throw new GameSocketAPI.GameAPIError("FORWARD_ERROR", "转发到节点 " + nodeUrl + " 失败: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GameSocketAPI.GameAPIError("FORWARD_INTERRUPTED", "转发被中断");
+        }
+    }
+}
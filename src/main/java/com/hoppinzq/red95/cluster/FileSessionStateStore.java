@@ -0,0 +1,119 @@
+package com.hoppinzq.red95.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 基于共享目录的会话归属存储，每个游戏一个文件，依赖文件的原子创建保证唯一持有者。
+ * 作为外部存储的本地替身，用于同一台机器上启动多个节点做联调和测试。
+ */
+@Slf4j
+public class FileSessionStateStore implements SessionStateStore {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path dir;
+
+    public FileSessionStateStore(Path dir) {
+        this.dir = dir;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建会话存储目录失败: " + dir, e);
+        }
+    }
+
+    private Path fileOf(String gameId) {
+        return dir.resolve(URLEncoder.encode(gameId, StandardCharsets.UTF_8) + ".json");
+    }
+
+    @Override
+    public SessionState claim(String gameId, String nodeId, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        SessionState state = new SessionState(gameId, nodeId, now);
+        Path temp = null;
+        try {
+            // 先写临时文件再硬链接到目标位置，链接创建是原子的，读者不会看到写了一半的文件
+            temp = Files.createTempFile(dir, "claim", ".tmp");
+            Files.write(temp, objectMapper.writeValueAsBytes(state));
+            try {
+                Files.createLink(fileOf(gameId), temp);
+                return state;
+            } catch (FileAlreadyExistsException e) {
+                SessionState existing = get(gameId);
+                if (existing == null) {
+                    // 文件刚好被持有者删除时再认领一次
+                    return claim(gameId, nodeId, ttlMillis);
+                }
+                if (!nodeId.equals(existing.getOwnerNode()) && !existing.isExpired(now, ttlMillis)) {
+                    return existing;
+                }
+                // 续约或接管过期的认领：原子替换后再读一次，同时接管时以最后写入者为准
+                Files.move(temp, fileOf(gameId), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                SessionState current = get(gameId);
+                return current != null ? current : state;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入会话归属失败: " + gameId, e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    @Override
+    public void release(String gameId, String nodeId) {
+        SessionState state = get(gameId);
+        if (state != null && nodeId.equals(state.getOwnerNode())) {
+            try {
+                Files.deleteIfExists(fileOf(gameId));
+            } catch (IOException e) {
+                log.warn("释放会话归属失败: {}", gameId, e);
+            }
+        }
+    }
+
+    @Override
+    public SessionState get(String gameId) {
+        try {
+            return objectMapper.readValue(Files.readAllBytes(fileOf(gameId)), SessionState.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("读取会话归属失败: {}", gameId, e);
+            return null;
+        }
+    }
+
+    @Override
+    public Collection<SessionState> all() {
+        List<SessionState> states = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".json")) {
+                    SessionState state = get(URLDecoder.decode(name.substring(0, name.length() - 5), StandardCharsets.UTF_8));
+                    if (state != null) {
+                        states.add(state);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            log.warn("列出会话归属失败", e);
+        }
+        return states;
+    }
+}
@@ -0,0 +1,36 @@
+package com.hoppinzq.red95.cluster;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内会话归属存储，用于单节点部署
+ */
+public class InMemorySessionStateStore implements SessionStateStore {
+    private final Map<String, SessionState> states = new ConcurrentHashMap<>();
+
+    @Override
+    public SessionState claim(String gameId, String nodeId, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        return states.compute(gameId, (id, state) ->
+                state == null || nodeId.equals(state.getOwnerNode()) || state.isExpired(now, ttlMillis)
+                        ? new SessionState(id, nodeId, now) : state);
+    }
+
+    @Override
+    public void release(String gameId, String nodeId) {
+        states.computeIfPresent(gameId, (id, state) -> nodeId.equals(state.getOwnerNode()) ? null : state);
+    }
+
+    @Override
+    public SessionState get(String gameId) {
+        return states.get(gameId);
+    }
+
+    @Override
+    public Collection<SessionState> all() {
+        return Collections.unmodifiableCollection(states.values());
+    }
+}
@@ -0,0 +1,24 @@
+package com.hoppinzq.red95.cluster;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 游戏会话的归属记录，表示某个游戏的连接由哪个节点持有
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SessionState {
+    private String gameId;  // 游戏ID
+    private String ownerNode;  // 持有该游戏连接的节点ID
+    private long claimedAt;  // 认领或最近一次续约的时间(毫秒)
+
+    /**
+     * @return 租约是否已过期，过期的认领可以被其他节点接管
+     */
+    public boolean isExpired(long now, long ttlMillis) {
+        return now - claimedAt > ttlMillis;
+    }
+}
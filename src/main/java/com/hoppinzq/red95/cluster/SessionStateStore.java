@@ -0,0 +1,29 @@
+package com.hoppinzq.red95.cluster;
+
+import java.util.Collection;
+
+/**
+ * 会话归属存储，保证一个游戏在任意时刻只被一个节点持有。
+ * 可替换为Redis等外部存储，只需注册自己的实现Bean。
+ */
+public interface SessionStateStore {
+
+    /**
+     * 认领游戏会话，已被其他节点认领且租约未过期时不会覆盖；本节点已持有时刷新认领时间(续约)
+     *
+     * @param gameId    游戏ID
+     * @param nodeId    认领的节点ID
+     * @param ttlMillis 租约时长，超过该时长未续约的认领视为失效
+     * @return 认领后的归属记录，ownerNode可能是其他节点
+     */
+    SessionState claim(String gameId, String nodeId, long ttlMillis);
+
+    /**
+     * 释放认领，只有持有者本身可以释放
+     */
+    void release(String gameId, String nodeId);
+
+    SessionState get(String gameId);
+
+    Collection<SessionState> all();
+}
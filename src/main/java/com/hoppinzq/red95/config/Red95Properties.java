@@ -0,0 +1,111 @@
+package com.hoppinzq.red95.config;
+
+import com.hoppinzq.red95.frame.FrameChannelConfig;
+import com.hoppinzq.red95.model.MapLayerConfig;
+import com.hoppinzq.red95.service.QueryCacheConfig;
+import com.hoppinzq.red95.service.QueueMonitorConfig;
+import com.hoppinzq.red95.socket.CircuitBreakerConfig;
+import com.hoppinzq.red95.socket.CompressionConfig;
+import com.hoppinzq.red95.socket.KeepaliveConfig;
+import com.hoppinzq.red95.socket.ReconnectConfig;
+import com.hoppinzq.red95.socket.SocketPoolConfig;
+import com.hoppinzq.red95.world.SamplerConfig;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * red95 配置，对应 application.yml 中的 red95 节点
+ */
+@Data
+@ConfigurationProperties(prefix = "red95")
+public class Red95Properties {
+    public static final String DEFAULT_GAME_ID = "default";
+
+    // 游戏实例，游戏ID -> 连接地址；工具调用不传游戏ID时使用 default
+    private Map<String, GameEndpoint> games = new LinkedHashMap<>(
+            Map.of(DEFAULT_GAME_ID, new GameEndpoint("localhost", 7445, "zh", null)));
+    // 每个游戏实例的连接池配置
+    private SocketPoolConfig pool = new SocketPoolConfig();
+    // 每个游戏实例的熔断器配置，游戏不可用时请求快速失败
+    private CircuitBreakerConfig circuitBreaker = new CircuitBreakerConfig();
+    // 断线重连的退避配置，游戏连接池和 GlobalSocketManager 共用
+    private ReconnectConfig reconnect = new ReconnectConfig();
+    // 每个游戏实例的保活配置，空闲时 ping 游戏并测量往返时间
+    private KeepaliveConfig keepalive = new KeepaliveConfig();
+    // 每个游戏实例的 query_actor 结果缓存配置
+    private QueryCacheConfig queryCache = new QueryCacheConfig();
+    // 同机部署时 map_query/query_actor 结果经由共享内存传递的配置
+    private FrameChannelConfig frames = new FrameChannelConfig();
+    // 远程游戏时大响应的 deflate 压缩配置
+    private CompressionConfig compression = new CompressionConfig();
+    // 大地图图层的堆外存储配置
+    private MapLayerConfig mapLayers = new MapLayerConfig();
+    // 允许直接作为游戏ID使用的 host:port，为空时只接受 games 中配置的游戏ID
+    private List<String> allowedAddresses = new ArrayList<>();
+    // 同时存在的游戏会话上限，超出后拒绝创建新会话
+    private int maxSessions = 32;
+    // 会话空闲多久后被回收(连接池、缓存、后台任务一并关闭)
+    private Duration sessionIdleTimeout = Duration.ofMinutes(30);
+    // 多节点部署配置
+    private Cluster cluster = new Cluster();
+    // 工具调用追踪配置
+    private Tracing tracing = new Tracing();
+    // 后台世界状态采样配置，读工具可以直接使用快照
+    private SamplerConfig sampler = new SamplerConfig();
+    // 后台生产队列轮询和自动放置配置
+    private QueueMonitorConfig queueMonitor = new QueueMonitorConfig();
+    // 工具返回值整形配置
+    private Response response = new Response();
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class GameEndpoint {
+        private String host = "localhost";
+        private int port = 7445;
+        private String language = "zh";
+        private String unixSocket;  // 游戏与服务同机时可改用 Unix 域套接字，如 /tmp/openra-mcp.sock，设置后忽略 host/port
+    }
+
+    @Data
+    public static class Cluster {
+        private boolean enabled = false;  // 是否启用多节点转发
+        private String nodeId = "node-1";  // 当前节点ID，必须出现在 nodes 中
+        private Map<String, String> nodes = new LinkedHashMap<>();  // 节点ID -> 节点地址，如 http://10.0.0.2:9002
+        private int virtualNodes = 128;  // 一致性哈希环上每个节点的虚拟节点数
+        private String stateStore = "memory";  // 会话归属存储：memory(单节点) 或 file(同机多节点共享目录)
+        private String stateDir = "./cluster-state";  // file 存储使用的共享目录
+        private Duration forwardTimeout = Duration.ofSeconds(120);  // 转发到其他节点的超时时间
+        private Duration claimTtl = Duration.ofMinutes(2);  // 会话认领的租约时长，持有者定期续约，节点宕机后超时由其他节点接管
+        private String secret = "";  // 节点之间共享的密钥，转发时放在请求头中，启用集群时必须配置
+    }
+
+    @Data
+    public static class Tracing {
+        private boolean enabled = true;  // 是否为每次工具调用记录追踪
+        private String file = "./traces/spans.jsonl";  // Zipkin v2 JSON 导出文件，为空时只保留在内存中
+        private DataSize maxFileSize = DataSize.ofMegabytes(50);  // 导出文件超过该大小后滚动
+        private String serviceName = "zq-red95-mcp";  // 导出时的 localEndpoint.serviceName
+        private int maxTraces = 100;  // 内存中保留的最近追踪数，供 trace_summary 使用
+        private int maxSpansPerTrace = 2000;  // 单条追踪最多记录的片段数
+    }
+
+    @Data
+    public static class Response {
+        private String actorFormat = "full";  // get_game_state、visible_units 不传 format 时的格式：full、compact、grouped
+        private String mapFormat = "full";  // query_map_info 不传 format 时的格式：full 或 summary
+        private int mapTileSize = 8;  // 地图汇总时每块的边长(格子数)
+        private int maxBytes = 0;  // 不传 maxBytes 时的字节预算，0 表示不限制
+        private int maxCursors = 64;  // 每个游戏保存的 get_game_state 增量游标数，超出时淘汰最久未用的
+        private Duration cursorTtl = Duration.ofMinutes(10);  // 增量游标多久未使用后过期
+    }
+}
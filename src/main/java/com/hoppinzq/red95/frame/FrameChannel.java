@@ -0,0 +1,117 @@
+package com.hoppinzq.red95.frame;
+
+import com.hoppinzq.red95.model.MapLayerArena;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * MCP 服务一侧的帧通道：创建映射文件作为环形缓冲区的消费者，给每个查询分配帧序号，
+ * 游戏把结果写成帧后在 socket 响应中只回复序号，{@link #await} 按序号取回解码后的结果。
+ * 并发查询的帧可能乱序到达，先到的其他序号暂存起来交给对应的等待者。
+ */
+public class FrameChannel implements AutoCloseable {
+    private static final int MAX_PENDING = 16;  // 暂存的他人帧上限，超出时丢弃序号最小的(其等待者已超时)
+    private static final SecureRandom random = new SecureRandom();
+
+    private final Path path;
+    private final FrameRing ring;
+    private final MapLayerArena arena;
+    private final AtomicLong sequence = new AtomicLong();
+    private final TreeMap<Long, Object> pending = new TreeMap<>();
+
+    private FrameChannel(Path path, FrameRing ring, MapLayerArena arena) {
+        this.path = path;
+        this.ring = ring;
+        this.arena = arena;
+    }
+
+    /**
+     * @param directory 映射文件所在目录，为空时优先 /dev/shm
+     * @param name      文件名前缀，一般为游戏ID；文件名另带进程号和随机后缀，不可预测，也不会与已有文件冲突
+     * @param arena     解码地图帧时使用的堆外内存，可以为 null
+     */
+    public static FrameChannel create(String directory, String name, int capacity, MapLayerArena arena)
+            throws IOException {
+        Path dir;
+        if (directory != null && !directory.isBlank()) {
+            dir = Path.of(directory);
+        } else if (Files.isDirectory(Path.of("/dev/shm")) && Files.isWritable(Path.of("/dev/shm"))) {
+            dir = Path.of("/dev/shm");
+        } else {
+            dir = Path.of(System.getProperty("java.io.tmpdir"));
+        }
+        Path path = dir.resolve("red95-" + name.replaceAll("[^A-Za-z0-9_.-]", "_") + "-" + ProcessHandle.current().pid()
+                + "-" + Long.toHexString(random.nextLong()) + ".frames");
+        return new FrameChannel(path, FrameRing.create(path, capacity), arena);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getCapacity() {
+        return ring.getCapacity();
+    }
+
+    public long nextSeq() {
+        return sequence.incrementAndGet();
+    }
+
+    /**
+     * 等待指定序号的帧并解码
+     *
+     * @return MAP 帧为 MapQueryResult，ACTORS 帧为 List&lt;Actor&gt;；超时返回 null
+     */
+    public synchronized Object await(long seq, long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            Object decoded = pending.remove(seq);
+            if (decoded != null) {
+                return decoded;
+            }
+            FrameRing.Frame frame = ring.poll();
+            if (frame == null) {
+                if (System.nanoTime() - deadline > 0) {
+                    return null;
+                }
+                // 游戏先写帧再回复序号，正常情况下走不到这里，只在游戏写帧失败或对端异常时空转等待
+                LockSupport.parkNanos(20_000);
+                continue;
+            }
+            try {
+                decoded = FrameCodec.decode(frame, arena);
+            } finally {
+                ring.release(frame);
+            }
+            if (frame.seq() == seq) {
+                return decoded;
+            }
+            pending.put(frame.seq(), decoded);
+            while (pending.size() > MAX_PENDING) {
+                pending.pollFirstEntry();
+            }
+        }
+    }
+
+    /**
+     * 关闭并删除映射文件
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        pending.clear();
+        ring.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
@@ -0,0 +1,17 @@
+package com.hoppinzq.red95.frame;
+
+import lombok.Data;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * 共享内存帧通道配置，对应 application.yml 中的 red95.frames 节点。只在游戏与 MCP 服务位于同一台机器时有效
+ */
+@Data
+public class FrameChannelConfig {
+    private boolean enabled = false;  // 开启后 map_query/query_actor 的结果经由内存映射文件传递，socket 只传控制命令
+    private String directory;  // 映射文件所在目录，为空时优先 /dev/shm，其次系统临时目录
+    private DataSize capacity = DataSize.ofMegabytes(8);  // 环形缓冲区大小，必须是2的幂，要能放下两份最大的帧
+    private Duration frameTimeout = Duration.ofSeconds(1);  // 游戏回复帧序号后等待帧出现在缓冲区的最长时间
+}
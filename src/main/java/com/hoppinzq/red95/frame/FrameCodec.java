@@ -0,0 +1,254 @@
+package com.hoppinzq.red95.frame;
+
+import com.hoppinzq.red95.model.Actor;
+import com.hoppinzq.red95.model.Location;
+import com.hoppinzq.red95.model.MapLayerArena;
+import com.hoppinzq.red95.model.MapLayers;
+import com.hoppinzq.red95.model.MapQueryResult;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * map_query 和 query_actor 结果的二进制帧格式(小端)。字符串先去重成字典，格子和单位里只存字典下标(short，-1表示null)。
+ * <pre>
+ * 字典：int 条数，每条 short 字节数 + UTF-8
+ * MAP：int 宽、int 高、字典，之后按图层依次存放宽×高个格子([x][y] 顺序)：
+ *      int 高度、byte 可见、byte 已探索、short 地形、short 资源类型、int 资源量
+ * ACTORS：字典、int 单位数，每个单位 int id、short 类型、short 阵营、int x、int y、int hp、int maxHp
+ * </pre>
+ * 编码由游戏一侧调用，输入与 JSON 响应里的 data 相同；解码直接读映射内存，不经过 byte[] 和 JSON，
+ * 地图的图层部分与 {@link MapLayers} 的布局相同，解码时整块拷贝。
+ */
+public final class FrameCodec {
+    public static final int MAP = 1;
+    public static final int ACTORS = 2;
+
+    private FrameCodec() {
+    }
+
+    /**
+     * @param data map_query 的结果，格子可以是二维数组或嵌套 List
+     */
+    public static ByteBuffer encodeMap(Map<String, Object> data) {
+        int width = ((Number) data.get("MapWidth")).intValue();
+        int height = ((Number) data.get("MapHeight")).intValue();
+        Object heights = data.get("Height");
+        Object visible = data.get("IsVisible");
+        Object explored = data.get("IsExplored");
+        Object terrain = data.get("Terrain");
+        Object resourcesType = data.get("ResourcesType");
+        Object resources = data.get("Resources");
+
+        Dictionary dictionary = new Dictionary();
+        int cells = width * height;
+        short[] terrainIndex = new short[cells];
+        short[] resourcesTypeIndex = new short[cells];
+        for (int x = 0, i = 0; x < width; x++) {
+            for (int y = 0; y < height; y++, i++) {
+                terrainIndex[i] = dictionary.index((String) cell(terrain, x, y));
+                resourcesTypeIndex[i] = dictionary.index((String) cell(resourcesType, x, y));
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(8 + dictionary.size() + cells * 14).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(width).putInt(height);
+        dictionary.write(buffer);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                buffer.putInt(intCell(heights, x, y));
+            }
+        }
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                buffer.put((byte) (Boolean.TRUE.equals(cell(visible, x, y)) ? 1 : 0));
+            }
+        }
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                buffer.put((byte) (Boolean.TRUE.equals(cell(explored, x, y)) ? 1 : 0));
+            }
+        }
+        for (short index : terrainIndex) {
+            buffer.putShort(index);
+        }
+        for (short index : resourcesTypeIndex) {
+            buffer.putShort(index);
+        }
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                buffer.putInt(intCell(resources, x, y));
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * @param actors query_actor 结果中的 actors 列表
+     */
+    public static ByteBuffer encodeActors(List<Map<String, Object>> actors) {
+        Dictionary dictionary = new Dictionary();
+        short[] types = new short[actors.size()];
+        short[] factions = new short[actors.size()];
+        for (int i = 0; i < actors.size(); i++) {
+            types[i] = dictionary.index((String) actors.get(i).get("type"));
+            factions[i] = dictionary.index((String) actors.get(i).get("faction"));
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(dictionary.size() + 4 + actors.size() * 24).order(ByteOrder.LITTLE_ENDIAN);
+        dictionary.write(buffer);
+        buffer.putInt(actors.size());
+        for (int i = 0; i < actors.size(); i++) {
+            Map<String, Object> actor = actors.get(i);
+            Map<String, Object> position = (Map<String, Object>) actor.get("position");
+            buffer.putInt(((Number) actor.get("id")).intValue())
+                    .putShort(types[i])
+                    .putShort(factions[i])
+                    .putInt(((Number) position.get("x")).intValue())
+                    .putInt(((Number) position.get("y")).intValue())
+                    .putInt(((Number) actor.get("hp")).intValue())
+                    .putInt(((Number) actor.get("maxHp")).intValue());
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * 按帧类型解码
+     *
+     * @return MAP 帧为 {@link MapQueryResult}，ACTORS 帧为 List&lt;Actor&gt;
+     */
+    public static Object decode(FrameRing.Frame frame, MapLayerArena arena) {
+        switch (frame.type()) {
+            case MAP:
+                return decodeMap(frame.payload(), arena);
+            case ACTORS:
+                return decodeActors(frame.payload());
+            default:
+                throw new IllegalArgumentException("未知的帧类型: " + frame.type());
+        }
+    }
+
+    /**
+     * @param arena 大地图的堆外内存，可以为 null
+     */
+    public static MapQueryResult decodeMap(ByteBuffer payload, MapLayerArena arena) {
+        int width = payload.getInt(0);
+        int height = payload.getInt(4);
+        String[] dictionary = readDictionary(payload, 8);
+
+        // 帧中图层部分的布局与 MapLayers 相同，整块拷贝
+        MapLayers.Builder builder = MapLayers.builder(width, height, arena);
+        int cells = width * height;
+        builder.cells().put(0, payload, dictionaryEnd(payload, 8), cells * MapLayers.BYTES_PER_CELL);
+        for (MapLayers.Layer layer : MapLayers.Layer.values()) {
+            builder.present(layer);
+        }
+        return builder.names(MapLayers.Layer.TERRAIN, dictionary)
+                .names(MapLayers.Layer.RESOURCES_TYPE, dictionary)
+                .build()
+                .toResult(width, height);
+    }
+
+    public static List<Actor> decodeActors(ByteBuffer payload) {
+        String[] dictionary = readDictionary(payload, 0);
+        int offset = dictionaryEnd(payload, 0);
+        int count = payload.getInt(offset);
+        offset += 4;
+        List<Actor> actors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++, offset += 24) {
+            int hp = payload.getInt(offset + 16);
+            int maxHp = payload.getInt(offset + 20);
+            actors.add(new Actor(payload.getInt(offset),
+                    lookup(dictionary, payload.getShort(offset + 4)),
+                    lookup(dictionary, payload.getShort(offset + 6)),
+                    new Location(payload.getInt(offset + 8), payload.getInt(offset + 12)),
+                    maxHp > 0 ? hp * 100 / maxHp : -1));
+        }
+        return actors;
+    }
+
+    private static String[] readDictionary(ByteBuffer payload, int offset) {
+        String[] entries = new String[payload.getInt(offset)];
+        offset += 4;
+        for (int i = 0; i < entries.length; i++) {
+            int length = payload.getShort(offset) & 0xFFFF;
+            byte[] bytes = new byte[length];
+            payload.get(offset + 2, bytes);
+            entries[i] = new String(bytes, StandardCharsets.UTF_8);
+            offset += 2 + length;
+        }
+        return entries;
+    }
+
+    private static int dictionaryEnd(ByteBuffer payload, int offset) {
+        int count = payload.getInt(offset);
+        offset += 4;
+        for (int i = 0; i < count; i++) {
+            offset += 2 + (payload.getShort(offset) & 0xFFFF);
+        }
+        return offset;
+    }
+
+    private static String lookup(String[] dictionary, short index) {
+        return index < 0 ? null : dictionary[index];
+    }
+
+    private static Object cell(Object grid, int x, int y) {
+        if (grid instanceof Object[][]) {
+            return ((Object[][]) grid)[x][y];
+        }
+        if (grid instanceof int[][]) {
+            return ((int[][]) grid)[x][y];
+        }
+        if (grid instanceof boolean[][]) {
+            return ((boolean[][]) grid)[x][y];
+        }
+        if (grid instanceof List) {
+            return ((List<List<?>>) grid).get(x).get(y);
+        }
+        return null;
+    }
+
+    private static int intCell(Object grid, int x, int y) {
+        Object value = cell(grid, x, y);
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    // 编码时的字符串字典
+    private static class Dictionary {
+        private final Map<String, Short> indexes = new HashMap<>();
+        private final List<byte[]> entries = new ArrayList<>();
+        private int bytes = 4;
+
+        short index(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Short index = indexes.get(value);
+            if (index == null) {
+                if (entries.size() >= Short.MAX_VALUE) {
+                    throw new IllegalStateException("帧中的不同字符串过多");
+                }
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                index = (short) entries.size();
+                indexes.put(value, index);
+                entries.add(encoded);
+                bytes += 2 + encoded.length;
+            }
+            return index;
+        }
+
+        int size() {
+            return bytes;
+        }
+
+        void write(ByteBuffer buffer) {
+            buffer.putInt(entries.size());
+            for (byte[] entry : entries) {
+                buffer.putShort((short) entry.length).put(entry);
+            }
+        }
+    }
+}
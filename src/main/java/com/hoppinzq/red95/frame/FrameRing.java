@@ -0,0 +1,188 @@
+package com.hoppinzq.red95.frame;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * 内存映射文件上的单生产者/单消费者环形缓冲区，游戏(生产者)和 MCP 服务(消费者)各自映射同一个文件。
+ * 文件布局(小端)：
+ * <pre>
+ * 0    int   魔数
+ * 4    int   版本
+ * 8    long  数据区容量(2的幂)
+ * 64   long  写位置，只增不减，生产者写完一帧后以 release 语义更新
+ * 128  long  读位置，只增不减，消费者用完一帧后以 release 语义更新
+ * 192  数据区
+ * </pre>
+ * 每帧依次是 int 载荷长度、int 帧类型、long 序号和载荷，按8字节对齐；数据区尾部放不下一整帧时写入长度 -1 并回到开头。
+ * 读写位置各占一个缓存行，两端不会互相伪共享。
+ */
+public final class FrameRing implements AutoCloseable {
+    static final int MAGIC = 0x52393546;
+    static final int VERSION = 1;
+    private static final int CAPACITY = 8;
+    private static final int WRITE_POS = 64;
+    private static final int READ_POS = 128;
+    private static final int DATA = 192;
+    private static final int FRAME_HEADER = 16;
+    private static final int WRAP = -1;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * 一帧数据，payload 直接指向映射内存，用完后必须 {@link #release}
+     *
+     * @param next 这一帧之后的读位置
+     */
+    public record Frame(int type, long seq, ByteBuffer payload, long next) {
+    }
+
+    private FrameRing(FileChannel file, MappedByteBuffer buffer, int capacity) {
+        this.file = file;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * 消费者新建文件并写入文件头；文件已存在时失败，不会复用或跟随他人预先放置的文件(或符号链接)，
+     * 支持 POSIX 权限的文件系统上只有属主可读写
+     *
+     * @param capacity 数据区字节数，必须是2的幂
+     * @throws java.nio.file.FileAlreadyExistsException 当文件已存在时
+     */
+    public static FrameRing create(Path path, int capacity) throws IOException {
+        if (capacity < 1024 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("环形缓冲区容量必须是不小于1024的2的幂: " + capacity);
+        }
+        Set<OpenOption> options = Set.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        FileChannel file = path.getFileSystem().supportedFileAttributeViews().contains("posix")
+                ? FileChannel.open(path, options, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+                : FileChannel.open(path, options);
+        try {
+            MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, DATA + (long) capacity);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(CAPACITY, capacity);
+            LONGS.setRelease(buffer, READ_POS, 0L);
+            LONGS.setRelease(buffer, WRITE_POS, 0L);
+            return new FrameRing(file, buffer, capacity);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 生产者映射消费者已经创建好的文件
+     */
+    public static FrameRing attach(Path path) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer header = file.map(FileChannel.MapMode.READ_ONLY, 0, DATA);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("不是环形缓冲区文件或版本不兼容: " + path);
+            }
+            int capacity = (int) header.getLong(CAPACITY);
+            MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, DATA + (long) capacity);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new FrameRing(file, buffer, capacity);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 生产者写入一帧，空间不够时不等待，返回 false 由调用方改走 socket
+     *
+     * @param payload 从 position 到 limit 的内容
+     */
+    public boolean offer(int type, long seq, ByteBuffer payload) {
+        int length = payload.remaining();
+        int total = align(FRAME_HEADER + length);
+        if (total > capacity / 2) {
+            return false;
+        }
+        long write = (long) LONGS.getAcquire(buffer, WRITE_POS);
+        long read = (long) LONGS.getAcquire(buffer, READ_POS);
+        int offset = (int) (write & mask);
+        int tail = capacity - offset;
+        int wasted = tail < total ? tail : 0;
+        if (capacity - (write - read) < (long) total + wasted) {
+            return false;
+        }
+        if (wasted > 0) {
+            buffer.putInt(DATA + offset, WRAP);
+            write += wasted;
+            offset = 0;
+        }
+        int base = DATA + offset;
+        buffer.putInt(base, length);
+        buffer.putInt(base + 4, type);
+        buffer.putLong(base + 8, seq);
+        buffer.put(base + FRAME_HEADER, payload, payload.position(), length);
+        LONGS.setRelease(buffer, WRITE_POS, write + total);
+        return true;
+    }
+
+    /**
+     * 消费者取下一帧，没有时返回 null；不会移动读位置
+     */
+    public Frame poll() {
+        long read = (long) LONGS.getAcquire(buffer, READ_POS);
+        while (true) {
+            long write = (long) LONGS.getAcquire(buffer, WRITE_POS);
+            if (read == write) {
+                return null;
+            }
+            int offset = (int) (read & mask);
+            int base = DATA + offset;
+            int length = buffer.getInt(base);
+            if (length == WRAP) {
+                read += capacity - offset;
+                continue;
+            }
+            ByteBuffer payload = buffer.slice(base + FRAME_HEADER, length).order(ByteOrder.LITTLE_ENDIAN);
+            return new Frame(buffer.getInt(base + 4), buffer.getLong(base + 8), payload,
+                    read + align(FRAME_HEADER + length));
+        }
+    }
+
+    /**
+     * 消费者用完一帧，把空间还给生产者
+     */
+    public void release(Frame frame) {
+        LONGS.setRelease(buffer, READ_POS, frame.next());
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
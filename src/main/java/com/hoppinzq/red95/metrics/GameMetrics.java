@@ -0,0 +1,223 @@
+package com.hoppinzq.red95.metrics;
+
+import io.micrometer.core.instrument.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * 一个游戏实例的 socket 指标，所有指标都带 game 标签：
+ * <ul>
+ *     <li>red95.game.command：每个命令的 sendRequest 耗时(含百分位和直方图)，outcome 为 ok 或错误码</li>
+ *     <li>red95.game.bytes：请求/响应字节数，direction 为 out/in</li>
+ *     <li>red95.game.retries：连接超时/拒绝后的重试次数</li>
+ *     <li>red95.game.errors：按 GameAPIError 错误码统计的失败次数</li>
+ *     <li>red95.pool.borrow：从连接池借连接的等待时间</li>
+ *     <li>red95.pool.connections：连接池中的连接数，state 为 open/idle/borrowed</li>
+ *     <li>red95.breaker.state：熔断器状态，0关闭、1熔断、2探测中</li>
+ *     <li>red95.game.rtt：保活 ping 测得的平滑往返时间</li>
+ *     <li>red95.query.cache：query_actor 缓存的查询次数，result 为 hit/miss/coalesced；red95.query.cache.hit.ratio 为命中率</li>
+ *     <li>red95.game.compression.ratio、red95.game.compression.time：压缩响应的压缩比(解压后/压缩后)和解压耗时</li>
+ *     <li>red95.map.layers.offheap：地图图层占用的堆外内存</li>
+ * </ul>
+ * 按命令缓存已注册的指标，热路径上不再走 Builder 和注册表查找。
+ */
+public class GameMetrics {
+    public static final String OK = "ok";
+
+    private final MeterRegistry registry;
+    private final String game;
+    private final Map<String, Timer> commandTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> bytesOut = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> bytesIn = new ConcurrentHashMap<>();
+    private final Map<String, Counter> retries = new ConcurrentHashMap<>();
+    private final Map<String, Counter> errors = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> compressionRatios = new ConcurrentHashMap<>();
+    private final Map<String, Timer> compressionTimers = new ConcurrentHashMap<>();
+    private final List<Meter> meters = new CopyOnWriteArrayList<>();
+    private final Timer borrowTimer;
+
+    /**
+     * @param registry 指标注册表；在 Spring 之外使用时传私有的 SimpleMeterRegistry，
+     *                 传全局注册表时必须在用完后调用 {@link #close()}，否则 Gauge 会一直持有游戏实例
+     * @param game     游戏ID，作为 game 标签
+     */
+    public GameMetrics(MeterRegistry registry, String game) {
+        this.registry = registry;
+        this.game = game;
+        this.borrowTimer = register(Timer.builder("red95.pool.borrow")
+                .description("从连接池借连接的等待时间")
+                .tag("game", game)
+                .publishPercentiles(0.5, 0.99)
+                .register(registry));
+    }
+
+    /**
+     * 记录一次 sendRequest
+     *
+     * @param command 命令名
+     * @param outcome {@link #OK} 或 GameAPIError 错误码
+     * @param nanos   耗时
+     */
+    public void recordCommand(String command, String outcome, long nanos) {
+        commandTimers.computeIfAbsent(command + '|' + outcome, key -> register(Timer.builder("red95.game.command")
+                        .description("游戏命令的请求耗时")
+                        .tags("game", game, "command", command, "outcome", outcome)
+                        .publishPercentiles(0.5, 0.9, 0.99)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(1))
+                        .maximumExpectedValue(Duration.ofSeconds(30))
+                        .register(registry)))
+                .record(Duration.ofNanos(nanos));
+        if (!OK.equals(outcome)) {
+            errors.computeIfAbsent(command + '|' + outcome, key -> register(Counter.builder("red95.game.errors")
+                            .description("按错误码统计的游戏命令失败次数")
+                            .tags("game", game, "command", command, "code", outcome)
+                            .register(registry)))
+                    .increment();
+        }
+    }
+
+    public void recordBytes(String command, long sent, long received) {
+        bytesOut.computeIfAbsent(command, key -> bytes(command, "out")).record(sent);
+        bytesIn.computeIfAbsent(command, key -> bytes(command, "in")).record(received);
+    }
+
+    private DistributionSummary bytes(String command, String direction) {
+        return register(DistributionSummary.builder("red95.game.bytes")
+                .description("游戏命令的请求/响应大小")
+                .baseUnit("bytes")
+                .tags("game", game, "command", command, "direction", direction)
+                .register(registry));
+    }
+
+    /**
+     * 记录一次压缩响应的解压
+     *
+     * @param compressed 线上的字节数
+     * @param inflated   解压后的字节数
+     * @param nanos      解压耗时，解压是纯计算，近似为 CPU 开销
+     */
+    public void recordCompression(String command, long compressed, long inflated, long nanos) {
+        compressionRatios.computeIfAbsent(command, key -> register(DistributionSummary.builder("red95.game.compression.ratio")
+                        .description("压缩响应解压后与压缩后的字节数之比")
+                        .tags("game", game, "command", command)
+                        .register(registry)))
+                .record(compressed > 0 ? (double) inflated / compressed : 0);
+        compressionTimers.computeIfAbsent(command, key -> register(Timer.builder("red95.game.compression.time")
+                        .description("压缩响应的解压耗时")
+                        .tags("game", game, "command", command)
+                        .publishPercentiles(0.5, 0.99)
+                        .register(registry)))
+                .record(Duration.ofNanos(nanos));
+    }
+
+    public void recordRetry(String command) {
+        retries.computeIfAbsent(command, key -> register(Counter.builder("red95.game.retries")
+                        .description("连接失败后的重试次数")
+                        .tags("game", game, "command", command)
+                        .register(registry)))
+                .increment();
+    }
+
+    public void recordBorrow(long nanos) {
+        borrowTimer.record(Duration.ofNanos(nanos));
+    }
+
+    /**
+     * 注册连接数指标
+     *
+     * @param state       连接状态标签：open(已打开)、idle(空闲)、borrowed(借出)
+     * @param connections 该状态的连接数，连接池未初始化时返回0
+     */
+    public void bindPool(String state, Supplier<Number> connections) {
+        register(Gauge.builder("red95.pool.connections", connections)
+                .description("连接池中的连接数")
+                .tags("game", game, "state", state)
+                .strongReference(true)
+                .register(registry));
+    }
+
+    /**
+     * 注册熔断器状态指标
+     *
+     * @param state 熔断器状态的序号，见 CircuitBreaker.State
+     */
+    public void bindBreaker(Supplier<Number> state) {
+        register(Gauge.builder("red95.breaker.state", state)
+                .description("熔断器状态：0关闭、1熔断、2探测中")
+                .tag("game", game)
+                .strongReference(true)
+                .register(registry));
+    }
+
+    /**
+     * 注册往返时间指标
+     *
+     * @param rttMillis 平滑后的 RTT 毫秒数，还没有测量过时为 -1
+     */
+    public void bindRtt(Supplier<Number> rttMillis) {
+        register(Gauge.builder("red95.game.rtt", rttMillis)
+                .description("小控制命令(含保活 ping)测得的平滑往返时间")
+                .baseUnit("milliseconds")
+                .tag("game", game)
+                .strongReference(true)
+                .register(registry));
+    }
+
+    /**
+     * 注册查询缓存指标
+     *
+     * @param result hit(命中)、miss(访问游戏)、coalesced(等待进行中的相同查询)
+     * @param count  累计次数
+     */
+    public void bindQueryCache(String result, Supplier<Number> count) {
+        register(FunctionCounter.builder("red95.query.cache", count, c -> c.get().doubleValue())
+                .description("query_actor 缓存的查询次数")
+                .tags("game", game, "result", result)
+                .register(registry));
+    }
+
+    public void bindQueryCacheHitRatio(Supplier<Number> ratio) {
+        register(Gauge.builder("red95.query.cache.hit.ratio", ratio)
+                .description("query_actor 不需要访问游戏的查询占比")
+                .tag("game", game)
+                .strongReference(true)
+                .register(registry));
+    }
+
+    public void bindMapLayers(Supplier<Number> offHeapBytes) {
+        register(Gauge.builder("red95.map.layers.offheap", offHeapBytes)
+                .description("地图图层占用的堆外内存")
+                .baseUnit("bytes")
+                .tag("game", game)
+                .strongReference(true)
+                .register(registry));
+    }
+
+    private <T extends Meter> T register(T meter) {
+        meters.add(meter);
+        return meter;
+    }
+
+    /**
+     * 会话关闭时移除该游戏的全部指标，避免回收的会话在 /actuator/prometheus 中残留
+     */
+    public void close() {
+        for (Meter meter : meters) {
+            registry.remove(meter);
+        }
+        meters.clear();
+        commandTimers.clear();
+        bytesOut.clear();
+        bytesIn.clear();
+        retries.clear();
+        errors.clear();
+        compressionRatios.clear();
+        compressionTimers.clear();
+    }
+}
@@ -0,0 +1,99 @@
+package com.hoppinzq.red95.metrics;
+
+import com.hoppinzq.red95.service.GameSocketAPI;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 包装工具回调，记录每次 @Tool 调用的耗时到 red95.tool.invocation，
+ * tool 标签为工具名，outcome 为 ok、GameAPIError 错误码或异常类名；
+ * 成功返回时把返回给模型的字节数记录到 red95.tool.response
+ */
+public class MeteredToolCallback implements ToolCallback {
+    private final ToolCallback delegate;
+    private final MeterRegistry registry;
+    private final String tool;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final DistributionSummary responseBytes;
+
+    public MeteredToolCallback(ToolCallback delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.registry = registry;
+        this.tool = delegate.getToolDefinition().name();
+        this.responseBytes = DistributionSummary.builder("red95.tool.response")
+                .description("MCP工具返回给模型的大小")
+                .baseUnit("bytes")
+                .tag("tool", tool)
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return record(() -> delegate.call(toolInput));
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        return record(() -> delegate.call(toolInput, toolContext));
+    }
+
+    private String record(Supplier<String> call) {
+        long start = System.nanoTime();
+        String outcome = GameMetrics.OK;
+        try {
+            String result = call.get();
+            if (result != null) {
+                responseBytes.record(result.getBytes(StandardCharsets.UTF_8).length);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            timer(outcome).record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    // 工具方法抛出的异常可能被框架包装，取最内层的 GameAPIError
+    private static String outcomeOf(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof GameSocketAPI.GameAPIError) {
+                return ((GameSocketAPI.GameAPIError) t).getCode();
+            }
+        }
+        return e.getClass().getSimpleName();
+    }
+
+    private Timer timer(String outcome) {
+        return timers.computeIfAbsent(outcome, key -> Timer.builder("red95.tool.invocation")
+                .description("MCP工具调用耗时")
+                .tags("tool", tool, "outcome", outcome)
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(2))
+                .register(registry));
+    }
+}
@@ -0,0 +1,113 @@
+package com.hoppinzq.red95.model;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 一局游戏的地图图层堆外内存。每次地图查询租用一块 direct ByteBuffer，最多同时保留 retained 块，
+ * 超出时回收最早的一块(其 MapQueryResult 随之失效，再访问抛出 IllegalStateException)并给新的地图复用，
+ * 堆外内存的上限是 retained × 地图大小，不随查询次数增长，也不依赖 GC 回收 direct 内存。
+ * 会话关闭时 {@link #close()} 回收全部内存。
+ */
+public class MapLayerArena implements AutoCloseable {
+    private final MapLayerConfig config;
+    private final Deque<Lease> live = new ArrayDeque<>();  // 租用中，最早的在前
+    private final Deque<ByteBuffer> free = new ArrayDeque<>();  // 已回收、可以复用的内存
+    private long offHeapBytes;
+    private boolean closed;
+
+    /**
+     * 租用的一块内存，valid 在回收时置为 false
+     */
+    public static final class Lease {
+        private final ByteBuffer backing;
+        private final ByteBuffer buffer;
+        private volatile boolean valid = true;
+
+        private Lease(ByteBuffer backing, int bytes) {
+            this.backing = backing;
+            this.buffer = backing.slice(0, bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+    }
+
+    public MapLayerArena(MapLayerConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * @param cells 地图格子数
+     * @param bytes 需要的字节数
+     * @return 堆外内存；未开启、地图太小或已关闭时返回 null，由调用方使用堆内存
+     */
+    public synchronized Lease allocate(int cells, int bytes) {
+        if (closed || !config.isOffHeap() || cells < config.getMinCells()) {
+            return null;
+        }
+        while (live.size() >= Math.max(1, config.getRetained())) {
+            retire(live.pollFirst());
+        }
+        ByteBuffer backing = null;
+        for (ByteBuffer candidate : free) {
+            if (candidate.capacity() >= bytes) {
+                backing = candidate;
+                break;
+            }
+        }
+        if (backing != null) {
+            free.remove(backing);
+        } else {
+            backing = ByteBuffer.allocateDirect(bytes);
+            offHeapBytes += bytes;
+        }
+        Lease lease = new Lease(backing, bytes);
+        live.addLast(lease);
+        return lease;
+    }
+
+    private void retire(Lease lease) {
+        lease.valid = false;
+        // 与 MapLayers 读取后的读屏障配对：新地图写入复用的内存之前，读者一定能看到租约已失效
+        VarHandle.fullFence();
+        free.addFirst(lease.backing);
+        // 地图尺寸变了(换图)时旧尺寸的内存不再用得上，只保留 retained 块
+        while (free.size() > Math.max(1, config.getRetained())) {
+            offHeapBytes -= free.pollLast().capacity();
+        }
+    }
+
+    /**
+     * @return 已分配的堆外字节数(租用中和可复用的)
+     */
+    public synchronized long getOffHeapBytes() {
+        return offHeapBytes;
+    }
+
+    public synchronized int getLiveCount() {
+        return live.size();
+    }
+
+    /**
+     * 回收全部内存，之后的分配返回 null；direct 内存在 ByteBuffer 被回收时释放
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Lease lease : live) {
+            lease.valid = false;
+        }
+        live.clear();
+        free.clear();
+        offHeapBytes = 0;
+    }
+}
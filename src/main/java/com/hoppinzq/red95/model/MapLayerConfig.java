@@ -0,0 +1,13 @@
+package com.hoppinzq.red95.model;
+
+import lombok.Data;
+
+/**
+ * 地图图层堆外存储配置，对应 application.yml 中的 red95.map-layers 节点，每局游戏一个 {@link MapLayerArena}
+ */
+@Data
+public class MapLayerConfig {
+    private boolean offHeap = false;  // 大地图的图层放在堆外(direct ByteBuffer)；开启后较早的结果会被回收，调用方不能长期持有 MapQueryResult
+    private int minCells = 65536;  // 格子数不少于该值(默认256×256)的地图才放在堆外，小地图放在堆内更省事
+    private int retained = 4;  // 每局游戏保留的堆外地图数，更早的地图被回收，其内存给新的地图复用；应不少于同时进行的地图查询数
+}
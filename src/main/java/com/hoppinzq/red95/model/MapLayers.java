@@ -0,0 +1,281 @@
+package com.hoppinzq.red95.model;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+/**
+ * 地图图层的紧凑存储：六个图层依次存放在一块小端 ByteBuffer 中，每个图层按 [x][y] 顺序展开，下标为 x * rows + y；
+ * 地形和资源类型存为各自字典的下标(-1表示null)。大地图的 ByteBuffer 从每局游戏的 {@link MapLayerArena} 租用堆外内存，
+ * 小地图使用堆内 ByteBuffer。{@link MapQueryResult} 的各个 List getter 是这里的只读视图，访问时才装箱。
+ * <pre>
+ * 图层           每格字节  起始位置
+ * Height         4         0
+ * IsVisible      1         4 × 格子数
+ * IsExplored     1         5 × 格子数
+ * Terrain        2         6 × 格子数
+ * ResourcesType  2         8 × 格子数
+ * Resources      4         10 × 格子数
+ * </pre>
+ * 这与帧通道中地图帧的图层部分相同，帧可以整块拷贝进来。
+ */
+public final class MapLayers {
+    public static final int BYTES_PER_CELL = 14;
+
+    private final int columns;  // 网格的列数(x 方向)
+    private final int rows;  // 每列的格子数(y 方向)
+    private final ByteBuffer cells;
+    private final int present;  // 游戏返回了的图层，按 Layer 序号的位
+    private final String[] terrainNames;
+    private final String[] resourcesTypeNames;
+    private final MapLayerArena.Lease lease;  // 堆外内存的租约，堆内时为 null
+
+    /**
+     * 图层及其在 ByteBuffer 中的位置
+     */
+    public enum Layer {
+        HEIGHT("Height", 0),
+        VISIBLE("IsVisible", 4),
+        EXPLORED("IsExplored", 5),
+        TERRAIN("Terrain", 6),
+        RESOURCES_TYPE("ResourcesType", 8),
+        RESOURCES("Resources", 10);
+
+        private final String field;
+        private final int start;  // 起始位置是格子数的几倍
+
+        Layer(String field, int start) {
+            this.field = field;
+            this.start = start;
+        }
+
+        /**
+         * @return map_query 响应中的字段名
+         */
+        public String getField() {
+            return field;
+        }
+
+        public static Layer ofField(String field) {
+            for (Layer layer : values()) {
+                if (layer.field.equals(field)) {
+                    return layer;
+                }
+            }
+            return null;
+        }
+    }
+
+    private MapLayers(Builder builder) {
+        this.columns = builder.columns;
+        this.rows = builder.rows;
+        this.cells = builder.cells;
+        this.present = builder.present;
+        this.terrainNames = builder.terrainNames;
+        this.resourcesTypeNames = builder.resourcesTypeNames;
+        this.lease = builder.lease;
+    }
+
+    /**
+     * @param arena 堆外内存，为 null 或地图较小时使用堆内存
+     */
+    public static Builder builder(int columns, int rows, MapLayerArena arena) {
+        return new Builder(columns, rows, arena);
+    }
+
+    /**
+     * 按图层写入，不同图层可以由不同线程并发写入；字符串图层的字典在 {@link #names} 中给出
+     */
+    public static final class Builder {
+        private final int columns;
+        private final int rows;
+        private final int count;
+        private final ByteBuffer cells;
+        private final MapLayerArena.Lease lease;
+        private int present;
+        private String[] terrainNames;
+        private String[] resourcesTypeNames;
+
+        private Builder(int columns, int rows, MapLayerArena arena) {
+            this.columns = columns;
+            this.rows = rows;
+            this.count = Math.multiplyExact(columns, rows);
+            int bytes = Math.multiplyExact(count, BYTES_PER_CELL);
+            this.lease = arena == null ? null : arena.allocate(count, bytes);
+            this.cells = lease != null ? lease.buffer() : ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        public int getColumns() {
+            return columns;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * @return 全部图层所在的缓冲区，按类说明中的布局整块写入时使用
+         */
+        public ByteBuffer cells() {
+            return cells;
+        }
+
+        public void setInt(Layer layer, int index, int value) {
+            cells.putInt(layer.start * count + index * 4, value);
+        }
+
+        public void setBoolean(Layer layer, int index, boolean value) {
+            cells.put(layer.start * count + index, (byte) (value ? 1 : 0));
+        }
+
+        public void setCode(Layer layer, int index, short code) {
+            cells.putShort(layer.start * count + index * 2, code);
+        }
+
+        /**
+         * 字符串图层的字典
+         */
+        public synchronized Builder names(Layer layer, String[] names) {
+            if (layer == Layer.TERRAIN) {
+                terrainNames = names;
+            } else if (layer == Layer.RESOURCES_TYPE) {
+                resourcesTypeNames = names;
+            }
+            return this;
+        }
+
+        /**
+         * 标记图层已写完
+         */
+        public synchronized Builder present(Layer layer) {
+            present |= 1 << layer.ordinal();
+            return this;
+        }
+
+        /**
+         * @throws IllegalStateException 写入期间堆外内存已被更新的地图回收(同时进行的地图查询多于 retained)
+         */
+        public synchronized MapLayers build() {
+            if (lease != null && !lease.isValid()) {
+                throw new IllegalStateException("地图图层的堆外内存在写入期间被回收，请调大 red95.map-layers.retained");
+            }
+            return new MapLayers(this);
+        }
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public boolean isOffHeap() {
+        return lease != null;
+    }
+
+    public boolean has(Layer layer) {
+        return (present & 1 << layer.ordinal()) != 0;
+    }
+
+    public int getInt(Layer layer, int x, int y) {
+        return checked(cells.getInt(layer.start * columns * rows + index(x, y) * 4));
+    }
+
+    public boolean getBoolean(Layer layer, int x, int y) {
+        return checked(cells.get(layer.start * columns * rows + index(x, y))) != 0;
+    }
+
+    public String getName(Layer layer, int x, int y) {
+        int code = checked(cells.getShort(layer.start * columns * rows + index(x, y) * 2));
+        return code < 0 ? null : (layer == Layer.TERRAIN ? terrainNames : resourcesTypeNames)[code];
+    }
+
+    private int index(int x, int y) {
+        if (x < 0 || x >= columns || y < 0 || y >= rows) {
+            throw new IndexOutOfBoundsException("(" + x + "," + y + ")超出" + columns + "×" + rows + "的网格");
+        }
+        return x * rows + y;
+    }
+
+    // 先读再检查租约：读的同时内存被回收复用时，读到的值作废。
+    // volatile 读不阻止之前的普通读被重排到它之后，需要显式的读屏障保证先读值、后检查租约
+    private int checked(int value) {
+        if (lease == null) {
+            return value;
+        }
+        VarHandle.loadLoadFence();
+        if (!lease.isValid()) {
+            throw new IllegalStateException("地图数据已被回收：每局游戏只保留最近的若干份堆外地图，请重新查询");
+        }
+        return value;
+    }
+
+    /**
+     * @return 基于这些图层的查询结果，mapWidth/mapHeight 取游戏返回的值，可能与网格尺寸不同
+     */
+    public MapQueryResult toResult(int mapWidth, int mapHeight) {
+        return new MapQueryResult(mapWidth, mapHeight,
+                grid(Layer.HEIGHT, (x, y) -> getInt(Layer.HEIGHT, x, y)),
+                grid(Layer.VISIBLE, (x, y) -> getBoolean(Layer.VISIBLE, x, y)),
+                grid(Layer.EXPLORED, (x, y) -> getBoolean(Layer.EXPLORED, x, y)),
+                grid(Layer.TERRAIN, (x, y) -> getName(Layer.TERRAIN, x, y)),
+                grid(Layer.RESOURCES_TYPE, (x, y) -> getName(Layer.RESOURCES_TYPE, x, y)),
+                grid(Layer.RESOURCES, (x, y) -> getInt(Layer.RESOURCES, x, y)));
+    }
+
+    private interface Cell<T> {
+        T get(int x, int y);
+    }
+
+    private <T> List<List<T>> grid(Layer layer, Cell<T> cell) {
+        return has(layer) ? new Grid<>(x -> new Column<>(cell, x)) : List.of();
+    }
+
+    // 一个图层的 [x][y] 只读视图
+    private final class Grid<T> extends AbstractList<List<T>> implements RandomAccess {
+        private final IntFunction<List<T>> column;
+
+        Grid(IntFunction<List<T>> column) {
+            this.column = column;
+        }
+
+        @Override
+        public List<T> get(int x) {
+            if (x < 0 || x >= columns) {
+                throw new IndexOutOfBoundsException("x=" + x + "，列数" + columns);
+            }
+            return column.apply(x);
+        }
+
+        @Override
+        public int size() {
+            return columns;
+        }
+    }
+
+    private final class Column<T> extends AbstractList<T> implements RandomAccess {
+        private final Cell<T> cell;
+        private final int x;
+
+        Column(Cell<T> cell, int x) {
+            this.cell = cell;
+            this.x = x;
+        }
+
+        @Override
+        public T get(int y) {
+            return cell.get(x, y);
+        }
+
+        @Override
+        public int size() {
+            return rows;
+        }
+    }
+}
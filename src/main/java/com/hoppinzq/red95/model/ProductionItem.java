@@ -0,0 +1,29 @@
+package com.hoppinzq.red95.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 生产队列中的一个项目
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductionItem {
+    private String name;  // 游戏内部代码
+    private String chineseName;  // 中文名称
+    private String status;  // 状态：completed, in_progress, paused, waiting
+    private int progressPercent;  // 完成百分比
+    private int remainingTime;  // 剩余时间
+    private int totalTime;  // 总时间
+    private int ownerActorId;  // 所属生产建筑ID
+    private boolean done;  // 是否已完成
+
+    // 优先使用中文名称展示
+    public String displayName() {
+        return chineseName != null && !chineseName.isEmpty() ? chineseName : name;
+    }
+}
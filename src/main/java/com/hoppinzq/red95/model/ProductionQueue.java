@@ -0,0 +1,28 @@
+package com.hoppinzq.red95.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 生产队列查询结果
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductionQueue {
+    public static final List<String> QUEUE_TYPES = List.of("Building", "Defense", "Infantry", "Vehicle", "Aircraft", "Naval");
+
+    private String queueType;  // 队列类型
+    private List<ProductionItem> items;  // 队列中的项目，第0个为队首
+    private boolean hasReadyItem;  // 是否有已完成待放置的项目
+
+    // 建筑和防御队列完成后需要放置
+    public boolean needsPlacement() {
+        return hasReadyItem && ("Building".equals(queueType) || "Defense".equals(queueType));
+    }
+}
@@ -0,0 +1,32 @@
+package com.hoppinzq.red95.model;
+
+import lombok.Data;
+
+/**
+ * 生产调度请求，由生产调度器排队并在资金、电力满足时下发
+ */
+@Data
+public class ProductionRequest {
+    private final long id;  // 调度请求ID
+    private final String unitType;  // 单位/建筑类型(中文)
+    private final int quantity;  // 生产数量
+    private final int priority;  // 优先级，越大越先处理
+    private final int cost;  // 预估总花费
+    private final long createdAt;  // 入队时间(毫秒)
+    private volatile Status status = Status.QUEUED;  // 当前状态
+    private volatile Integer waitId;  // 下发后游戏返回的waitId
+    private volatile String message;  // 状态说明
+
+    public enum Status {
+        QUEUED,  // 排队中
+        WAITING_FUNDS,  // 资金不足，等待中
+        WAITING_PREREQUISITES,  // 等待自动插入的前置建筑下发、建成
+        BLOCKED,  // 当前无法生产(生产队列被占用、前置建筑生产失败等)
+        DISPATCHED,  // 已下发到游戏
+        FAILED  // 下发失败
+    }
+
+    public boolean isPending() {
+        return status != Status.DISPATCHED && status != Status.FAILED;
+    }
+}
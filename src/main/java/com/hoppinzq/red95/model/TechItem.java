@@ -0,0 +1,30 @@
+package com.hoppinzq.red95.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 科技树中的一项(建筑或单位)，数据来自 tech-tree.json
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TechItem {
+    private String name;  // 中文名称，与游戏中的单位类型一致
+    private String code;  // 游戏内部代码，如 powr、e1
+    private String queue;  // 所属生产队列：Building, Defense, Infantry, Vehicle, Aircraft, Naval
+    private int cost;  // 价格
+    private int buildTime;  // 建造时间(秒)
+    private int power;  // 电力，正数为提供电力，负数为消耗电力
+    private List<String> prerequisites = new ArrayList<>();  // 直接前置建筑
+    private List<String> categories = new ArrayList<>();  // 所属类别，如 士兵、载具、坦克、战斗单位、建筑
+
+    // 是否为需要放置的建筑(包括防御建筑)
+    public boolean isBuilding() {
+        return "Building".equals(queue) || "Defense".equals(queue);
+    }
+}
@@ -0,0 +1,181 @@
+package com.hoppinzq.red95.rules;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hoppinzq.red95.model.TechItem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * 科技树，从规则文件加载前置依赖、价格和建造时间。
+ * 加载时按拓扑序重新编号并预计算每一项的传递前置集合(BitSet)，
+ * 因此"还缺哪些建筑"只需一次位运算，且结果天然按建造顺序排列。
+ */
+public class TechTree {
+    public static final String DEFAULT_RESOURCE = "tech-tree.json";
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static volatile TechTree defaultTree;
+
+    private final TechItem[] items;  // 按拓扑序排列，前置总在前面
+    private final Map<String, Integer> index = new HashMap<>();  // 名称/代码 -> 拓扑序号
+    private final BitSet[] closure;  // 每一项的全部传递前置(不含自身)
+
+    private TechTree(List<TechItem> source) {
+        Map<String, TechItem> byName = new LinkedHashMap<>();
+        for (TechItem item : source) {
+            if (byName.put(item.getName(), item) != null) {
+                throw new IllegalStateException("科技树中存在重复项: " + item.getName());
+            }
+        }
+
+        // 深度优先求拓扑序，同时检测环
+        List<TechItem> ordered = new ArrayList<>(byName.size());
+        Map<String, Boolean> visiting = new HashMap<>();
+        for (TechItem item : byName.values()) {
+            visit(item, byName, visiting, ordered);
+        }
+
+        this.items = ordered.toArray(new TechItem[0]);
+        this.closure = new BitSet[items.length];
+        for (int i = 0; i < items.length; i++) {
+            index.put(items[i].getName(), i);
+            if (items[i].getCode() != null) {
+                index.put(items[i].getCode(), i);
+            }
+        }
+        for (int i = 0; i < items.length; i++) {
+            BitSet bits = new BitSet(items.length);
+            for (String prerequisite : items[i].getPrerequisites()) {
+                int p = index.get(prerequisite);
+                bits.set(p);
+                bits.or(closure[p]);  // p 在拓扑序中一定排在 i 之前，已计算完毕
+            }
+            closure[i] = bits;
+        }
+    }
+
+    private static void visit(TechItem item, Map<String, TechItem> byName,
+                              Map<String, Boolean> visiting, List<TechItem> ordered) {
+        Boolean state = visiting.get(item.getName());
+        if (Boolean.FALSE.equals(state)) {
+            return;
+        }
+        if (Boolean.TRUE.equals(state)) {
+            throw new IllegalStateException("科技树存在循环依赖: " + item.getName());
+        }
+        visiting.put(item.getName(), true);
+        for (String prerequisite : item.getPrerequisites()) {
+            TechItem dep = byName.get(prerequisite);
+            if (dep == null) {
+                throw new IllegalStateException(item.getName() + " 的前置 " + prerequisite + " 不在科技树中");
+            }
+            visit(dep, byName, visiting, ordered);
+        }
+        visiting.put(item.getName(), false);
+        ordered.add(item);
+    }
+
+    /**
+     * 从classpath加载科技树
+     *
+     * @param resource 资源路径
+     * @return 科技树
+     */
+    public static TechTree load(String resource) {
+        try (InputStream in = TechTree.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("找不到科技树规则文件: " + resource);
+            }
+            JsonNode root = objectMapper.readTree(in);
+            TechItem[] items = objectMapper.treeToValue(root.get("items"), TechItem[].class);
+            return new TechTree(Arrays.asList(items));
+        } catch (IOException e) {
+            throw new IllegalStateException("读取科技树规则文件失败: " + resource, e);
+        }
+    }
+
+    public static TechTree getDefault() {
+        if (defaultTree == null) {
+            synchronized (TechTree.class) {
+                if (defaultTree == null) {
+                    defaultTree = load(DEFAULT_RESOURCE);
+                }
+            }
+        }
+        return defaultTree;
+    }
+
+    public TechItem find(String name) {
+        Integer i = name == null ? null : index.get(name);
+        return i == null ? null : items[i];
+    }
+
+    public boolean contains(String name) {
+        return find(name) != null;
+    }
+
+    public int getCost(String name) {
+        TechItem item = find(name);
+        return item == null ? 0 : item.getCost();
+    }
+
+    public int getPower(String name) {
+        TechItem item = find(name);
+        return item == null ? 0 : item.getPower();
+    }
+
+    public boolean isBuilding(String name) {
+        TechItem item = find(name);
+        return item != null && item.isBuilding();
+    }
+
+    /**
+     * @return 按拓扑序排列的全部科技项
+     */
+    public List<TechItem> getItems() {
+        return List.of(items);
+    }
+
+    /**
+     * 把已拥有的建筑名称转换成位集合，未知名称会被忽略
+     */
+    public BitSet toBits(Collection<String> names) {
+        BitSet bits = new BitSet(items.length);
+        for (String name : names) {
+            Integer i = index.get(name);
+            if (i != null) {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * 计算生产某项还缺少的前置建筑
+     *
+     * @param name  建筑或单位名称
+     * @param owned 已拥有的建筑(toBits的结果)
+     * @return 缺少的前置建筑，按可建造顺序排列；未知名称返回空列表
+     */
+    public List<String> missing(String name, BitSet owned) {
+        Integer i = index.get(name);
+        if (i == null) {
+            return List.of();
+        }
+        BitSet need = (BitSet) closure[i].clone();
+        need.andNot(owned);
+        List<String> result = new ArrayList<>(need.cardinality());
+        for (int b = need.nextSetBit(0); b >= 0; b = need.nextSetBit(b + 1)) {
+            result.add(items[b].getName());
+        }
+        return result;
+    }
+
+    public List<String> missing(String name, Collection<String> owned) {
+        return missing(name, toBits(owned));
+    }
+}
@@ -3,19 +3,34 @@ package com.hoppinzq.red95.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hoppinzq.red95.config.Red95Properties;
+import com.hoppinzq.red95.frame.FrameChannel;
+import com.hoppinzq.red95.frame.FrameChannelConfig;
+import com.hoppinzq.red95.metrics.GameMetrics;
 import com.hoppinzq.red95.model.*;
+import com.hoppinzq.red95.rules.TechTree;
+import com.hoppinzq.red95.socket.CircuitBreaker;
+import com.hoppinzq.red95.socket.CompressionConfig;
+import com.hoppinzq.red95.socket.Keepalive;
+import com.hoppinzq.red95.socket.ReconnectConfig;
+import com.hoppinzq.red95.socket.ReconnectSupervisor;
+import com.hoppinzq.red95.socket.GameConnection;
 import com.hoppinzq.red95.socket.SocketPool;
+import com.hoppinzq.red95.socket.SocketPoolConfig;
+import com.hoppinzq.red95.socket.Transport;
+import com.hoppinzq.red95.socket.WireCompression;
+import com.hoppinzq.red95.tracing.Span;
+import com.hoppinzq.red95.tracing.Tracer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.ConnectException;
-import java.net.Socket;
-import java.net.SocketTimeoutException;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
 
 /**
  * 游戏socket接口类，提供与游戏服务器的通信功能。
@@ -27,48 +42,155 @@ import java.util.*;
 public class GameSocketAPI {
     private static final String API_VERSION = "1.0";
     private static final int MAX_RETRIES = 3;
-    private static final long RETRY_DELAY = 50000; // 50秒
     private static final ObjectMapper objectMapper = new ObjectMapper();
-    // 类成员变量 - 建筑依赖关系，前者能建造的前提是后者已经建造完成
-    public static final Map<String, List<String>> BUILDING_DEPENDENCIES = Map.of(
-            "电厂", List.of(),
-            "兵营", List.of("电厂"),
-            "矿场", List.of("电厂"),
-            "车间", List.of("矿场"),
-            "雷达", List.of("矿场"),
-            "维修中心", List.of("车间"),
-            "核电", List.of("雷达"),
-            "科技中心", List.of("车间", "雷达"),
-            "机场", List.of("雷达")
-    );
-    // 类成员变量 - 单位依赖关系，前者能建造的前提是后者已经建造完成
-    public static final Map<String, List<String>> UNIT_DEPENDENCIES = Map.of(
-            "步兵", List.of("兵营"),
-            "火箭兵", List.of("兵营"),
-            "工程师", List.of("兵营"),
-            "手雷兵", List.of("兵营"),
-            "矿车", List.of("车间"),
-            "防空车", List.of("车间"),
-            "装甲车", List.of("车间"),
-            "重坦", List.of("车间", "维修中心"),
-            "v2", List.of("车间", "雷达"),
-            "猛犸坦克", List.of("车间", "维修中心", "科技中心")
-    );
-
+    private static final ResponseParser JSON_PARSER = body -> objectMapper.readValue(body,
+            new TypeReference<Map<String, Object>>() {
+            });
+    private static final MapQueryParser mapQueryParser = new MapQueryParser(objectMapper);
+    private static final long CAN_PRODUCE_CACHE_MILLIS = 1000; // 生产能力查询结果的缓存时间
+    // 游戏处理很快、响应很小的控制命令，它们从发出到读完响应的时间作为 RTT 样本，不必等空闲 ping
+    private static final Set<String> RTT_COMMANDS = Set.of("ping", "query_wait_info", "query_production_queue",
+            "player_baseinfo_query", "query_can_produce");
+    private static final int RTT_MAX_RESPONSE_BYTES = 4096;  // 响应超过该字节数时传输时间占比过大，不作为 RTT 样本
     private String host;
     private int port;
     private String language;
+    // 科技树，提供前置依赖、价格和电力，取代原先写死的依赖表
+    private final TechTree techTree = TechTree.getDefault();
+    // 生产能力查询缓存：单位类型 -> [是否可生产(1/0), 查询时间]
+    private final Map<String, long[]> canProduceCache = new ConcurrentHashMap<>();
+    // 以 autoPlaceBuilding 下发的建筑：中文名 -> 预计由游戏放置完的时间，生产队列监视器在此之前不代为放置
+    private final Map<String, Long> autoPlaceUntil = new ConcurrentHashMap<>();
+    private volatile boolean queueBatchUnsupported;  // 游戏不支持一次查询多个生产队列时退回逐个查询
+    private volatile boolean canProduceBatchUnsupported;  // 游戏对多个类型只返回一个总结果时，之后直接逐个查询
+
+    // 每个实例独占自己的连接池，多个游戏实例互不干扰
+    private volatile SocketPool pool = null;
+    private final GameMetrics metrics;
+    private final Tracer tracer = Tracer.get();
+
+    private final SocketPoolConfig poolConfig;
+    // TCP 或 Unix 域套接字，协议相同
+    private final Transport transport;
+    // 游戏不可用时快速失败，连接池重建后仍沿用，状态不随 close/init 重置
+    private final CircuitBreaker breaker;
+    // 熔断后在后台按退避间隔探测，恢复后关闭熔断
+    private final ReconnectSupervisor supervisor;
+    private final ReconnectConfig reconnectConfig;
+    // 空闲时补发 ping，维护 RTT、存活和最近响应时间
+    private final Keepalive keepalive;
+    // query_actor 结果缓存，写命令执行后失效
+    private final QueryCache queryCache;
+    // map_query/query_actor 的结果改走共享内存时的帧通道，第一次查询时打开，断线后重新打开
+    private final FrameChannelConfig frameConfig;
+    private volatile FrameChannel frames;
+    private volatile boolean framesUnsupported;  // 游戏不认识 frame_channel_open 时不再尝试
+    // 远程游戏时压缩大响应，在每个请求里声明，游戏不支持时忽略
+    private final CompressionConfig compression;
+    // 大地图图层的堆外内存，随本实例关闭
+    private final MapLayerArena mapLayerArena;
 
-    private static SocketPool pool = null;
-
+    /**
+     * 在 Spring 之外使用时的便捷构造，指标注册在本实例私有的 SimpleMeterRegistry 中，
+     * 不会在全局注册表里留下强引用本实例的 Gauge
+     */
     public GameSocketAPI(String host, int port, String language) {
+        this(host, port, null, language, new GameMetrics(new SimpleMeterRegistry(), host + ":" + port),
+                new Red95Properties());
+    }
+
+    /**
+     * @param unixSocket 游戏监听的 Unix 域套接字文件，为空时通过 TCP 连接 host:port
+     * @param properties 连接池、熔断、重连、缓存等配置，只读取其中与连接相关的部分
+     */
+    public GameSocketAPI(String host, int port, String unixSocket, String language, GameMetrics metrics,
+                         Red95Properties properties) {
         this.host = host;
         this.port = port;
         this.language = language;
+        this.metrics = metrics;
+        this.poolConfig = properties.getPool();
+        this.transport = Transport.of(host, port, unixSocket);
+        this.reconnectConfig = properties.getReconnect();
+        this.breaker = new CircuitBreaker(host + ":" + port, properties.getCircuitBreaker());
+        this.supervisor = new ReconnectSupervisor("游戏" + host + ":" + port, reconnectConfig, this::probe);
+        this.keepalive = new Keepalive("游戏" + host + ":" + port, properties.getKeepalive(),
+                () -> pool != null && breaker.getState() == CircuitBreaker.State.CLOSED,
+                () -> sendRequest("ping", new HashMap<>(), JSON_PARSER,
+                        (int) properties.getKeepalive().getPingTimeout().toMillis()));
+        this.queryCache = new QueryCache(properties.getQueryCache());
+        this.frameConfig = properties.getFrames();
+        this.compression = properties.getCompression();
+        this.mapLayerArena = new MapLayerArena(properties.getMapLayers());
+        metrics.bindRtt(keepalive::getRttMillis);
+        metrics.bindQueryCache("hit", queryCache::getHits);
+        metrics.bindQueryCache("miss", queryCache::getMisses);
+        metrics.bindQueryCache("coalesced", queryCache::getCoalesced);
+        metrics.bindQueryCacheHitRatio(queryCache::getHitRatio);
+        metrics.bindMapLayers(mapLayerArena::getOffHeapBytes);
+        metrics.bindBreaker(() -> breaker.getState().ordinal());
+        metrics.bindPool("open", () -> {
+            SocketPool current = pool;
+            return current == null ? 0 : current.getOpenCount();
+        });
+        metrics.bindPool("idle", () -> {
+            SocketPool current = pool;
+            return current == null ? 0 : current.getIdleCount();
+        });
+        metrics.bindPool("borrowed", () -> {
+            SocketPool current = pool;
+            return current == null ? 0 : current.getBorrowedCount();
+        });
+    }
+
+    /**
+     * 创建连接池并开始保活，不做任何 I/O，连接在第一次请求时或由后台按需建立
+     */
+    public synchronized void init() {
+        if (pool == null) {
+            pool = new SocketPool(transport, poolConfig);
+        }
+        keepalive.start();
+    }
+
+    public boolean isInitialized() {
+        return pool != null;
+    }
+
+    public void close() {
+        keepalive.stop();
+        supervisor.stop();
+        closeFrames(true);  // 连接池关闭前通知游戏释放映射文件
+        SocketPool current = pool;
+        pool = null;
+        if (current != null) {
+            current.closeAll();
+        }
+        mapLayerArena.close();
+    }
+
+    public GameMetrics getMetrics() {
+        return metrics;
+    }
+
+    public TechTree getTechTree() {
+        return techTree;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return breaker;
     }
 
-    public void init() {
-        pool = new SocketPool(host, port);
+    public ReconnectSupervisor getReconnectSupervisor() {
+        return supervisor;
+    }
+
+    public Keepalive getKeepalive() {
+        return keepalive;
+    }
+
+    public QueryCache getQueryCache() {
+        return queryCache;
     }
 
     public boolean isServerRunning() {
@@ -84,36 +206,268 @@ public class GameSocketAPI {
         }
     }
 
+    /**
+     * 响应体解析器，默认解析成 Map；map_query 用流式解析把图层直接读进基本类型数组
+     */
+    private interface ResponseParser {
+        Map<String, Object> parse(byte[] body) throws IOException;
+    }
+
     private Map<String, Object> sendRequest(String command, Map<String, Object> params) {
-        String requestId = UUID.randomUUID().toString();
+        return sendRequest(command, params, JSON_PARSER);
+    }
+
+    private Map<String, Object> sendRequest(String command, Map<String, Object> params, ResponseParser parser) {
+        return sendRequest(command, params, parser, 0);
+    }
+
+    /**
+     * @param readTimeoutMillis 本次请求读取响应的超时时间，0表示使用连接池的 readTimeout
+     */
+    private Map<String, Object> sendRequest(String command, Map<String, Object> params, ResponseParser parser,
+                                            int readTimeoutMillis) {
+        long start = System.nanoTime();
+        String outcome = GameMetrics.OK;
+        try (Span span = tracer.startSpan(command)) {
+            try {
+                if (!breaker.allowRequest()) {
+                    // 会话重建等情况下熔断仍打开但没有重连在进行，这里补发一次，已在重连中时不做任何事
+                    supervisor.requestReconnect("熔断中");
+                    throw unavailable();
+                }
+                return doSendRequest(command, params, span, MAX_RETRIES, parser, readTimeoutMillis);
+            } catch (GameAPIError e) {
+                outcome = e.getCode();
+                span.tag("error", e.getCode());
+                throw e;
+            } finally {
+                // 写命令失败时也可能已经在游戏中生效，一律让缓存失效
+                queryCache.onCommand(command);
+                metrics.recordCommand(command, outcome, System.nanoTime() - start);
+            }
+        }
+    }
+
+    // 重连探测，在监督器线程上执行：ping 成功(或游戏返回了业务错误)即关闭熔断，连接失败时抛出，等下次退避后重试
+    private void probe() {
+        if (pool == null) {
+            throw new GameAPIError("CONNECTION_ERROR", "连接池未初始化");
+        }
+        breaker.startProbe();
+        long start = System.nanoTime();
+        String outcome = GameMetrics.OK;
+        try (Span span = tracer.startSpan("probe")) {  // 监督器线程上没有追踪，得到的是空片段
+            doSendRequest("ping", new HashMap<>(), span, 1, JSON_PARSER, 0);
+        } catch (GameAPIError e) {
+            outcome = e.getCode();
+            if (breaker.getState() != CircuitBreaker.State.CLOSED) {
+                throw e;
+            }
+        } finally {
+            breaker.releaseProbe();
+            metrics.recordCommand("probe", outcome, System.nanoTime() - start);
+        }
+    }
+
+    private GameAPIError unavailable() {
+        return new GameAPIError("GAME_UNAVAILABLE", "游戏" + host + ":" + port + "不可用(已熔断)，"
+                + supervisor.nextAttemptInMillis() + "ms后自动重连，最近错误: " + breaker.getLastError());
+    }
+
+    // 记录一次连接失败，达到熔断阈值时交给监督器重连；重连已在进行时不会重复开启
+    private void connectionLost(String error) {
+        breaker.onFailure(error);
+        if (!breaker.allowRequest() && supervisor.requestReconnect(error)) {
+            SocketPool current = pool;
+            if (current != null) {
+                current.evictIdle();  // 断线前建好的空闲连接大概率已失效
+            }
+            closeFrames(false);  // 游戏可能已经重启，恢复后重新打开帧通道；此时连不上游戏，不再通知
+        }
+    }
+
+    /**
+     * 帧通道，未开启、游戏不支持或打开失败时返回 null，调用方照常走 JSON
+     */
+    private FrameChannel frames() {
+        FrameChannel current = frames;
+        if (current != null || !frameConfig.isEnabled() || framesUnsupported) {
+            return current;
+        }
+        synchronized (frameConfig) {
+            if (frames != null || framesUnsupported) {
+                return frames;
+            }
+            FrameChannel channel;
+            try {
+                channel = FrameChannel.create(frameConfig.getDirectory(), host + "_" + port,
+                        (int) frameConfig.getCapacity().toBytes(), mapLayerArena);
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("创建帧通道失败，map_query/query_actor 继续使用 JSON: {}", e.getMessage());
+                framesUnsupported = true;
+                return null;
+            }
+            try {
+                Map<String, Object> params = new HashMap<>();
+                params.put("path", channel.getPath().toString());
+                params.put("capacity", channel.getCapacity());
+                sendRequest("frame_channel_open", params);
+            } catch (GameAPIError e) {
+                closeQuietly(channel);
+                if (isConnectionError(e.getCode())) {
+                    return null;  // 游戏暂时不可用，下次查询再试
+                }
+                log.info("游戏{}不支持帧通道({}: {})，map_query/query_actor 继续使用 JSON", transport, e.getCode(),
+                        e.getMessage());
+                framesUnsupported = true;
+                return null;
+            }
+            log.info("游戏{}的帧通道已打开: {}", transport, channel);
+            frames = channel;
+            return channel;
+        }
+    }
+
+    private static boolean isConnectionError(String code) {
+        return "CONNECTION_ERROR".equals(code) || "POOL_EXHAUSTED".equals(code) || "GAME_UNAVAILABLE".equals(code);
+    }
+
+    /**
+     * @param notifyGame 是否先发送 frame_channel_close，让游戏解除映射、停止写帧
+     */
+    private void closeFrames(boolean notifyGame) {
+        FrameChannel current = frames;
+        frames = null;
+        if (current == null) {
+            return;
+        }
+        if (notifyGame) {
+            try {
+                sendRequest("frame_channel_close", Collections.emptyMap());
+            } catch (GameAPIError e) {
+                log.debug("通知游戏{}关闭帧通道失败: {}", transport, e.getMessage());
+            }
+        }
+        closeQuietly(current);
+    }
+
+    private static void closeQuietly(FrameChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("关闭帧通道{}失败: {}", channel, e.getMessage());
+        }
+    }
+
+    /**
+     * 响应中带 frame 序号时从帧通道取回结果，否则返回 null 由调用方解析 JSON(游戏缓冲区满时会直接回 JSON)
+     */
+    private Object awaitFrame(FrameChannel channel, Map<String, Object> result) {
+        Object seq = result.get("frame");
+        if (channel == null || !(seq instanceof Number)) {
+            return null;
+        }
+        Object decoded = channel.await(((Number) seq).longValue(), frameConfig.getFrameTimeout().toMillis());
+        if (decoded == null) {
+            throw new GameAPIError("FRAME_TIMEOUT", "等待帧" + seq + "超时: " + channel);
+        }
+        return decoded;
+    }
+
+    /**
+     * 尚未发出的请求遇到断线：熔断未打开时立即重试；否则挂起等待重连，最多 requeueTimeout，超时则失败
+     */
+    private void awaitReconnect(Span span) {
+        if (breaker.allowRequest()) {
+            return;
+        }
+        try (Span wait = tracer.startSpan("await_reconnect")) {
+            boolean reconnected;
+            try {
+                reconnected = supervisor.awaitConnected(reconnectConfig.getRequeueTimeout().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reconnected = false;
+            }
+            wait.tag("reconnected", reconnected);
+            if (!reconnected) {
+                span.tag("requeue", "timeout");
+                throw unavailable();
+            }
+        }
+    }
+
+    /**
+     * 发送请求。请求发出前断线(建连失败、写入失败)可以安全重试，在熔断时挂起等待重连；
+     * 请求发出后断线(读超时、连接被重置)游戏可能已经执行了命令，一律不重试，直接失败。
+     */
+    private Map<String, Object> doSendRequest(String command, Map<String, Object> params, Span span, int maxRetries,
+                                              ResponseParser parser, int readTimeoutMillis) {
+        // 在追踪中时请求ID由追踪ID和片段ID组成，游戏侧日志可以据此关联到具体的工具调用
+        String requestId = span.isNoop() ? UUID.randomUUID().toString() : span.getTraceId() + "-" + span.getId();
+        span.tag("requestId", requestId).tag("game", transport.toString());
         Map<String, Object> requestData = new HashMap<>();
         requestData.put("apiVersion", API_VERSION);
         requestData.put("requestId", requestId);
         requestData.put("command", command);
         requestData.put("params", params);
         requestData.put("language", this.language);
+        if (compression.isEnabled()) {
+            // 游戏可以用 deflate 压缩不小于 threshold 字节的响应
+            requestData.put("compression", Map.of("algorithm", WireCompression.ALGORITHM,
+                    "threshold", compression.getThreshold(), "level", compression.getLevel()));
+        }
+
+        SocketPool pool = this.pool;
+        if (pool == null) {
+            throw new GameAPIError("CONNECTION_ERROR", "连接池未初始化，游戏可能未启动");
+        }
 
         int retries = 0;
-        Socket socket = null;
-        InputStream in = null;
-        OutputStream out = null;
-        while (retries < MAX_RETRIES) {
+        while (true) {
+            GameConnection socket = null;
+            InputStream in = null;
+            OutputStream out = null;
+            boolean sent = false;
             try {
+                long borrowStart = System.nanoTime();
                 socket = pool.borrowSocket();
+                metrics.recordBorrow(System.nanoTime() - borrowStart);
+                if (readTimeoutMillis > 0) {
+                    socket.setReadTimeout(readTimeoutMillis);
+                }
 
                 // 发送请求
+                byte[] requestBytes = objectMapper.writeValueAsBytes(requestData);
+                long sentAt = System.nanoTime();
                 out = socket.getOutputStream();
-                out.write(objectMapper.writeValueAsBytes(requestData));
+                out.write(requestBytes);
                 out.flush();
+                sent = true;
 
                 // 接收响应
                 in = socket.getInputStream();
-                String responseData = receiveData(socket);
-
-                Map<String, Object> response = objectMapper.readValue(responseData,
-                        new TypeReference<Map<String, Object>>() {
-                        }
-                );
+                byte[] responseBytes = receiveData(in);
+                long rttNanos = RTT_COMMANDS.contains(command) && responseBytes.length <= RTT_MAX_RESPONSE_BYTES
+                        ? System.nanoTime() - sentAt : -1;
+                metrics.recordBytes(command, requestBytes.length, responseBytes.length);
+                span.tag("bytes.out", requestBytes.length).tag("bytes.in", responseBytes.length);
+                if (compression.isEnabled() && WireCompression.isCompressed(responseBytes)) {
+                    long inflateStart = System.nanoTime();
+                    byte[] inflated = WireCompression.inflate(responseBytes,
+                            (int) Math.min(Integer.MAX_VALUE - 8, compression.getMaxInflatedSize().toBytes()));
+                    metrics.recordCompression(command, responseBytes.length, inflated.length,
+                            System.nanoTime() - inflateStart);
+                    span.tag("bytes.inflated", inflated.length);
+                    responseBytes = inflated;
+                }
+                Map<String, Object> response = parser.parse(responseBytes);
+                // 收到响应说明游戏在运行，业务错误不计入熔断
+                breaker.onSuccess();
+                keepalive.onResponse();
+                if (rttNanos >= 0) {
+                    keepalive.onRtt(rttNanos);
+                }
 
                 // 验证响应格式
                 if (response == null) {
@@ -136,13 +490,25 @@ public class GameSocketAPI {
                 }
 
                 return response;
-            } catch (SocketTimeoutException | ConnectException e) {
+            } catch (SocketPool.PoolExhaustedException e) {
+                throw new GameAPIError("POOL_EXHAUSTED", "连接池已满: " + e.getMessage());
+            } catch (JsonProcessingException e) {
+                throw new GameAPIError("INVALID_JSON", "服务器返回的不是有效的JSON格式");
+            } catch (DataFormatException e) {
+                throw new GameAPIError("INVALID_RESPONSE", "服务器返回的压缩数据无法解压: " + e.getMessage());
+            } catch (IOException e) {
+                connectionLost(e.getMessage());
+                if (sent) {
+                    throw new GameAPIError("CONNECTION_ERROR", "请求已发出但连接中断，游戏可能已执行该命令，不再重试: "
+                            + e.getMessage());
+                }
                 retries++;
-                if (retries >= MAX_RETRIES) {
+                if (retries >= maxRetries) {
                     throw new GameAPIError("CONNECTION_ERROR", "连接服务器失败: " + e.getMessage());
                 }
-            } catch (JsonProcessingException e) {
-                throw new GameAPIError("INVALID_JSON", "服务器返回的不是有效的JSON格式");
+                awaitReconnect(span);
+                metrics.recordRetry(command);
+                span.tag("retries", retries);
             } catch (GameAPIError e) {
                 throw e;
             } catch (Exception e) {
@@ -161,18 +527,24 @@ public class GameSocketAPI {
                 }
             }
         }
-        throw new GameAPIError("CONNECTION_ERROR", "连接服务器失败");
     }
 
-    private String receiveData(Socket socket) throws IOException {
+    private byte[] receiveData(InputStream in) throws IOException {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        InputStream in = socket.getInputStream();
         byte[] data = new byte[4096];
         int bytesRead;
         while ((bytesRead = in.read(data, 0, data.length)) != -1) {
             buffer.write(data, 0, bytesRead);
         }
-        return buffer.toString(StandardCharsets.UTF_8);
+        return buffer.toByteArray();
+    }
+
+    // 轮询间隔的等待，在追踪中记录为 sleep 片段
+    private void sleep(long millis) throws InterruptedException {
+        try (Span span = tracer.startSpan("sleep")) {
+            span.tag("millis", millis);
+            Thread.sleep(millis);
+        }
     }
 
     private Object handleResponse(Map<String, Object> response, String errorMsg) {
@@ -227,20 +599,52 @@ public class GameSocketAPI {
      * @throws GameAPIError 当查询生产能力失败时
      */
     public boolean canProduce(String unitType) {
-        try {
-            // 构建请求参数
-            Map<String, Object> unitParam = new HashMap<>();
-            unitParam.put("unit_type", unitType);
-
-            Map<String, Object> params = new HashMap<>();
-            params.put("units", Collections.singletonList(unitParam));
+        return canProduceAll(Collections.singletonList(unitType)).getOrDefault(unitType, false);
+    }
 
-            // 发送请求并处理响应
-            Map<String, Object> response = sendRequest("query_can_produce", params);
-            Map<String, Object> result = (Map<String, Object>) handleResponse(response, "查询生产能力失败");
+    /**
+     * 一次请求批量检查多个类型是否可以生产，结果会缓存一小段时间；
+     * 游戏对多个类型只返回一个总结果时记下来，之后直接逐个查询
+     *
+     * @param unitTypes Actor类型列表
+     * @return 类型 -> 是否可以生产，顺序与传入一致
+     * @throws GameAPIError 当查询生产能力失败时
+     */
+    public Map<String, Boolean> canProduceAll(Collection<String> unitTypes) {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        List<String> misses = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (String unitType : unitTypes) {
+            long[] cached = canProduceCache.get(unitType);
+            if (cached != null && now - cached[1] <= CAN_PRODUCE_CACHE_MILLIS) {
+                result.put(unitType, cached[0] == 1);
+            } else if (!result.containsKey(unitType)) {
+                result.put(unitType, false);
+                misses.add(unitType);
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
 
-            // 返回结果，默认false
-            return (boolean) result.getOrDefault("canProduce", false);
+        try {
+            Map<String, Boolean> fetched = misses.size() == 1 || !canProduceBatchUnsupported
+                    ? queryCanProduce(misses) : null;
+            if (fetched == null) {
+                // 服务端没有逐项返回结果时退回逐个查询，并记住，不再每次先发一次批量请求
+                canProduceBatchUnsupported = true;
+                fetched = new HashMap<>();
+                for (String unitType : misses) {
+                    fetched.putAll(queryCanProduce(Collections.singletonList(unitType)));
+                }
+            }
+            now = System.currentTimeMillis();
+            for (String unitType : misses) {
+                boolean canProduce = fetched.getOrDefault(unitType, false);
+                result.put(unitType, canProduce);
+                canProduceCache.put(unitType, new long[]{canProduce ? 1 : 0, now});
+            }
+            return result;
         } catch (GameAPIError e) {
             throw e;
         } catch (Exception e) {
@@ -249,6 +653,43 @@ public class GameSocketAPI {
         }
     }
 
+    /**
+     * 发送一次query_can_produce请求
+     *
+     * @return 类型 -> 是否可以生产；如果请求了多个类型而服务端只返回了一个总结果则返回null
+     */
+    private Map<String, Boolean> queryCanProduce(List<String> unitTypes) {
+        // 构建请求参数
+        List<Map<String, Object>> units = new ArrayList<>();
+        for (String unitType : unitTypes) {
+            units.add(Collections.singletonMap("unit_type", unitType));
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("units", units);
+
+        // 发送请求并处理响应
+        Map<String, Object> response = sendRequest("query_can_produce", params);
+        Map<String, Object> result = (Map<String, Object>) handleResponse(response, "查询生产能力失败");
+
+        Map<String, Boolean> canProduce = new HashMap<>();
+        Object items = result.get("units");
+        if (items instanceof List) {
+            for (Map<String, Object> item : (List<Map<String, Object>>) items) {
+                Object type = item.getOrDefault("unit_type", item.get("unitType"));
+                if (type != null) {
+                    canProduce.put((String) type, Boolean.TRUE.equals(item.get("canProduce")));
+                }
+            }
+            return canProduce;
+        }
+        if (unitTypes.size() == 1) {
+            // 返回结果，默认false
+            canProduce.put(unitTypes.get(0), (boolean) result.getOrDefault("canProduce", false));
+            return canProduce;
+        }
+        return null;
+    }
+
     /**
      * 生产指定数量的Actor
      *
@@ -273,6 +714,15 @@ public class GameSocketAPI {
             // 发送请求并处理响应
             Map<String, Object> response = sendRequest("start_production", params);
             Map<String, Object> result = (Map<String, Object>) handleResponse(response, "生产命令执行失败");
+            // 生产队列发生变化，缓存的生产能力不再可靠
+            canProduceCache.clear();
+            TechItem item = techTree.find(unitType);
+            if (autoPlaceBuilding && item != null && techTree.isBuilding(unitType)) {
+                // 预计建造时间的1.5倍再加30秒内，就绪的该建筑由游戏放置
+                long until = System.currentTimeMillis()
+                        + (long) ((item.getBuildTime() * 1.5 * Math.max(quantity, 1) + 30) * 1000);
+                autoPlaceUntil.merge(unitType, until, Math::max);
+            }
 
             // 返回waitId，可能为null
             return (Integer) result.get("waitId");
@@ -351,6 +801,13 @@ public class GameSocketAPI {
      * @throws GameAPIError 当等待过程中发生错误时
      */
     public boolean wait(int waitId, double maxWaitTime) {
+        try (Span span = tracer.startSpan("wait")) {
+            span.tag("waitId", waitId).tag("maxWaitTime", maxWaitTime);
+            return pollWait(waitId, maxWaitTime);
+        }
+    }
+
+    private boolean pollWait(int waitId, double maxWaitTime) {
         try {
             log.info("waitId:{},maxWaitTime:{}",waitId,maxWaitTime);
             double waitTime = 0.0;
@@ -366,7 +823,7 @@ public class GameSocketAPI {
                 }
 
                 try {
-                    Thread.sleep((long) (stepTime * 1000));
+                    sleep((long) (stepTime * 1000));
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     throw new GameAPIError("WAIT_INTERRUPTED", "等待被中断");
@@ -559,10 +1016,23 @@ public class GameSocketAPI {
     }
 
     public List<Actor> queryActor(TargetsQueryParam queryParams) {
+        return queryCache.get(queryParams, () -> fetchActors(queryParams));
+    }
+
+    private List<Actor> fetchActors(TargetsQueryParam queryParams) {
         try {
-            Map<String, Object> response = sendRequest("query_actor",
-                    Collections.singletonMap("targets", queryParams.toMap()));
+            FrameChannel channel = frames();
+            Map<String, Object> params = new HashMap<>();
+            params.put("targets", queryParams.toMap());
+            if (channel != null) {
+                params.put("frameSeq", channel.nextSeq());
+            }
+            Map<String, Object> response = sendRequest("query_actor", params);
             Map<String, Object> result = (Map<String, Object>) handleResponse(response, "查询Actor失败");
+            Object framed = awaitFrame(channel, result);
+            if (framed != null) {
+                return (List<Actor>) framed;
+            }
 
             List<Map<String, Object>> actorsData = (List<Map<String, Object>>) result.get("actors");
             List<Actor> actors = new ArrayList<>();
@@ -972,8 +1442,7 @@ public class GameSocketAPI {
      */
     public Map<String, Object> queryProductionQueue(String queueType) throws GameAPIError {
         // 验证队列类型
-        Set<String> validTypes = Set.of("Building", "Defense", "Infantry", "Vehicle", "Aircraft", "Naval");
-        if (!validTypes.contains(queueType)) {
+        if (!ProductionQueue.QUEUE_TYPES.contains(queueType)) {
             throw new GameAPIError("INVALID_QUEUE_TYPE",
                     "队列类型必须是以下值之一: 'Building', 'Defense', 'Infantry', 'Vehicle', 'Aircraft', 'Naval'");
         }
@@ -992,6 +1461,99 @@ public class GameSocketAPI {
         }
     }
 
+    /**
+     * 查询指定类型的生产队列，并解析为类型化结果
+     *
+     * @param queueType 队列类型，必须是以下值之一：Building, Defense, Infantry, Vehicle, Aircraft, Naval
+     * @return 生产队列
+     * @throws GameAPIError 当查询生产队列失败时
+     */
+    public ProductionQueue productionQueueQuery(String queueType) throws GameAPIError {
+        return toProductionQueue(queueType, queryProductionQueue(queueType));
+    }
+
+    /**
+     * 一次请求查询多个生产队列；游戏不支持 queueTypes 参数时退回逐个查询
+     *
+     * @param queueTypes 队列类型
+     * @return 队列类型 -> 生产队列，没有对应生产建筑(游戏返回错误)的队列不在结果中
+     * @throws GameAPIError 当连接失败时
+     */
+    public Map<String, ProductionQueue> productionQueuesQuery(Collection<String> queueTypes) throws GameAPIError {
+        Map<String, ProductionQueue> result = new LinkedHashMap<>();
+        if (!queueBatchUnsupported) {
+            try {
+                Map<String, Object> response = sendRequest("query_production_queue",
+                        Collections.singletonMap("queueTypes", new ArrayList<>(queueTypes)));
+                Object data = handleResponse(response, "查询生产队列失败");
+                Object queues = data instanceof Map ? ((Map<String, Object>) data).get("queues") : null;
+                if (queues instanceof Map) {
+                    for (String queueType : queueTypes) {
+                        Object queue = ((Map<String, Object>) queues).get(queueType);
+                        if (queue instanceof Map) {
+                            result.put(queueType, toProductionQueue(queueType, (Map<String, Object>) queue));
+                        }
+                    }
+                    return result;
+                }
+            } catch (GameAPIError e) {
+                if (isConnectionError(e.getCode())) {
+                    throw e;
+                }
+            }
+            log.info("游戏{}不支持批量查询生产队列，改为逐个查询", transport);
+            queueBatchUnsupported = true;
+        }
+        for (String queueType : queueTypes) {
+            try {
+                result.put(queueType, productionQueueQuery(queueType));
+            } catch (GameAPIError e) {
+                if (isConnectionError(e.getCode())) {
+                    throw e;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 以 autoPlaceBuilding 下发的该建筑是否仍应由游戏自己放置
+     */
+    public boolean isAutoPlacing(String buildingName) {
+        Long until = autoPlaceUntil.get(buildingName);
+        if (until == null) {
+            return false;
+        }
+        if (until < System.currentTimeMillis()) {
+            autoPlaceUntil.remove(buildingName, until);
+            return false;
+        }
+        return true;
+    }
+
+    private static ProductionQueue toProductionQueue(String queueType, Map<String, Object> result) {
+        try {
+            List<ProductionItem> items = new ArrayList<>();
+            List<Map<String, Object>> itemsData = (List<Map<String, Object>>)
+                    result.getOrDefault("queue_items", List.of());
+            for (Map<String, Object> data : itemsData) {
+                items.add(ProductionItem.builder()
+                        .name((String) data.get("name"))
+                        .chineseName((String) data.get("chineseName"))
+                        .status((String) data.getOrDefault("status", "waiting"))
+                        .progressPercent(((Number) data.getOrDefault("progress_percent", 0)).intValue())
+                        .remainingTime(((Number) data.getOrDefault("remaining_time", 0)).intValue())
+                        .totalTime(((Number) data.getOrDefault("total_time", 0)).intValue())
+                        .ownerActorId(((Number) data.getOrDefault("owner_actor_id", -1)).intValue())
+                        .done(Boolean.TRUE.equals(data.get("done")))
+                        .build());
+            }
+            return new ProductionQueue(queueType, items, Boolean.TRUE.equals(result.get("has_ready_item")));
+        } catch (ClassCastException e) {
+            throw new GameAPIError("INVALID_QUEUE_DATA", "生产队列数据格式无效: " + e.getMessage());
+        }
+    }
+
     /**
      * 放置建造队列顶端已就绪的建筑
      *
@@ -1010,6 +1572,8 @@ public class GameSocketAPI {
 
             Map<String, Object> response = sendRequest("place_building", params);
             handleResponse(response, "放置建筑失败");
+            // 新建筑可能解锁新的单位
+            canProduceCache.clear();
         } catch (GameAPIError e) {
             throw e;
         } catch (Exception e) {
@@ -1080,7 +1644,7 @@ public class GameSocketAPI {
 
         // 等待指定时间
         try {
-            Thread.sleep((long) (waitTime * 1000));
+            sleep((long) (waitTime * 1000));
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new GameAPIError("DEPLOY_INTERRUPTED", "部署过程被中断");
@@ -1092,6 +1656,22 @@ public class GameSocketAPI {
         deployMcvAndWait(1.0);
     }
 
+    /**
+     * 查询自己已拥有的建筑类型，一次请求即可供科技树计算缺失的前置
+     *
+     * @return 已拥有的建筑类型集合
+     * @throws GameAPIError 当查询失败时
+     */
+    public Set<String> queryOwnedBuildingTypes() throws GameAPIError {
+        TargetsQueryParam queryParams = new TargetsQueryParam(
+                List.of("建筑"), "自己", null, null, null, null, null);
+        Set<String> owned = new HashSet<>();
+        for (Actor actor : queryActor(queryParams)) {
+            owned.add(actor.getType());
+        }
+        return owned;
+    }
+
     /**
      * 确保能生产某个建筑，如果不能会尝试生产所有前置建筑，并等待生产完成
      *
@@ -1101,63 +1681,74 @@ public class GameSocketAPI {
      */
     public boolean ensureCanBuildWait(String buildingName) throws GameAPIError {
         // 检查是否已有该建筑
-        TargetsQueryParam queryParams = new TargetsQueryParam(
-                List.of(buildingName), "自己", null, null, null, null, null);
-        List<Actor> buildingExists = queryActor(queryParams);
-
-        if (!buildingExists.isEmpty()) {
+        Set<String> owned = queryOwnedBuildingTypes();
+        if (owned.contains(buildingName)) {
             return true;
         }
 
-        // 检查并生产依赖建筑
-//        List<String> deps = BUILDING_DEPENDENCIES.getOrDefault(buildingName, List.of());
-//        for (String dep : deps) {
-//            if (!ensureBuildingWaitBuildSelf(dep)) {
-//                return false;
-//            }
-//        }
-
-        return ensureBuildingWaitBuildSelf(buildingName);
+        // 按科技树拓扑序生产缺失的前置建筑，最后生产该建筑本身
+        List<String> buildings = new ArrayList<>(techTree.missing(buildingName, owned));
+        buildings.add(buildingName);
+        return buildAll(buildings, null, true);
     }
 
+    /**
+     * 按顺序生产建筑并等待完成。整条建造链(以及目标)的生产能力用一次 canProduceAll 查询，
+     * 每建成一个建筑前置条件就会变化，再用一次请求刷新剩余部分
+     *
+     * @param buildings      按拓扑序排列的建筑
+     * @param target         最终要生产的单位，为 null 时只建造 buildings
+     * @param stopOnFailure  某个建筑无法生产时是否立即返回
+     * @return target 为 null 时为是否全部建成，否则为建完后 target 是否可以生产
+     */
+    private boolean buildAll(List<String> buildings, String target, boolean stopOnFailure) throws GameAPIError {
+        List<String> remaining = new ArrayList<>(buildings);
+        if (target != null) {
+            remaining.add(target);
+        }
+        Map<String, Boolean> producible = canProduceAll(remaining);
+        boolean allBuilt = true;
+        for (String building : buildings) {
+            remaining.remove(building);
+            if (!producible.getOrDefault(building, false) || !ensureBuildingWaitBuildSelf(building)) {
+                allBuilt = false;
+                if (stopOnFailure) {
+                    return false;
+                }
+                continue;
+            }
+            if (!remaining.isEmpty()) {
+                producible = canProduceAll(remaining);
+            }
+        }
+        return target == null ? allBuilt : producible.getOrDefault(target, false);
+    }
 
     /**
-     * 内部方法 - 确保建筑存在（递归处理依赖）
+     * 内部方法 - 生产建筑并等待完成，调用方已确认可以生产，前置依赖由调用方按科技树处理
      *
      * @param buildingName 建筑名称
      * @return 是否成功建造
      * @throws GameAPIError 当操作失败时
      */
     private boolean ensureBuildingWaitBuildSelf(String buildingName) throws GameAPIError {
-        // 检查是否已有该建筑
-//        TargetsQueryParam queryParams = new TargetsQueryParam(
-//                List.of(buildingName), "自己", null, null, null, null, null);
-//        List<Actor> buildingExists = queryActor(queryParams);
-//
-//        if (!buildingExists.isEmpty()) {
-//            return true;
-//        }
-//
-//        // 递归处理所有依赖
-//        List<String> deps = BUILDING_DEPENDENCIES.getOrDefault(buildingName, List.of());
-//        for (String dep : deps) {
-//            ensureBuildingWaitBuildSelf(dep);
-//        }
-
-        // 尝试生产该建筑
-        if (canProduce(buildingName)) {
+        try (Span span = tracer.startSpan("build")) {
+            span.tag("building", buildingName);
             Integer waitId = produce(buildingName, 1, true);
             log.info("waitId:{}",waitId);
             if (waitId != null) {
-                wait(waitId, 20.0); // 默认等待20秒
+                TechItem item = techTree.find(buildingName);
+                // 默认等待20秒，建造时间较长的建筑按规则文件多等一些
+                wait(waitId, Math.max(20.0, item != null ? item.getBuildTime() * 1.5 : 0));
                 return true;
             }
+            return false;
         }
-        return false;
     }
 
     /**
      * 确保能生产某个单位（会自动生产其所需建筑并等待完成）
+     * 缺失的前置建筑由科技树一次算出，不再反复向游戏探测canProduce
      *
      * @param unitName 单位名称(中文)
      * @return 是否成功准备好生产该单位
@@ -1169,20 +1760,17 @@ public class GameSocketAPI {
             return true;
         }
 
-        // 生产依赖建筑
-        List<String> neededBuildings = UNIT_DEPENDENCIES.getOrDefault(unitName, List.of());
-        for (String building : neededBuildings) {
-            ensureBuildingWaitBuildSelf(building);
+        // 按拓扑序生产所有缺失的前置建筑，生产能力与单位本身一起批量查询
+        if (buildAll(techTree.missing(unitName, queryOwnedBuildingTypes()), unitName, false)) {
+            return true;
         }
 
         // 如果还是不能生产，等待1秒再检查
-        if (!canProduce(unitName)) {
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new GameAPIError("PRODUCE_INTERRUPTED", "生产准备过程被中断");
-            }
+        try {
+            sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GameAPIError("PRODUCE_INTERRUPTED", "生产准备过程被中断");
         }
 
         return canProduce(unitName);
@@ -1245,6 +1833,13 @@ public class GameSocketAPI {
         // 先移动单位
         moveUnitsByLocation(actors, location);
 
+        try (Span span = tracer.startSpan("move_wait")) {
+            span.tag("actors", actors.size()).tag("maxWaitTime", maxWaitTime);
+            return pollArrival(actors, location, maxWaitTime, toleranceDis);
+        }
+    }
+
+    private boolean pollArrival(List<Actor> actors, Location location, double maxWaitTime, int toleranceDis) {
         long startTime = System.currentTimeMillis();
 
         while ((System.currentTimeMillis() - startTime) / 1000.0 < maxWaitTime) {
@@ -1265,7 +1860,7 @@ public class GameSocketAPI {
 
             // 等待0.3秒
             try {
-                Thread.sleep(300);
+                sleep(300);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 throw new GameAPIError("MOVE_INTERRUPTED", "移动等待过程被中断");
@@ -1347,19 +1942,26 @@ public class GameSocketAPI {
      */
     public MapQueryResult mapQuery() throws GameAPIError {
         try {
-            Map<String, Object> response = sendRequest("map_query", new HashMap<>());
+            FrameChannel channel = frames();
+            Map<String, Object> params = new HashMap<>();
+            if (channel != null) {
+                params.put("frameSeq", channel.nextSeq());
+            }
+            Map<String, Object> response = sendRequest("map_query", params, body -> mapQueryParser.parse(body, mapLayerArena));
             Map<String, Object> result = (Map<String, Object>) handleResponse(response, "查询地图信息失败");
+            Object framed = awaitFrame(channel, result);
+            if (framed != null) {
+                return (MapQueryResult) framed;
+            }
 
-            return new MapQueryResult(
-                    ((Number) result.getOrDefault("MapWidth", 0)).intValue(),
-                    ((Number) result.getOrDefault("MapHeight", 0)).intValue(),
-                    (List<List<Integer>>) result.getOrDefault("Height", new ArrayList<>()),
-                    (List<List<Boolean>>) result.getOrDefault("IsVisible", new ArrayList<>()),
-                    (List<List<Boolean>>) result.getOrDefault("IsExplored", new ArrayList<>()),
-                    (List<List<String>>) result.getOrDefault("Terrain", new ArrayList<>()),
-                    (List<List<String>>) result.getOrDefault("ResourcesType", new ArrayList<>()),
-                    (List<List<Integer>>) result.getOrDefault("Resources", new ArrayList<>())
-            );
+            int mapWidth = ((Number) result.getOrDefault("MapWidth", 0)).intValue();
+            int mapHeight = ((Number) result.getOrDefault("MapHeight", 0)).intValue();
+            Object layers = result.get(MapQueryParser.LAYERS);
+            if (layers instanceof MapLayers) {
+                return ((MapLayers) layers).toResult(mapWidth, mapHeight);
+            }
+            return new MapQueryResult(mapWidth, mapHeight, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                    new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
         } catch (GameAPIError e) {
             throw e;
         } catch (Exception e) {
@@ -0,0 +1,235 @@
+package com.hoppinzq.red95.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hoppinzq.red95.model.MapLayerArena;
+import com.hoppinzq.red95.model.MapLayers;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * map_query 响应的流式解析：逐格读取六个图层，直接写入预先分配好的 {@link MapLayers}
+ * (大地图在堆外)，不再先把整个响应构造成嵌套的 Map/List，堆上的峰值内存与地图大小无关。
+ * 网格大小取第一个图层的实际形状(先测量一遍再写入)，不依赖 MapWidth/MapHeight，二者与网格尺寸不同时照常解析；
+ * 其余图层必须与第一个图层形状一致。响应较大且有多个 CPU 时，先记下每个图层在响应中的字节范围，
+ * 再在 ForkJoin 公共池上并行解析各个图层。
+ * data 中的图层字段被替换为 {@link #LAYERS}，其余字段(MapWidth、MapHeight、帧通道的 frame 等)照常保留。
+ */
+final class MapQueryParser {
+    static final String LAYERS = "layers";
+    private static final int PARALLEL_THRESHOLD = 256 * 1024;  // 响应不小于该字节数时并行解析图层
+
+    private final ObjectMapper objectMapper;
+
+    MapQueryParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param arena 大地图的堆外内存，可以为 null
+     * @return 响应 Map；data 为对象时其中的图层被解析为 {@link #LAYERS} 字段下的 MapLayers
+     */
+    Map<String, Object> parse(byte[] body, MapLayerArena arena) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "响应不是JSON对象");
+            }
+            Map<String, Object> response = new LinkedHashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+                    response.put(field, parseData(parser, body, arena, body.length >= PARALLEL_THRESHOLD
+                            && ForkJoinPool.getCommonPoolParallelism() > 1));
+                } else {
+                    response.put(field, objectMapper.readValue(parser, Object.class));
+                }
+            }
+            return response;
+        }
+    }
+
+    private Map<String, Object> parseData(JsonParser parser, byte[] body, MapLayerArena arena, boolean parallel)
+            throws IOException {
+        Map<String, Object> data = new LinkedHashMap<>();
+        MapLayers.Builder builder = null;
+        Map<MapLayers.Layer, int[]> ranges = new EnumMap<>(MapLayers.Layer.class);  // 推迟解析的图层的字节范围
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            MapLayers.Layer layer = MapLayers.Layer.ofField(field);
+            if (layer == null || value != JsonToken.START_ARRAY) {
+                data.put(field, objectMapper.readValue(parser, Object.class));
+                continue;
+            }
+            int start = (int) parser.getTokenLocation().getByteOffset();
+            if (builder == null) {
+                // 第一个图层：先测量形状确定网格大小，再按字节范围重新读一遍写入
+                int[] shape = readLayer(layer, parser, null);
+                int[] range = {start, (int) parser.getTokenLocation().getByteOffset() + 1};
+                builder = MapLayers.builder(shape[0], shape[1], arena);
+                if (parallel) {
+                    ranges.put(layer, range);
+                } else {
+                    readRange(layer, body, range, builder);
+                }
+            } else if (!parallel) {
+                readLayer(layer, parser, builder);
+            } else {
+                parser.skipChildren();
+                ranges.put(layer, new int[]{start, (int) parser.getTokenLocation().getByteOffset() + 1});
+            }
+        }
+        if (builder == null) {
+            return data;
+        }
+
+        MapLayers.Builder target = builder;
+        if (parallel && ranges.size() > 1) {
+            List<ForkJoinTask<int[]>> tasks = new ArrayList<>();
+            for (Map.Entry<MapLayers.Layer, int[]> range : ranges.entrySet()) {
+                tasks.add(ForkJoinTask.adapt(() -> readRange(range.getKey(), body, range.getValue(), target)));
+            }
+            try {
+                ForkJoinTask.invokeAll(tasks);
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e;
+            }
+        } else {
+            for (Map.Entry<MapLayers.Layer, int[]> range : ranges.entrySet()) {
+                readRange(range.getKey(), body, range.getValue(), target);
+            }
+        }
+        data.put(LAYERS, builder.build());
+        return data;
+    }
+
+    private int[] readRange(MapLayers.Layer layer, byte[] body, int[] range, MapLayers.Builder builder)
+            throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body, range[0], range[1] - range[0])) {
+            parser.nextToken();
+            return readLayer(layer, parser, builder);
+        }
+    }
+
+    /**
+     * 读取一个 [[...],[...]] 图层，parser 位于外层数组的开始处，读完后位于其结束处
+     *
+     * @param builder 写入目标，为 null 时只测量形状
+     * @return 列数和每列的格子数
+     */
+    private static int[] readLayer(MapLayers.Layer layer, JsonParser parser, MapLayers.Builder builder)
+            throws IOException {
+        Dictionary dictionary = layer == MapLayers.Layer.TERRAIN || layer == MapLayers.Layer.RESOURCES_TYPE
+                ? new Dictionary() : null;
+        int index = 0;
+        int columns = 0;
+        int rows = -1;
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.START_ARRAY) {
+            if (builder != null && columns >= builder.getColumns()) {
+                throw new JsonParseException(parser, "图层" + layer.getField() + "的列数超过第一个图层的" + builder.getColumns());
+            }
+            int y = 0;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == JsonToken.START_ARRAY || token == JsonToken.START_OBJECT) {
+                    throw new JsonParseException(parser, "图层" + layer.getField() + "的格子不是标量");
+                }
+                if (builder != null) {
+                    if (y >= builder.getRows()) {
+                        throw new JsonParseException(parser, "图层" + layer.getField() + "的列长度超过第一个图层的" + builder.getRows());
+                    }
+                    write(layer, parser, token, builder, index, dictionary);
+                }
+                index++;
+                y++;
+            }
+            if (rows < 0) {
+                rows = y;
+            } else if (y != rows) {
+                throw new JsonParseException(parser, "图层" + layer.getField() + "的第" + columns + "列长度为" + y
+                        + "，前面的列为" + rows);
+            }
+            columns++;
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new JsonParseException(parser, "图层" + layer.getField() + "不是二维数组");
+        }
+        rows = Math.max(rows, 0);
+        if (builder != null) {
+            if (columns != builder.getColumns() || (columns > 0 && rows != builder.getRows())) {
+                throw new JsonParseException(parser, "图层" + layer.getField() + "为" + columns + "×" + rows
+                        + "，与第一个图层的" + builder.getColumns() + "×" + builder.getRows() + "不一致");
+            }
+            if (dictionary != null) {
+                builder.names(layer, dictionary.names());
+            }
+            builder.present(layer);
+        }
+        return new int[]{columns, rows};
+    }
+
+    private static void write(MapLayers.Layer layer, JsonParser parser, JsonToken token, MapLayers.Builder builder,
+                              int index, Dictionary dictionary) throws IOException {
+        switch (layer) {
+            case VISIBLE:
+            case EXPLORED:
+                builder.setBoolean(layer, index, token == JsonToken.VALUE_TRUE);
+                break;
+            case TERRAIN:
+            case RESOURCES_TYPE:
+                builder.setCode(layer, index, token == JsonToken.VALUE_STRING ? dictionary.code(parser) : -1);
+                break;
+            default:
+                builder.setInt(layer, index, token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT
+                        ? parser.getIntValue() : 0);
+        }
+    }
+
+    // 字符串图层的字典，相邻格子的取值往往相同，先和上一个字符串比较，省掉 String 分配
+    private static final class Dictionary {
+        private final Map<String, Short> codes = new HashMap<>();
+        private final List<String> entries = new ArrayList<>();
+        private char[] lastText = new char[16];
+        private int lastLength = -1;
+        private short lastCode = -1;
+
+        short code(JsonParser parser) throws IOException {
+            char[] text = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            if (length == lastLength && Arrays.equals(text, offset, offset + length, lastText, 0, length)) {
+                return lastCode;
+            }
+            String value = new String(text, offset, length);
+            Short code = codes.get(value);
+            if (code == null) {
+                if (entries.size() >= Short.MAX_VALUE) {
+                    throw new JsonParseException(parser, "图层中的不同取值过多");
+                }
+                code = (short) entries.size();
+                codes.put(value, code);
+                entries.add(value);
+            }
+            if (lastText.length < length) {
+                lastText = new char[length];
+            }
+            System.arraycopy(text, offset, lastText, 0, length);
+            lastLength = length;
+            lastCode = code;
+            return code;
+        }
+
+        String[] names() {
+            return entries.toArray(new String[0]);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.hoppinzq.red95.service;
+
+import com.hoppinzq.red95.model.ProductionItem;
+import com.hoppinzq.red95.model.ProductionQueue;
+import com.hoppinzq.red95.socket.CircuitBreaker;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.LongSupplier;
+
+/**
+ * 生产队列监视器，后台轮询全部六种生产队列(游戏支持时一次请求查询全部)，会话空闲或熔断时暂停轮询。
+ * 开启 autoPlace 时，建筑/防御队列出现已就绪项目会自动调用placeBuilding放置；以 autoPlaceBuilding 下发的建筑由游戏放置，
+ * 先等待几个周期，游戏迟迟没有放置时再代为放置。
+ * 项目完成、放置等变化记录为最近的事件供状态工具读取，
+ * 这样AI不需要反复查询原始队列再自己放置建筑。
+ */
+@Slf4j
+public class ProductionQueueMonitor {
+    private static final long POLL_MILLIS = 1000;  // 轮询周期
+    private static final int MAX_EVENTS = 20;  // 保留的最近事件数
+    private static final int PLACE_RETRY_TICKS = 5;  // 放置失败后间隔多少个周期再重试
+    private static final int AUTO_PLACE_GRACE_TICKS = 5;  // 由游戏自动放置的建筑，等待多少个周期后再代为放置
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final GameSocketAPI gameSocketAPI;
+    private final QueueMonitorConfig config;
+    private final LongSupplier lastAccess;  // 会话最近一次工具调用的时间
+    private final Map<String, ProductionQueue> queues = new ConcurrentHashMap<>();
+    private final Map<String, Integer> placeBackoff = new ConcurrentHashMap<>();
+    private final Deque<String> events = new ConcurrentLinkedDeque<>();
+    private ScheduledExecutorService executor;
+    private volatile long polledAt;  // 最近一次成功轮询的时间
+
+    public ProductionQueueMonitor(GameSocketAPI gameSocketAPI, QueueMonitorConfig config, LongSupplier lastAccess) {
+        this.gameSocketAPI = gameSocketAPI;
+        this.config = config;
+        this.lastAccess = lastAccess;
+    }
+
+    public synchronized void start() {
+        if (executor != null || !config.isEnabled()) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Production-Queue-Monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::poll, POLL_MILLIS, POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * @return 最近一次轮询到的队列，队列类型 -> 队列
+     */
+    public Map<String, ProductionQueue> getQueues() {
+        return Collections.unmodifiableMap(queues);
+    }
+
+    /**
+     * 精简的队列摘要，只包含非空队列，形如 {"Building": ["电厂 45%", "兵营 等待"]}。
+     * 监视器关闭、或因会话空闲暂停而结果过旧时，实时查询一次(不放置建筑)
+     */
+    public Map<String, Object> summary() {
+        Map<String, ProductionQueue> queues = this.queues;
+        if (System.currentTimeMillis() - polledAt > 2 * POLL_MILLIS) {
+            queues = gameSocketAPI.productionQueuesQuery(ProductionQueue.QUEUE_TYPES);
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        for (String queueType : ProductionQueue.QUEUE_TYPES) {
+            ProductionQueue queue = queues.get(queueType);
+            if (queue == null || queue.getItems().isEmpty()) {
+                continue;
+            }
+            List<String> items = new ArrayList<>(queue.getItems().size());
+            for (ProductionItem item : queue.getItems()) {
+                items.add(item.displayName() + " " + describe(item));
+            }
+            summary.put(queueType, items);
+        }
+        summary.put("events", new ArrayList<>(events));
+        return summary;
+    }
+
+    private static String describe(ProductionItem item) {
+        if (item.isDone() || "completed".equals(item.getStatus())) {
+            return "就绪";
+        }
+        if ("paused".equals(item.getStatus())) {
+            return "暂停";
+        }
+        if ("in_progress".equals(item.getStatus())) {
+            return item.getProgressPercent() + "%";
+        }
+        return "等待";
+    }
+
+    void poll() {
+        // 没有人用或游戏不可用时不轮询
+        if (System.currentTimeMillis() - lastAccess.getAsLong() > config.getIdlePause().toMillis()
+                || !gameSocketAPI.isInitialized()
+                || gameSocketAPI.getCircuitBreaker().getState() != CircuitBreaker.State.CLOSED) {
+            return;
+        }
+        Map<String, ProductionQueue> polled;
+        try {
+            polled = gameSocketAPI.productionQueuesQuery(ProductionQueue.QUEUE_TYPES);
+        } catch (GameSocketAPI.GameAPIError e) {
+            log.debug("查询生产队列失败: {}", e.getMessage());
+            return;
+        }
+        polledAt = System.currentTimeMillis();
+        for (String queueType : ProductionQueue.QUEUE_TYPES) {
+            ProductionQueue current = polled.get(queueType);
+            if (current == null) {
+                // 没有对应生产建筑时游戏会返回错误，视为空队列
+                queues.remove(queueType);
+                placeBackoff.remove(queueType);
+                continue;
+            }
+            try {
+                ProductionQueue previous = queues.put(queueType, current);
+                detectCompleted(previous, current);
+                if (config.isAutoPlace() && current.needsPlacement()) {
+                    place(current);
+                } else {
+                    placeBackoff.remove(queueType);
+                }
+            } catch (Exception e) {
+                log.warn("生产队列监视异常", e);
+            }
+        }
+    }
+
+    private void detectCompleted(ProductionQueue previous, ProductionQueue current) {
+        if (previous == null) {
+            return;
+        }
+        // 按名称计数，之前未完成的项目现在完成或消失即视为完成
+        Map<String, Integer> stillPending = new HashMap<>();
+        for (ProductionItem item : current.getItems()) {
+            if (!item.isDone()) {
+                stillPending.merge(item.getName(), 1, Integer::sum);
+            }
+        }
+        for (ProductionItem item : previous.getItems()) {
+            if (item.isDone()) {
+                continue;
+            }
+            Integer left = stillPending.get(item.getName());
+            if (left != null && left > 0) {
+                stillPending.put(item.getName(), left - 1);
+                continue;
+            }
+            record(current.getQueueType() + " " + item.displayName() + " 完成");
+        }
+    }
+
+    private void place(ProductionQueue queue) {
+        String queueType = queue.getQueueType();
+        int backoff = placeBackoff.getOrDefault(queueType, 0);
+        if (backoff > 0) {
+            placeBackoff.put(queueType, backoff - 1);
+            return;
+        }
+        String name = queue.getItems().isEmpty() ? queueType : queue.getItems().get(0).displayName();
+        if (gameSocketAPI.isAutoPlacing(name) && placeBackoff.putIfAbsent(queueType, AUTO_PLACE_GRACE_TICKS) == null) {
+            // 游戏会自己放置，先不重复放置；等待结束后仍未放置时走下面的代为放置
+            return;
+        }
+        try {
+            gameSocketAPI.placeBuilding(queueType);
+            placeBackoff.remove(queueType);
+            record(queueType + " " + name + " 已自动放置");
+        } catch (GameSocketAPI.GameAPIError e) {
+            placeBackoff.put(queueType, PLACE_RETRY_TICKS);
+            record(queueType + " " + name + " 自动放置失败: " + e.getMessage());
+        }
+    }
+
+    private void record(String event) {
+        events.addFirst(LocalTime.now().format(TIME_FORMAT) + " " + event);
+        while (events.size() > MAX_EVENTS) {
+            events.pollLast();
+        }
+    }
+}
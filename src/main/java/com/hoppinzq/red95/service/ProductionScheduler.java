@@ -0,0 +1,322 @@
+package com.hoppinzq.red95.service;
+
+import com.hoppinzq.red95.model.PlayerBaseInfo;
+import com.hoppinzq.red95.model.ProductionRequest;
+import com.hoppinzq.red95.rules.TechTree;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 生产调度器，维护玩家基地信息(现金、电力)的实时视图，并按优先级和资金情况下发生产任务。
+ * 调用方只负责入队，永远不会在工具线程上阻塞等待资金；
+ * 当待建建筑会让电力变为负数、且排队中的电厂也补不上时，会先插入一个电厂并让它等待；
+ * 已下发但未建成的电厂等建筑的电力计入待生效电力。
+ * 入队时按科技树把缺少的前置建筑以更高的优先级一并入队，已在排队或刚下发的同类建筑不会重复入队。
+ * 迟迟无法下发(资金不足、前置条件不满足)的请求超过有效期后标记为失败。
+ */
+@Slf4j
+public class ProductionScheduler {
+    private static final long TICK_MILLIS = 500;  // 调度周期
+    private static final long BASE_INFO_MAX_AGE = 2000;  // 基地信息视图的最大有效期
+    private static final int MAX_HISTORY = 50;  // 保留的已完成请求数量
+    private static final long PENDING_TTL_MILLIS = 5 * 60_000;  // 请求排队的最长时间，超过后标记为失败
+    private static final long IN_FLIGHT_MAX_AGE = 3 * 60_000;  // 已下发的耗电/供电建筑最多计入待生效电力的时间
+    private static final String POWER_PLANT = "电厂";
+
+    // 优先级从高到低，同优先级时便宜的先下发，再按入队顺序
+    private static final Comparator<ProductionRequest> ORDER = Comparator
+            .comparingInt(ProductionRequest::getPriority).reversed()
+            .thenComparingInt(ProductionRequest::getCost)
+            .thenComparingLong(ProductionRequest::getId);
+
+    private final GameSocketAPI gameSocketAPI;
+    private final PriorityBlockingQueue<ProductionRequest> queue = new PriorityBlockingQueue<>(16, ORDER);
+    private final Deque<ProductionRequest> history = new ConcurrentLinkedDeque<>();
+    private final AtomicReference<PlayerBaseInfo> baseInfo = new AtomicReference<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // 已下发但尚未建成、会改变电力的请求，只在调度线程中访问
+    private final List<ProductionRequest> inFlight = new ArrayList<>();
+    private final Map<Long, Long> dispatchedAt = new HashMap<>();
+    // 请求ID -> 为它自动插入(或复用)的前置建筑请求，请求下发或失败后移除
+    private final Map<Long, List<ProductionRequest>> prerequisites = new ConcurrentHashMap<>();
+    private volatile long baseInfoUpdatedAt;
+    private ScheduledExecutorService executor;
+
+    public ProductionScheduler(GameSocketAPI gameSocketAPI) {
+        this.gameSocketAPI = gameSocketAPI;
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Production-Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * 提交生产请求，立即返回。缺少的前置建筑按拓扑序一并入队，越靠前的优先级越高，且都高于本请求
+     *
+     * @param unitType 单位/建筑类型(中文)
+     * @param quantity 数量
+     * @param priority 优先级，越大越先处理
+     * @return 调度请求，可通过snapshot()查看状态
+     */
+    public ProductionRequest submit(String unitType, int quantity, int priority) {
+        List<String> missing = missingPrerequisites(unitType);
+        List<ProductionRequest> required = new ArrayList<>(missing.size());
+        for (int i = 0; i < missing.size(); i++) {
+            String building = missing.get(i);
+            ProductionRequest prerequisite = outstanding(building);
+            if (prerequisite == null) {
+                // 排在前面的前置建筑同样是它的前置(或与它无关)，建成前它也只是在等待
+                prerequisite = enqueue(building, 1, priority + missing.size() - i, "为" + unitType + "自动插入的前置建筑",
+                        new ArrayList<>(required));
+            }
+            required.add(prerequisite);
+        }
+        return enqueue(unitType, quantity, priority, null, required);
+    }
+
+    /**
+     * @param required 该请求依赖的前置建筑请求，先登记再入队，调度线程看到请求时就能区分等待原因
+     */
+    private ProductionRequest enqueue(String unitType, int quantity, int priority, String message,
+                                      List<ProductionRequest> required) {
+        int cost = gameSocketAPI.getTechTree().getCost(unitType) * Math.max(quantity, 1);
+        ProductionRequest request = new ProductionRequest(sequence.incrementAndGet(), unitType,
+                Math.max(quantity, 1), priority, cost, System.currentTimeMillis());
+        request.setMessage(message);
+        if (!required.isEmpty()) {
+            prerequisites.put(request.getId(), required);
+        }
+        queue.add(request);
+        return request;
+    }
+
+    /**
+     * 按科技树计算缺少的前置建筑；没有前置的项不查询游戏，查询失败时不插入，由下发时的生产能力检查兜底
+     */
+    private List<String> missingPrerequisites(String unitType) {
+        TechTree techTree = gameSocketAPI.getTechTree();
+        if (techTree.missing(unitType, Collections.emptySet()).isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            return techTree.missing(unitType, gameSocketAPI.queryOwnedBuildingTypes());
+        } catch (GameSocketAPI.GameAPIError e) {
+            log.debug("查询已有建筑失败，不自动插入前置建筑: {}", e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * @return 同类建筑仍在排队、或最近已下发(可能尚未建成)的请求，没有时返回 null
+     */
+    private ProductionRequest outstanding(String unitType) {
+        for (ProductionRequest request : queue) {
+            if (unitType.equals(request.getUnitType())) {
+                return request;
+            }
+        }
+        long now = System.currentTimeMillis();
+        for (ProductionRequest request : history) {
+            if (unitType.equals(request.getUnitType()) && request.getStatus() == ProductionRequest.Status.DISPATCHED
+                    && now - request.getCreatedAt() <= IN_FLIGHT_MAX_AGE) {
+                return request;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 记录其他途径查询到的基地信息，减少调度器自身的查询次数
+     */
+    public void observe(PlayerBaseInfo info) {
+        if (info != null) {
+            baseInfo.set(info);
+            baseInfoUpdatedAt = System.currentTimeMillis();
+        }
+    }
+
+    public PlayerBaseInfo getBaseInfo() {
+        return baseInfo.get();
+    }
+
+    /**
+     * @return 排队中的请求(按下发顺序)以及最近已下发/失败的请求
+     */
+    public List<ProductionRequest> snapshot() {
+        List<ProductionRequest> result = new ArrayList<>(queue);
+        result.sort(ORDER);
+        result.addAll(history);
+        return result;
+    }
+
+    void tick() {
+        if (queue.isEmpty()) {
+            return;
+        }
+        try {
+            PlayerBaseInfo info = baseInfo.get();
+            if (info == null || System.currentTimeMillis() - baseInfoUpdatedAt > BASE_INFO_MAX_AGE) {
+                info = gameSocketAPI.playerBaseInfoQuery();
+                observe(info);
+            }
+            dispatch(info);
+        } catch (GameSocketAPI.GameAPIError e) {
+            log.debug("生产调度失败: {}", e.getMessage());
+        } catch (Exception e) {
+            log.warn("生产调度异常", e);
+        }
+    }
+
+    private void dispatch(PlayerBaseInfo info) {
+        // 游戏中可用资金为现金加上精炼厂里的资源
+        int funds = info.getCash() + info.getResources();
+        TechTree techTree = gameSocketAPI.getTechTree();
+        // 基地信息还不包含已下发未建成的建筑，把它们的电力算进来，避免重复插入电厂
+        int power = info.getPowerProvided() - info.getPowerDrained() + inFlightPower(techTree);
+        // 排队中尚未下发的电厂等供电建筑的电力，耗电请求只有在连同它们仍不够时才需要再插入电厂
+        int pendingSupply = 0;
+        List<ProductionRequest> deferred = new ArrayList<>();
+        // 一次请求查询所有排队类型的生产能力
+        Set<String> types = new LinkedHashSet<>();
+        for (ProductionRequest queued : queue) {
+            types.add(queued.getUnitType());
+            pendingSupply += supply(techTree, queued);
+        }
+        Map<String, Boolean> producible = new HashMap<>(gameSocketAPI.canProduceAll(types));
+
+        ProductionRequest request;
+        long now = System.currentTimeMillis();
+        while ((request = queue.poll()) != null) {
+            if (now - request.getCreatedAt() > PENDING_TTL_MILLIS) {
+                request.setStatus(ProductionRequest.Status.FAILED);
+                request.setMessage("排队超过" + PENDING_TTL_MILLIS / 60_000 + "分钟仍未下发"
+                        + (request.getMessage() == null ? "" : "，最后状态: " + request.getMessage()));
+                pendingSupply -= supply(techTree, request);
+                archive(request);
+                continue;
+            }
+            int powerUsage = Math.min(techTree.getPower(request.getUnitType()), 0) * request.getQuantity();
+            if (powerUsage < 0 && power + pendingSupply + powerUsage < 0) {
+                // 连同排队中的电厂电力仍为负数：再补一个电厂，优先级比当前请求更高，当前请求等电力够了再下发
+                ProductionRequest powerPlant = enqueue(POWER_PLANT, 1, request.getPriority() + 1,
+                        "电力不足，为" + request.getUnitType() + "自动插入", Collections.emptyList());
+                pendingSupply += supply(techTree, powerPlant);
+                request.setMessage("电力不足，等待电厂: 需要" + -powerUsage + "，预计可用" + (power + pendingSupply));
+                deferred.add(request);
+                continue;
+            }
+            if (request.getCost() > funds) {
+                request.setStatus(ProductionRequest.Status.WAITING_FUNDS);
+                request.setMessage("资金不足: 需要" + request.getCost() + "，当前" + funds);
+                deferred.add(request);
+                continue;
+            }
+            if (!producible.computeIfAbsent(request.getUnitType(), gameSocketAPI::canProduce)) {
+                blocked(request);
+                deferred.add(request);
+                continue;
+            }
+
+            Integer waitId = gameSocketAPI.produce(request.getUnitType(), request.getQuantity(),
+                    techTree.isBuilding(request.getUnitType()));
+            if (waitId == null) {
+                request.setStatus(ProductionRequest.Status.FAILED);
+                request.setMessage("生产任务创建失败");
+            } else {
+                request.setStatus(ProductionRequest.Status.DISPATCHED);
+                request.setWaitId(waitId);
+                request.setMessage(null);
+                funds -= request.getCost();
+                power += techTree.getPower(request.getUnitType()) * request.getQuantity();
+                pendingSupply -= supply(techTree, request);
+                if (techTree.getPower(request.getUnitType()) != 0) {
+                    inFlight.add(request);
+                    dispatchedAt.put(request.getId(), now);
+                }
+            }
+            archive(request);
+        }
+        queue.addAll(deferred);
+    }
+
+    /**
+     * 清理已建成或过期的在途请求，返回剩余在途请求的电力之和
+     */
+    private int inFlightPower(TechTree techTree) {
+        long now = System.currentTimeMillis();
+        int power = 0;
+        Iterator<ProductionRequest> iterator = inFlight.iterator();
+        while (iterator.hasNext()) {
+            ProductionRequest request = iterator.next();
+            boolean done;
+            try {
+                done = now - dispatchedAt.get(request.getId()) > IN_FLIGHT_MAX_AGE
+                        || gameSocketAPI.isReady(request.getWaitId());
+            } catch (GameSocketAPI.GameAPIError e) {
+                // 查询失败时保守处理，仍视为在途，直到超过最长时间
+                done = false;
+            }
+            if (done) {
+                iterator.remove();
+                dispatchedAt.remove(request.getId());
+            } else {
+                power += techTree.getPower(request.getUnitType()) * request.getQuantity();
+            }
+        }
+        return power;
+    }
+
+    private static int supply(TechTree techTree, ProductionRequest request) {
+        return Math.max(techTree.getPower(request.getUnitType()), 0) * request.getQuantity();
+    }
+
+    /**
+     * 无法生产时区分是在等自动插入的前置建筑，还是生产队列被占用等其他原因
+     */
+    private void blocked(ProductionRequest request) {
+        List<ProductionRequest> required = prerequisites.getOrDefault(request.getId(), Collections.emptyList());
+        for (ProductionRequest prerequisite : required) {
+            if (prerequisite.getStatus() == ProductionRequest.Status.FAILED) {
+                request.setStatus(ProductionRequest.Status.BLOCKED);
+                request.setMessage("前置建筑" + prerequisite.getUnitType() + "生产失败");
+                return;
+            }
+        }
+        if (!required.isEmpty()) {
+            request.setStatus(ProductionRequest.Status.WAITING_PREREQUISITES);
+            StringJoiner names = new StringJoiner("、");
+            required.forEach(prerequisite -> names.add(prerequisite.getUnitType()));
+            request.setMessage("等待前置建筑建成: " + names);
+            return;
+        }
+        request.setStatus(ProductionRequest.Status.BLOCKED);
+        request.setMessage("当前无法生产，可能生产队列被占用");
+    }
+
+    private void archive(ProductionRequest request) {
+        prerequisites.remove(request.getId());
+        history.addFirst(request);
+        while (history.size() > MAX_HISTORY) {
+            history.pollLast();
+        }
+    }
+}
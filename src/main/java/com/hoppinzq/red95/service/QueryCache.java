@@ -0,0 +1,216 @@
+package com.hoppinzq.red95.service;
+
+import com.hoppinzq.red95.model.Actor;
+import com.hoppinzq.red95.model.Location;
+import com.hoppinzq.red95.model.TargetsQueryParam;
+import com.hoppinzq.red95.world.ActorState;
+import com.hoppinzq.red95.world.WorldSnapshot;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * query_actor 的结果缓存，getGameState、ensureCanBuildWait、deployMcvAndWait 和智能体重试发出的相同查询不再每次都访问游戏：
+ * <ul>
+ *     <li>查询参数规范化后作为键(类型和编组排序去重、空列表和 null 视为相同)，在 ttl 内直接返回上次的结果</li>
+ *     <li>相同的查询同时到达时只发一次请求，其余调用等待同一个结果</li>
+ *     <li>移动、攻击、部署、放置建筑、选中、编组、镜头移动等会改变单位或查询范围的命令执行后全部失效，
+ *     失效前发出、失效后才返回的查询结果不写入缓存</li>
+ * </ul>
+ * 缓存的是不可变的 {@link ActorState}，每次返回新的 Actor 副本，调用方修改不会影响缓存。
+ */
+public class QueryCache {
+    // 会让缓存的查询结果失效的命令，生产、集结点和各种只读查询不在其中
+    static final Set<String> INVALIDATING_COMMANDS = Set.of("attack", "camera_move", "deploy", "form_group",
+            "move_actor", "occupy", "place_building", "repair", "select_unit", "stop", "view");
+
+    private final QueryCacheConfig config;
+    private final Map<TargetsQueryParam, Entry> entries;  // 按访问顺序，最久未使用的在前
+    private final Map<TargetsQueryParam, CompletableFuture<List<ActorState>>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();  // 每次失效加一
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();  // 等待其他调用正在进行的相同查询
+    private final LongAdder invalidations = new LongAdder();
+
+    private record Entry(List<ActorState> actors, long at) {
+    }
+
+    public QueryCache(QueryCacheConfig config) {
+        this.config = config;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TargetsQueryParam, Entry> eldest) {
+                return size() > config.getMaxEntries();
+            }
+        };
+    }
+
+    /**
+     * @param param  查询参数
+     * @param loader 缓存未命中时实际访问游戏的查询
+     * @return 查询结果的副本
+     */
+    public List<Actor> get(TargetsQueryParam param, Supplier<List<Actor>> loader) {
+        if (!config.isEnabled()) {
+            return loader.get();
+        }
+        TargetsQueryParam key = canonical(param);
+        long ttl = config.getTtl().toMillis();
+        if (ttl > 0) {
+            Entry entry;
+            synchronized (entries) {
+                entry = entries.get(key);
+            }
+            if (entry != null && System.currentTimeMillis() - entry.at() <= ttl) {
+                hits.increment();
+                return WorldSnapshot.toActors(entry.actors());
+            }
+        }
+
+        CompletableFuture<List<ActorState>> flight = new CompletableFuture<>();
+        CompletableFuture<List<ActorState>> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return WorldSnapshot.toActors(join(existing));
+        }
+        misses.increment();
+        long startGeneration = generation.get();
+        long startedAt = System.currentTimeMillis();
+        try {
+            List<ActorState> actors = toStates(loader.get());
+            if (ttl > 0) {
+                synchronized (entries) {
+                    // 查询期间有写命令时结果可能已经过时，只交给正在等待的调用，不缓存
+                    if (generation.get() == startGeneration) {
+                        entries.put(key, new Entry(actors, startedAt));
+                    }
+                }
+            }
+            flight.complete(actors);
+            return WorldSnapshot.toActors(actors);
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * 写命令执行后调用，清空缓存；正在进行的查询不再被新的调用合并
+     */
+    public void invalidate() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+        inFlight.clear();
+        invalidations.increment();
+    }
+
+    public void onCommand(String command) {
+        if (INVALIDATING_COMMANDS.contains(command)) {
+            invalidate();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return 不需要访问游戏的查询占比(命中和合并)，还没有查询时为 0
+     */
+    public double getHitRatio() {
+        long served = hits.sum() + coalesced.sum();
+        long total = served + misses.sum();
+        return total == 0 ? 0 : (double) served / total;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hits", getHits());
+        result.put("misses", getMisses());
+        result.put("coalesced", getCoalesced());
+        result.put("invalidations", invalidations.sum());
+        result.put("hitRatio", Math.round(getHitRatio() * 1000) / 1000.0);
+        synchronized (entries) {
+            result.put("size", entries.size());
+        }
+        return result;
+    }
+
+    private static List<ActorState> join(CompletableFuture<List<ActorState>> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static List<ActorState> toStates(List<Actor> actors) {
+        List<ActorState> states = new ArrayList<>(actors.size());
+        for (Actor actor : actors) {
+            states.add(ActorState.of(actor));
+        }
+        return Collections.unmodifiableList(states);
+    }
+
+    /**
+     * 只做不改变查询语义的规范化：类型和编组是"或"的关系，排序去重；null 列表和空列表、null 和空字符串视为相同
+     */
+    static TargetsQueryParam canonical(TargetsQueryParam param) {
+        List<Map<String, Object>> restrain = new ArrayList<>();
+        if (param.getRestrain() != null) {
+            for (Map<String, Object> condition : param.getRestrain()) {
+                if (condition != null && !condition.isEmpty()) {
+                    restrain.add(new HashMap<>(condition));
+                }
+            }
+        }
+        Location location = param.getLocation();
+        return TargetsQueryParam.builder()
+                .type(sortedDistinct(param.getType()))
+                .faction(emptyToNull(param.getFaction()))
+                .groupId(sortedDistinct(param.getGroupId()))
+                .restrain(restrain)
+                .location(location != null ? new Location(location.getX(), location.getY()) : null)
+                .direction(emptyToNull(param.getDirection()))
+                .range(emptyToNull(param.getRange()))
+                .build();
+    }
+
+    private static <T extends Comparable<T>> List<T> sortedDistinct(List<T> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        TreeSet<T> sorted = new TreeSet<>();
+        for (T value : values) {
+            if (value != null) {
+                sorted.add(value);
+            }
+        }
+        return new ArrayList<>(sorted);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
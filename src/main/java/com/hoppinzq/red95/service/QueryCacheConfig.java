@@ -0,0 +1,15 @@
+package com.hoppinzq.red95.service;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * query_actor 结果缓存配置，对应 application.yml 中的 red95.query-cache 节点
+ */
+@Data
+public class QueryCacheConfig {
+    private boolean enabled = true;  // 关闭后每次查询都访问游戏，也不合并并发的相同查询
+    private Duration ttl = Duration.ofMillis(300);  // 结果的有效期，0表示不缓存，只合并同时进行的相同查询
+    private int maxEntries = 128;  // 最多缓存的查询数，超出时淘汰最久未使用的
+}
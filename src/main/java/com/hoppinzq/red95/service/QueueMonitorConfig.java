@@ -0,0 +1,15 @@
+package com.hoppinzq.red95.service;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * 生产队列监视器配置，对应 application.yml 中的 red95.queue-monitor 节点，每个游戏实例使用同一份配置
+ */
+@Data
+public class QueueMonitorConfig {
+    private boolean enabled = true;  // 关闭后不再后台轮询，production_queue_status 每次实时查询
+    private Duration idlePause = Duration.ofSeconds(60);  // 会话超过该时间没有工具调用时暂停轮询，避免空转占用游戏
+    private boolean autoPlace = true;  // 已就绪的建筑/防御由监视器自动放置；自己调用 place_building 的智能体应关闭
+}
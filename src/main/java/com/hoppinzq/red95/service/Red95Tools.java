@@ -1,7 +1,18 @@
 package com.hoppinzq.red95.service;
 
+import com.hoppinzq.red95.config.Red95Properties;
 import com.hoppinzq.red95.model.*;
+import com.hoppinzq.red95.session.GameSession;
+import com.hoppinzq.red95.session.GameSessionManager;
+import com.hoppinzq.red95.shaping.ResponseShaper;
+import com.hoppinzq.red95.socket.CircuitBreaker;
+import com.hoppinzq.red95.tracing.TraceSummary;
+import com.hoppinzq.red95.tracing.Tracer;
+import com.hoppinzq.red95.world.ActorSelector;
+import com.hoppinzq.red95.world.ActorState;
+import com.hoppinzq.red95.world.WorldSnapshot;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
@@ -13,6 +24,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
@@ -23,102 +35,270 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class Red95Tools {
 
-    private GameSocketAPI gameSocketAPI;
+    private static final int BUILDING_PRIORITY = 10;  // 建筑默认调度优先级
+    private static final String GAME_ID_DESC = "游戏ID：要操作的游戏实例，可选，不传时使用默认游戏；可以是配置的名称或允许的host:port";
+    private static final String FORMAT_DESC = "返回格式：可选，'full'为完整单位对象，'compact'为按列编码(columns+rows，字段名只出现一次)，" +
+            "'grouped'为按阵营和类型分组的数量和ID；不传时使用服务端默认格式";
+    private static final String FIELDS_DESC = "字段投影：可选，仅compact格式有效，从'id','type','faction','x','y','hp'中选择需要的列，不传时返回全部";
+    private static final String MAX_BYTES_DESC = "字节预算：可选，仅compact/grouped格式有效，超出时按己方、敌方、其他的顺序保留单位并返回truncated，0表示不限制";
+    private static final String MAX_STALENESS_DESC = "可接受的数据年龄(毫秒)：可选，开启后台采样时，快照不超过该年龄就直接返回快照，" +
+            "0表示必须实时查询，不传时使用服务端默认值";
     private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 
-    //@Tool(name = "init_game",description = "初始化游戏和socket连接，连接到OpenRA游戏的Socket服务")
-    public String init(){
-        gameSocketAPI = new GameSocketAPI("localhost", 7445, "zh");
-        try{
-            gameSocketAPI.init();
-        }catch (Exception exception){
-            exception.printStackTrace();
+    @Resource
+    private GameSessionManager sessionManager;
+
+    @Resource
+    private Tracer tracer;
+
+    @Resource
+    private Red95Properties properties;
+
+    /**
+     * 按游戏ID获取对应实例的游戏接口
+     *
+     * @param gameId 游戏ID，为空时使用默认游戏
+     * @return 游戏接口
+     */
+    private GameSocketAPI api(String gameId) {
+        return sessionManager.get(gameId).touch();
+    }
+
+    @Tool(name = "list_games", description = "列出当前已连接的游戏实例及其调用次数、空闲时间、存活状态和往返时间")
+    public List<Map<String, Object>> listGames() {
+        long now = System.currentTimeMillis();
+        return sessionManager.getSessions().stream().map(session -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("gameId", session.getGameId());
+            item.put("toolCalls", session.getToolCalls());
+            item.put("idleSeconds", (now - session.getLastAccess()) / 1000);
+            item.put("alive", session.getGameSocketAPI().getKeepalive().isAlive());
+            item.put("rttMillis", session.getGameSocketAPI().getKeepalive().getRttMillis());
+            return item;
+        }).toList();
+    }
+
+    @Tool(name = "trace_summary", description = "汇总最近工具调用的追踪，按 工具→游戏命令/轮询/等待 的调用路径给出次数、总耗时和自身耗时，用于分析一次调用的时间花在哪里")
+    public Map<String, Object> traceSummary(@ToolParam(description = "工具名称：只汇总该工具的调用，如'try_buy_produce_unit'，不传时汇总全部", required = false) String tool) {
+        TraceSummary summary = TraceSummary.of(tracer.recentTraces(), tool);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("traces", summary.getTraceCount());
+        result.put("tree", summary.tree());
+        result.put("folded", summary.folded());
+        return result;
+    }
+
+    @Tool(name = "is_game_run",description = "检查游戏服务是否可用，直接返回熔断、保活和重连状态，不访问游戏。" +
+            "running 为 false 表示游戏未启动或连接中断，此时其他工具会直接失败，后台重连成功后自动恢复；" +
+            "alive、lastSeenAgoMillis、rttMillis 为最近一次收到游戏响应的情况和往返时间")
+    public Map<String, Object> isGameRun(@ToolParam(description = GAME_ID_DESC, required = false) String gameId){
+        GameSocketAPI gameSocketAPI = api(gameId);
+        CircuitBreaker breaker = gameSocketAPI.getCircuitBreaker();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("running", breaker.getState() == CircuitBreaker.State.CLOSED);
+        result.putAll(breaker.snapshot());
+        result.putAll(gameSocketAPI.getKeepalive().snapshot());
+        result.put("reconnect", gameSocketAPI.getReconnectSupervisor().snapshot());
+        result.put("queryCache", gameSocketAPI.getQueryCache().snapshot());
+        return result;
+    }
+
+    @Tool(name = "get_game_state",description = "获取当前游戏状态，包括玩家资源、电力信息和屏幕内可见单位列表；单位较多时建议用compact或grouped格式，" +
+            "频繁调用时建议使用cursor只获取变化")
+    public Object getGameState(@ToolParam(description = GAME_ID_DESC, required = false) String gameId,
+                               @ToolParam(description = FORMAT_DESC, required = false) String format,
+                               @ToolParam(description = FIELDS_DESC, required = false) List<String> fields,
+                               @ToolParam(description = MAX_BYTES_DESC, required = false) Integer maxBytes,
+                               @ToolParam(description = "增量游标：可选，第一次传空字符串得到完整状态和cursor，之后传上次返回的cursor，" +
+                                       "只返回新出现(spawned)、消失(removed)、变化(changed)的单位和变化的资源字段，单位按compact列式编码；" +
+                                       "游标过期时返回full=true的完整状态", required = false) String cursor,
+                               @ToolParam(description = MAX_STALENESS_DESC, required = false) Integer maxStalenessMillis){
+        GameSession session = sessionManager.get(gameId);
+        GameSocketAPI gameSocketAPI = session.touch();
+        WorldSnapshot snapshot = snapshot(session, maxStalenessMillis);
+        PlayerBaseInfo playerBaseInfo;
+        List<Actor> actors;
+        if (snapshot != null) {
+            playerBaseInfo = snapshot.toBaseInfo();
+            actors = WorldSnapshot.toActors(snapshot.select(Collections.emptyList(), "任意", "screen"));
+        } else {
+            playerBaseInfo = gameSocketAPI.playerBaseInfoQuery();
+            actors = gameSocketAPI.queryActor(TargetsQueryParam.builder()
+                            .type(Collections.emptyList())
+                            .faction("任意")
+                            .range("screen")
+                            .restrain(Collections.singletonList(Map.of("visible",true)))
+                    .build());
         }
-        return "ok";
+        session.getProductionScheduler().observe(playerBaseInfo);
+        if (cursor != null) {
+            try {
+                return session.getStateCursors().advance(cursor.isBlank() ? null : cursor, actors, playerBaseInfo,
+                        ResponseShaper.columns(fields));
+            } catch (IllegalArgumentException e) {
+                throw new GameSocketAPI.GameAPIError("INVALID_FORMAT", e.getMessage());
+            }
+        }
+        String actorFormat = actorFormat(format);
+        if (ResponseShaper.FULL.equals(actorFormat)) {
+            return GameState.builder()
+                    .actorList(actors).playerBaseInfo(playerBaseInfo)
+                    .build();
+        }
+        Map<String, Object> base = new LinkedHashMap<>();
+        base.put("playerBaseInfo", playerBaseInfo);
+        return shapeActors(base, actors, actorFormat, fields, maxBytes);
     }
 
-    @Tool(name = "is_game_run",description = "检查游戏服务是否在运行，通过心跳检测判断连接状态")
-    public Boolean isGameRun(){
-        init();
-        return gameSocketAPI.isServerRunning();
-    }
-
-    @Tool(name = "get_game_state",description = "获取当前游戏状态，包括玩家资源、电力信息和屏幕内可见单位列表")
-    public GameState getGameState(){
-        init();
-        PlayerBaseInfo playerBaseInfo = gameSocketAPI.playerBaseInfoQuery();
-        List<Actor> actors = gameSocketAPI.queryActor(TargetsQueryParam.builder()
-                        .type(Collections.emptyList())
-                        .faction("任意")
-                        .range("screen")
-                        .restrain(Collections.singletonList(Map.of("visible",true)))
-                .build());
-        return GameState.builder()
-                .actorList(actors).playerBaseInfo(playerBaseInfo)
-                .build();
+    /**
+     * @return 不超过 maxStalenessMillis 的采样快照，采样未开启或快照太旧时为 null，调用方应实时查询
+     */
+    private WorldSnapshot snapshot(GameSession session, Integer maxStalenessMillis) {
+        long bound = maxStalenessMillis != null ? maxStalenessMillis
+                : properties.getSampler().getDefaultMaxStaleness().toMillis();
+        return session.getWorldSampler().fresh(bound);
     }
 
-    @Tool(name = "query_screen_info",description = "查询当前游戏屏幕信息，包括屏幕边界坐标、鼠标位置等")
-    public ScreenInfoResult queryScreenInfo(){
-        init();
-        return gameSocketAPI.screenInfoQuery();
+    private String actorFormat(String format) {
+        return format == null || format.isBlank() ? properties.getResponse().getActorFormat() : format;
     }
 
-    @Tool(name = "query_map_info",description = "查询地图的完整信息，包括地图尺寸、地形、资源分布、可见性等")
-    public MapQueryResult queryMapInfo(){
-        init();
-        return gameSocketAPI.mapQuery();
+    private Map<String, Object> shapeActors(Map<String, Object> base, List<Actor> actors, String format,
+                                            List<String> fields, Integer maxBytes) {
+        try {
+            return ResponseShaper.shapeActors(base, actors, format, fields,
+                    maxBytes != null ? maxBytes : properties.getResponse().getMaxBytes());
+        } catch (IllegalArgumentException e) {
+            throw new GameSocketAPI.GameAPIError("INVALID_FORMAT", e.getMessage());
+        }
+    }
+
+    @Tool(name = "query_screen_info",description = "查询当前游戏屏幕信息，包括屏幕边界坐标、鼠标位置等")
+    public ScreenInfoResult queryScreenInfo(@ToolParam(description = GAME_ID_DESC, required = false) String gameId,
+                                            @ToolParam(description = MAX_STALENESS_DESC, required = false) Integer maxStalenessMillis){
+        GameSession session = sessionManager.get(gameId);
+        GameSocketAPI gameSocketAPI = session.touch();
+        WorldSnapshot snapshot = snapshot(session, maxStalenessMillis);
+        return snapshot != null && snapshot.screen() != null ? snapshot.toScreenInfo() : gameSocketAPI.screenInfoQuery();
+    }
+
+    @Tool(name = "query_map_info",description = "查询地图信息，包括地图尺寸、地形、资源分布、可见性等；默认返回逐格完整网格，只需要概览时传format='summary'按块汇总")
+    public Object queryMapInfo(@ToolParam(description = GAME_ID_DESC, required = false) String gameId,
+                               @ToolParam(description = "返回格式：可选，'summary'为按块汇总(地形字符画、探索/可见比例、资源块列表)，'full'为逐格完整网格；不传时使用服务端默认格式", required = false) String format,
+                               @ToolParam(description = "汇总块边长：可选，summary格式下每块包含的格子数，不传时使用服务端默认值", required = false) Integer tileSize){
+        GameSocketAPI gameSocketAPI = api(gameId);
+        MapQueryResult map = gameSocketAPI.mapQuery();
+        String mapFormat = format == null || format.isBlank() ? properties.getResponse().getMapFormat() : format;
+        switch (mapFormat) {
+            case ResponseShaper.FULL:
+                return map;
+            case ResponseShaper.SUMMARY:
+                return ResponseShaper.summarizeMap(map, tileSize != null ? tileSize : properties.getResponse().getMapTileSize());
+            default:
+                throw new GameSocketAPI.GameAPIError("INVALID_FORMAT", "不支持的格式: " + mapFormat + "，可选 full、summary");
+        }
     }
 
 
     @Tool(name = "query_player_info",description = "查询玩家基地的基础信息，包括金钱、资源、电力等")
-    public PlayerBaseInfo queryPlayerInfo(){
-        init();
-        return gameSocketAPI.playerBaseInfoQuery();
+    public PlayerBaseInfo queryPlayerInfo(@ToolParam(description = GAME_ID_DESC, required = false) String gameId,
+                                          @ToolParam(description = MAX_STALENESS_DESC, required = false) Integer maxStalenessMillis){
+        GameSession session = sessionManager.get(gameId);
+        GameSocketAPI gameSocketAPI = session.touch();
+        WorldSnapshot snapshot = snapshot(session, maxStalenessMillis);
+        PlayerBaseInfo playerBaseInfo = snapshot != null ? snapshot.toBaseInfo() : gameSocketAPI.playerBaseInfoQuery();
+        session.getProductionScheduler().observe(playerBaseInfo);
+        return playerBaseInfo;
     }
 
     @Tool(name = "deploy_mcv",description = "部署基地车，使其展开为基地建筑")
-    public String deployMcv(){
-        init();
+    public String deployMcv(@ToolParam(description = GAME_ID_DESC, required = false) String gameId){
+        GameSocketAPI gameSocketAPI = api(gameId);
         gameSocketAPI.deployMcvAndWait();
         return "ok";
     }
 
     /**
      * 注意：该方法将购买和构建建筑物，构建建筑物由AI随机在周围选择（一定能构建成功的区域），因为让AI传坐标很可能创建不了
-     * 20s内会一直在轮询购买状态
-     * 当钱不够且超过20s时，该方法将阻塞。当建筑物就绪时，必须显式要求AI使用placeBuild放置队列顶端已就绪的建筑物
+     * 建筑请求交给生产调度器排队，缺少的前置建筑会按科技树一并入队，资金不足时不会阻塞，电力不足时调度器会先插入电厂
      * @param building
-     * @return
+     * @return 调度请求ID和当前状态，可用 query_production_schedule 按请求ID查看是否已下发
      */
-    @Tool(name = "try_buy_building_and_build",description = "尝试购买并构建指定建筑物，会自动处理依赖建筑并等待完成，若资金不足则阻塞等待")
-    public Boolean tryBuyBuild(@ToolParam(description = "建筑类型：支持的值包括'电厂'、'兵营'、'矿场'、'车间'、'雷达'、'维修中心'、'核电'、'科技中心'、'机场','喷火碉堡','特斯拉线圈','防空炮塔'") String building){
-        init();
-        gameSocketAPI.ensureCanBuildWait(building);
-        return true;
+    @Tool(name = "try_buy_building_and_build",description = "尝试购买并构建指定建筑物，会自动处理依赖建筑(缺少的前置建筑按顺序先入队)，请求进入生产调度队列后立即返回调度请求ID和状态，资金足够时自动下发，电力不足时会先建电厂，可用query_production_schedule查看进度")
+    public Map<String, Object> tryBuyBuild(@ToolParam(description = "建筑类型：支持的值包括'电厂'、'兵营'、'矿场'、'车间'、'雷达'、'维修中心'、'核电'、'科技中心'、'机场','喷火碉堡','特斯拉线圈','防空炮塔'") String building,
+                               @ToolParam(description = GAME_ID_DESC, required = false) String gameId){
+        GameSession session = sessionManager.get(gameId);
+        session.touch();
+        ProductionRequest request = session.getProductionScheduler().submit(building, 1, BUILDING_PRIORITY);
+        return Map.of("requestId", request.getId(), "status", request.getStatus().name());
+    }
+
+    @Tool(name = "schedule_production", description = "将单位或建筑加入生产调度队列并立即返回，调度器按优先级和资金情况自动下发，不会阻塞等待资金")
+    public Map<String, Object> scheduleProduction(@ToolParam(description = "单位类型：要生产的单位或建筑中文名称") String unitType,
+                                                  @ToolParam(description = "生产数量：正整数，默认为1", required = false) Integer quantity,
+                                                  @ToolParam(description = "优先级：数值越大越先生产，建筑默认为10，单位建议0-9", required = false) Integer priority,
+                                                  @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSession session = sessionManager.get(gameId);
+        session.touch();
+        ProductionRequest request = session.getProductionScheduler().submit(unitType, quantity != null ? quantity : 1,
+                priority != null ? priority : 0);
+        return Map.of("requestId", request.getId(), "status", request.getStatus().name());
+    }
+
+    @Tool(name = "query_production_schedule", description = "查询生产调度队列中各请求的状态(排队/等待资金/等待前置建筑/无法生产/已下发/失败)以及调度器看到的资金和电力")
+    public Map<String, Object> queryProductionSchedule(@ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSession session = sessionManager.get(gameId);
+        session.touch();
+        List<Map<String, Object>> requests = session.getProductionScheduler().snapshot().stream().map(r -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("requestId", r.getId());
+            item.put("unitType", r.getUnitType());
+            item.put("quantity", r.getQuantity());
+            item.put("priority", r.getPriority());
+            item.put("status", r.getStatus().name());
+            if (r.getWaitId() != null) {
+                item.put("waitId", r.getWaitId());
+            }
+            if (r.getMessage() != null) {
+                item.put("message", r.getMessage());
+            }
+            return item;
+        }).toList();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("playerBaseInfo", session.getProductionScheduler().getBaseInfo());
+        result.put("requests", requests);
+        return result;
     }
 
 
     @Tool(name = "place_building",description = "放置建造队列顶端已就绪的建筑，AI会自动选择合适位置进行放置")
-    public String placeBuild(@ToolParam(description = "建筑类型：可选值为'Building'(建筑)、'Defense'(防御)、'Infantry'(步兵)、'Vehicle'(载具)、'Aircraft'(飞机)、'Naval'(船)") String type){
-        init();
+    public String placeBuild(@ToolParam(description = "建筑类型：可选值为'Building'(建筑)、'Defense'(防御)、'Infantry'(步兵)、'Vehicle'(载具)、'Aircraft'(飞机)、'Naval'(船)") String type,
+                             @ToolParam(description = GAME_ID_DESC, required = false) String gameId){
+        GameSocketAPI gameSocketAPI = api(gameId);
         gameSocketAPI.placeBuilding(type);
         return "ok";
     }
 
 
     @Tool(name = "try_buy_produce_unit", description = "确保能够生产指定单位，自动检查并建造所需的前置依赖建筑")
-    public Boolean ensureCanProduceUnit(@ToolParam(description = "单位名称：游戏中单位的中文名称") String unitName) {
-        init();
+    public Boolean ensureCanProduceUnit(@ToolParam(description = "单位名称：游戏中单位的中文名称") String unitName,
+                                        @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         return gameSocketAPI.ensureCanProduceUnit(unitName);
     }
 
     @Tool(name = "visible_units", description = "根据指定条件查询视野范围内可见的单位列表")
-    public List<Map<String, Object>> visibleUnits(@ToolParam(description = "单位类型列表：要查询的单位中文名称列表，如['步兵','坦克']，可选值：士兵: 表示所有士兵，载具: 表示所有载具，坦克: 表示所有坦克，战斗单位: 表示所有除了采矿车和基地车以外的单位，建筑: 所有建筑") List<String> type,
+    public Object visibleUnits(@ToolParam(description = "单位类型列表：要查询的单位中文名称列表，如['步兵','坦克']，可选值：士兵: 表示所有士兵，载具: 表示所有载具，坦克: 表示所有坦克，战斗单位: 表示所有除了采矿车和基地车以外的单位，建筑: 所有建筑") List<String> type,
                                                @ToolParam(description = "阵营名称：可选值为'己方'、'敌方'、'中立'、'任意'，默认传己方") String faction,
                                                @ToolParam(description = "筛选范围：可选值为'all'(全部)、'screen'(屏幕内)、'selected'(已选中)") String range,
-                                               @ToolParam(description = "约束条件列表：如[{\"relativeDirection\":\"左上\",\"maxNum\":5}]表示左上方向最多5个单位",required = false) List<Map<String, Object>> restrain) {
-        init();
+                                               @ToolParam(description = "约束条件列表：如[{\"relativeDirection\":\"左上\",\"maxNum\":5}]表示左上方向最多5个单位",required = false) List<Map<String, Object>> restrain,
+                                                  @ToolParam(description = GAME_ID_DESC, required = false) String gameId,
+                               @ToolParam(description = FORMAT_DESC, required = false) String format,
+                               @ToolParam(description = FIELDS_DESC, required = false) List<String> fields,
+                               @ToolParam(description = MAX_BYTES_DESC, required = false) Integer maxBytes,
+                               @ToolParam(description = MAX_STALENESS_DESC, required = false) Integer maxStalenessMillis) {
+        GameSession session = sessionManager.get(gameId);
+        GameSocketAPI gameSocketAPI = session.touch();
         // 修复参数类型问题
         if (type == null) {
             type = Collections.emptyList();
@@ -134,7 +314,15 @@ public class Red95Tools {
                 .restrain(restrain)
                 .build();
         
-        List<Actor> units = gameSocketAPI.queryActor(params);
+        // 能在快照上求值的查询直接本地过滤，选中范围、相对方向等条件仍交给游戏
+        ActorSelector selector = session.getSelectorCompiler().compile(params);
+        WorldSnapshot snapshot = selector != null ? snapshot(session, maxStalenessMillis) : null;
+        List<ActorState> selected = snapshot != null ? selector.select(snapshot) : null;
+        List<Actor> units = selected != null ? WorldSnapshot.toActors(selected) : gameSocketAPI.queryActor(params);
+        String actorFormat = actorFormat(format);
+        if (!ResponseShaper.FULL.equals(actorFormat)) {
+            return shapeActors(new LinkedHashMap<>(), units, actorFormat, fields, maxBytes);
+        }
         return units.stream().map(u -> Map.of(
                 "actor_id", u.getActorId(),
                 "type", u.getType(),
@@ -146,8 +334,9 @@ public class Red95Tools {
 
     @Tool(name = "produce", description = "在生产队列中添加指定类型和数量的单位生产任务，并返回生产任务ID")
     public int produce(@ToolParam(description = "单位类型：要生产的单位中文名称，可选值有：'步兵'，'火箭兵'，'工程师'，'手雷兵'，'矿车'，'防空车'，'基地车'，'重坦'，'v2'，'猛犸坦克'，'雅克战机'，'米格战机'") String unitType,
-                       @ToolParam(description = "生产数量：要生产的单位数量，必须为正整数，默认为1") int quantity) {
-        init();
+                       @ToolParam(description = "生产数量：要生产的单位数量，必须为正整数，默认为1") int quantity,
+                       @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         Integer waitId = gameSocketAPI.produce(unitType, quantity, true);
         return waitId != null ? waitId : -1;
     }
@@ -156,8 +345,9 @@ public class Red95Tools {
     public String moveUnits(@ToolParam(description = "单位ID列表：要移动的单位ID集合") List<Integer> actorIds, 
                            @ToolParam(description = "目标X坐标：地图X轴坐标") int x, 
                            @ToolParam(description = "目标Y坐标：地图Y轴坐标") int y, 
-                           @ToolParam(description = "是否攻击移动：true表示单位会在移动过程中自动攻击敌人，false为普通移动，默认是false") boolean attackMove) {
-        init();
+                           @ToolParam(description = "是否攻击移动：true表示单位会在移动过程中自动攻击敌人，false为普通移动，默认是false") boolean attackMove,
+                            @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         List<Actor> actors = actorIds.stream().map(Actor::new).toList();
         Location location = new Location(x, y);
         gameSocketAPI.moveUnitsByLocation(actors, location, attackMove);
@@ -166,32 +356,43 @@ public class Red95Tools {
 
     @Tool(name = "camera_move_to", description = "将游戏镜头直接移动到指定的地图坐标位置")
     public String cameraMoveTo(@ToolParam(description = "目标X坐标：地图X轴坐标") int x, 
-                              @ToolParam(description = "目标Y坐标：地图Y轴坐标") int y) {
-        init();
+                              @ToolParam(description = "目标Y坐标：地图Y轴坐标") int y,
+                               @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         gameSocketAPI.moveCameraByLocation(new Location(x, y));
         return "ok";
     }
 
     @Tool(name = "camera_move_dir", description = "按照指定方向和距离移动游戏镜头")
     public String cameraMoveDir(@ToolParam(description = "移动方向：可选值为'北'/'上'、'东北'/'右上'、'东'/'右'、'东南'/'右下'、'南'/'下'、'西南'/'左下'、'西'/'左'、'西北'/'左上'") String direction, 
-                               @ToolParam(description = "移动距离：镜头移动的格子数，正整数") int distance) {
-        init();
+                               @ToolParam(description = "移动距离：镜头移动的格子数，正整数") int distance,
+                                @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         gameSocketAPI.moveCameraByDirection(direction, distance);
         return "ok";
     }
 
     @Tool(name = "can_produce", description = "检查当前是否具备生产指定单位的条件（包括前置建筑和资源）")
-    public boolean canProduce(@ToolParam(description = "单位类型：要检查的单位中文名称") String unitType) {
-        init();
+    public boolean canProduce(@ToolParam(description = "单位类型：要检查的单位中文名称") String unitType,
+                              @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         return gameSocketAPI.canProduce(unitType);
     }
 
+    @Tool(name = "can_produce_all", description = "一次性检查多个单位或建筑当前是否可以生产，返回类型到是否可生产的映射")
+    public Map<String, Boolean> canProduceAll(@ToolParam(description = "单位类型列表：要检查的单位或建筑中文名称列表，如['步兵','重坦','电厂']") List<String> unitTypes,
+                                              @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
+        return gameSocketAPI.canProduceAll(unitTypes);
+    }
+
     @Tool(name = "move_units_by_location", description = "将指定单位列表移动到指定的地图坐标位置")
     public String moveUnitsByLocation(@ToolParam(description = "单位ID列表：要移动的单位ID集合") List<Integer> actorIds, 
                                     @ToolParam(description = "目标X坐标：地图X轴坐标") int x, 
                                     @ToolParam(description = "目标Y坐标：地图Y轴坐标") int y, 
-                                    @ToolParam(description = "是否攻击移动：true表示单位会在移动过程中自动攻击敌人，false为普通移动，默认是false") boolean attackMove) {
-        init();
+                                    @ToolParam(description = "是否攻击移动：true表示单位会在移动过程中自动攻击敌人，false为普通移动，默认是false") boolean attackMove,
+                                      @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         List<Actor> actors = actorIds.stream().map(Actor::new).toList();
         gameSocketAPI.moveUnitsByLocation(actors, new Location(x, y), attackMove);
         return "ok";
@@ -200,8 +401,9 @@ public class Red95Tools {
     @Tool(name = "move_units_by_direction", description = "按照指定方向和距离移动单位列表")
     public String moveUnitsByDirection(@ToolParam(description = "单位ID列表：要移动的单位ID集合") List<Integer> actorIds, 
                                      @ToolParam(description = "移动方向：可选值为'北'/'上'、'东北'/'右上'、'东'/'右'、'东南'/'右下'、'南'/'下'、'西南'/'左下'、'西'/'左'、'西北'/'左上'") String direction, 
-                                     @ToolParam(description = "移动距离：单位移动的格子数，正整数") int distance) {
-        init();
+                                     @ToolParam(description = "移动距离：单位移动的格子数，正整数") int distance,
+                                       @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         List<Actor> actors = actorIds.stream().map(Actor::new).toList();
         gameSocketAPI.moveUnitsByDirection(actors, direction, distance);
         return "ok";
@@ -209,8 +411,9 @@ public class Red95Tools {
 
     @Tool(name = "move_units_by_path", description = "控制单位沿指定的路径点序列移动")
     public String moveUnitsByPath(@ToolParam(description = "单位ID列表：要移动的单位ID集合") List<Integer> actorIds, 
-                                @ToolParam(description = "路径坐标点列表：路径点坐标数组，格式为[{\"x\":10,\"y\":20},{\"x\":15,\"y\":25}]，单位将依次经过每个坐标点") List<Map<String, Integer>> path) {
-        init();
+                                @ToolParam(description = "路径坐标点列表：路径点坐标数组，格式为[{\"x\":10,\"y\":20},{\"x\":15,\"y\":25}]，单位将依次经过每个坐标点") List<Map<String, Integer>> path,
+                                  @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         List<Actor> actors = actorIds.stream().map(Actor::new).toList();
         List<Location> locations = path.stream()
                 .map(p -> new Location(p.get("x"), p.get("y")))
@@ -223,8 +426,9 @@ public class Red95Tools {
     public String selectUnits(@ToolParam(description = "单位类型列表：要选择的单位中文名称列表，可选值：士兵: 表示所有士兵，载具: 表示所有载具，坦克: 表示所有坦克，战斗单位: 表示所有除了采矿车和基地车以外的单位，建筑: 所有建筑") List<String> type,
                             @ToolParam(description = "阵营名称：可选值为'己方'、'敌方'、'中立'、'任意'") String faction,
                             @ToolParam(description = "筛选范围：可选值为'all'(全部)、'screen'(屏幕内)、'selected'(已选中)") String range,
-                            @ToolParam(description = "约束条件列表：如[{\"relativeDirection\":\"左上\",\"maxNum\":5}]表示左上方向最多5个单位",required = false) List<Map<String, Object>> restrain) {
-        init();
+                            @ToolParam(description = "约束条件列表：如[{\"relativeDirection\":\"左上\",\"maxNum\":5}]表示左上方向最多5个单位",required = false) List<Map<String, Object>> restrain,
+                              @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         TargetsQueryParam params = TargetsQueryParam.builder()
                 .type(type != null ? type : Collections.emptyList())
                 .faction(faction)
@@ -237,8 +441,9 @@ public class Red95Tools {
 
     @Tool(name = "form_group", description = "将指定的单位列表编入指定的游戏编队")
     public String formGroup(@ToolParam(description = "单位ID列表：要编组的单位ID集合") List<Integer> actorIds, 
-                           @ToolParam(description = "组ID：游戏中的编队编号，建议在1-10范围内") int groupId) {
-        init();
+                           @ToolParam(description = "组ID：游戏中的编队编号，建议在1-10范围内") int groupId,
+                            @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         List<Actor> actors = actorIds.stream().map(Actor::new).toList();
         gameSocketAPI.formGroup(actors, groupId);
         return "ok";
@@ -269,8 +474,9 @@ public class Red95Tools {
 
     @Tool(name = "attack", description = "命令指定攻击者单位攻击目标单位")
     public boolean attack(@ToolParam(description = "攻击者单位ID：执行攻击的单位ID") int attackerId, 
-                         @ToolParam(description = "目标单位ID：被攻击的单位ID") int targetId) {
-        init();
+                         @ToolParam(description = "目标单位ID：被攻击的单位ID") int targetId,
+                          @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         Actor attacker = new Actor(attackerId);
         Actor target = new Actor(targetId);
         return gameSocketAPI.attackTarget(attacker, target);
@@ -278,8 +484,9 @@ public class Red95Tools {
 
     @Tool(name = "occupy", description = "命令占领者单位占领指定的目标建筑")
     public String occupy(@ToolParam(description = "占领者单位ID列表：执行占领操作的单位ID集合，通常是工程师等特殊单位") List<Integer> occupierIds, 
-                        @ToolParam(description = "目标单位ID列表：要占领的建筑单位ID集合") List<Integer> targetIds) {
-        init();
+                        @ToolParam(description = "目标单位ID列表：要占领的建筑单位ID集合") List<Integer> targetIds,
+                         @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         List<Actor> occupiers = occupierIds.stream().map(Actor::new).toList();
         List<Actor> targets = targetIds.stream().map(Actor::new).toList();
         gameSocketAPI.occupyUnits(occupiers, targets);
@@ -290,17 +497,27 @@ public class Red95Tools {
     public List<Map<String, Integer>> findPath(@ToolParam(description = "单位ID列表：要寻路的单位ID集合") List<Integer> actorIds, 
                                              @ToolParam(description = "目标X坐标：路径终点的X坐标") int destX, 
                                              @ToolParam(description = "目标Y坐标：路径终点的Y坐标") int destY, 
-                                             @ToolParam(description = "寻路方法：可选值为'shortest'(最短路径)、'Left'(左路)、'Right'(右路)") String method) {
-        init();
+                                             @ToolParam(description = "寻路方法：可选值为'shortest'(最短路径)、'Left'(左路)、'Right'(右路)") String method,
+                                               @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         List<Actor> actors = actorIds.stream().map(Actor::new).toList();
         List<Location> path = gameSocketAPI.findPath(actors, new Location(destX, destY), method);
         return path.stream().map(p -> Map.of("x", p.getX(), "y", p.getY())).toList();
     }
 
     @Tool(name = "get_actor_by_id", description = "根据单位ID获取单个单位的详细信息")
-    public Map<String, Object> getActorById(@ToolParam(description = "单位ID：要查询的单位唯一标识") int actorId) {
-        init();
-        Actor actor = gameSocketAPI.getActorById(actorId);
+    public Map<String, Object> getActorById(@ToolParam(description = "单位ID：要查询的单位唯一标识") int actorId,
+                                            @ToolParam(description = GAME_ID_DESC, required = false) String gameId,
+                                            @ToolParam(description = MAX_STALENESS_DESC, required = false) Integer maxStalenessMillis) {
+        GameSession session = sessionManager.get(gameId);
+        GameSocketAPI gameSocketAPI = session.touch();
+        WorldSnapshot snapshot = snapshot(session, maxStalenessMillis);
+        // 快照只含视野内的单位，不在快照中时仍实时查询
+        ActorState state = snapshot != null ? snapshot.actor(actorId) : null;
+        Actor actor = state != null ? state.toActor() : null;
+        if (actor == null) {
+            actor = gameSocketAPI.getActorById(actorId);
+        }
         if (actor == null) {
             return null;
         }
@@ -315,8 +532,9 @@ public class Red95Tools {
     }
 
     @Tool(name = "update_actor", description = "更新指定单位的信息并返回其最新状态")
-    public Map<String, Object> updateActor(@ToolParam(description = "单位ID：要更新的单位唯一标识") int actorId) {
-        init();
+    public Map<String, Object> updateActor(@ToolParam(description = "单位ID：要更新的单位唯一标识") int actorId,
+                                           @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         Actor actor = new Actor(actorId);
         boolean success = gameSocketAPI.updateActor(actor);
         if (!success) {
@@ -333,24 +551,27 @@ public class Red95Tools {
     }
 
     @Tool(name = "deploy_units", description = "部署或展开指定的单位列表（如基地车、战斗要塞等可变形单位）")
-    public String deployUnits(@ToolParam(description = "单位ID列表：要部署的单位ID集合") List<Integer> actorIds) {
-        init();
+    public String deployUnits(@ToolParam(description = "单位ID列表：要部署的单位ID集合") List<Integer> actorIds,
+                              @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         List<Actor> actors = actorIds.stream().map(Actor::new).toList();
         gameSocketAPI.deployUnits(actors);
         return "ok";
     }
 
     @Tool(name = "move_camera_to_actor", description = "将游戏镜头移动到指定单位的当前位置")
-    public String moveCameraToActor(@ToolParam(description = "单位ID：目标单位的唯一标识") int actorId) {
-        init();
+    public String moveCameraToActor(@ToolParam(description = "单位ID：目标单位的唯一标识") int actorId,
+                                    @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         gameSocketAPI.moveCameraTo(new Actor(actorId));
         return "ok";
     }
 
     @Tool(name = "occupy_units", description = "命令占领者单位占领指定的目标建筑单位")
     public String occupyUnits(@ToolParam(description = "占领者单位ID列表：执行占领操作的单位ID集合，通常是工程师等特殊单位") List<Integer> occupierIds, 
-                            @ToolParam(description = "目标单位ID列表：要占领的建筑单位ID集合") List<Integer> targetIds) {
-        init();
+                            @ToolParam(description = "目标单位ID列表：要占领的建筑单位ID集合") List<Integer> targetIds,
+                              @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         List<Actor> occupiers = occupierIds.stream().map(Actor::new).toList();
         List<Actor> targets = targetIds.stream().map(Actor::new).toList();
         gameSocketAPI.occupyUnits(occupiers, targets);
@@ -359,8 +580,9 @@ public class Red95Tools {
 
     @Tool(name = "attack_target", description = "命令指定的攻击者单位对目标单位发起攻击")
     public boolean attackTarget(@ToolParam(description = "攻击者单位ID：执行攻击的单位ID") int attackerId, 
-                               @ToolParam(description = "目标单位ID：被攻击的单位ID") int targetId) {
-        init();
+                               @ToolParam(description = "目标单位ID：被攻击的单位ID") int targetId,
+                                @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         Actor attacker = new Actor(attackerId);
         Actor target = new Actor(targetId);
         return gameSocketAPI.attackTarget(attacker, target);
@@ -376,16 +598,18 @@ public class Red95Tools {
 //    }
 
     @Tool(name = "repair_units", description = "命令维修单位或开始自动修复指定的受损单位/建筑")
-    public String repairUnits(@ToolParam(description = "单位ID列表：需要修复的单位或建筑ID集合") List<Integer> actorIds) {
-        init();
+    public String repairUnits(@ToolParam(description = "单位ID列表：需要修复的单位或建筑ID集合") List<Integer> actorIds,
+                              @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         List<Actor> actors = actorIds.stream().map(Actor::new).toList();
         gameSocketAPI.repairUnits(actors);
         return "ok";
     }
 
     @Tool(name = "stop_units", description = "停止指定单位的当前所有行动")
-    public String stopUnits(@ToolParam(description = "单位ID列表：要停止行动的单位ID集合") List<Integer> actorIds) {
-        init();
+    public String stopUnits(@ToolParam(description = "单位ID列表：要停止行动的单位ID集合") List<Integer> actorIds,
+                            @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         List<Actor> actors = actorIds.stream().map(Actor::new).toList();
         gameSocketAPI.stop(actors);
         return "ok";
@@ -393,28 +617,39 @@ public class Red95Tools {
 
     @Tool(name = "visible_query", description = "检查指定地图坐标是否在玩家当前视野范围内")
     public boolean visibleQuery(@ToolParam(description = "查询X坐标：要检查的地图X轴坐标") int x, 
-                               @ToolParam(description = "查询Y坐标：要检查的地图Y轴坐标") int y) {
-        init();
+                               @ToolParam(description = "查询Y坐标：要检查的地图Y轴坐标") int y,
+                                @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         return gameSocketAPI.visibleQuery(new Location(x, y));
     }
 
     @Tool(name = "explorer_query", description = "检查指定地图坐标是否已经被玩家探索过（即使当前不在视野中）")
     public boolean explorerQuery(@ToolParam(description = "查询X坐标：要检查的地图X轴坐标") int x, 
-                                @ToolParam(description = "查询Y坐标：要检查的地图Y轴坐标") int y) {
-        init();
+                                @ToolParam(description = "查询Y坐标：要检查的地图Y轴坐标") int y,
+                                 @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         return gameSocketAPI.explorerQuery(new Location(x, y));
     }
 
     @Tool(name = "query_production_queue", description = "查询指定类型生产队列的当前状态和所有生产项目")
-    public Map<String, Object> queryProductionQueue(@ToolParam(description = "队列类型：可选值为'Building'(建筑)、'Defense'(防御建筑)、'Infantry'(步兵)、'Vehicle'(载具)、'Aircraft'(飞机)、'Naval'(船)") String queueType) {
-        init();
+    public Map<String, Object> queryProductionQueue(@ToolParam(description = "队列类型：可选值为'Building'(建筑)、'Defense'(防御建筑)、'Infantry'(步兵)、'Vehicle'(载具)、'Aircraft'(飞机)、'Naval'(船)") String queueType,
+                                                    @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         return gameSocketAPI.queryProductionQueue(queueType);
     }
 
+    @Tool(name = "production_queue_status", description = "获取所有生产队列的精简摘要(各项目名称和进度)以及最近的完成/自动放置事件，通常直接读取后台轮询结果，开销很小；开启自动放置(默认)时已就绪的建筑会被自动放置，无需再调用place_building")
+    public Map<String, Object> productionQueueStatus(@ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSession session = sessionManager.get(gameId);
+        session.touch();
+        return session.getProductionQueueMonitor().summary();
+    }
+
     @Tool(name = "manage_production", description = "管理指定生产队列，对队列中的项目执行暂停、继续或取消操作")
     public String manageProduction(@ToolParam(description = "队列类型：可选值为'Building'(建筑)、'Defense'(防御建筑)、'Infantry'(步兵)、'Vehicle'(载具)、'Aircraft'(飞机)、'Naval'(船)") String queueType,
-                                   @ToolParam(description = "操作类型：可选值为'pause'(暂停)、'resume'(继续)、'cancel'(取消)") String action) {
-        init();
+                                   @ToolParam(description = "操作类型：可选值为'pause'(暂停)、'resume'(继续)、'cancel'(取消)") String action,
+                                   @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         gameSocketAPI.manageProduction(queueType, action);
         return "ok";
     }
@@ -423,8 +658,9 @@ public class Red95Tools {
     public List<Map<String, Integer>> getUnexploredNearbyPositions(@ToolParam(description = "地图查询结果：通过query_map_info获取的完整地图信息") Map<String, Object> mapResult,
                                                                  @ToolParam(description = "当前X坐标：搜索中心点的X坐标") int currentX,
                                                                  @ToolParam(description = "当前Y坐标：搜索中心点的Y坐标") int currentY,
-                                                                 @ToolParam(description = "最大搜索距离：从中心点向外搜索的最大距离（格子数）") int maxDistance) {
-        init();
+                                                                 @ToolParam(description = "最大搜索距离：从中心点向外搜索的最大距离（格子数）") int maxDistance,
+                                                                   @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         MapQueryResult mapQueryResult= MapQueryResult.builder()
                 .mapWidth((int) mapResult.get("width"))
                 .mapHeight((int) mapResult.get("height"))
@@ -448,8 +684,9 @@ public class Red95Tools {
                                    @ToolParam(description = "目标X坐标：目标位置的X坐标") int x,
                                    @ToolParam(description = "目标Y坐标：目标位置的Y坐标") int y,
                                    @ToolParam(description = "最大等待时间（秒）：等待单位到达的最长时间") double maxWaitTime,
-                                   @ToolParam(description = "容差距离：单位到达离目标位置多远时视为已到达") int toleranceDis) {
-        init();
+                                   @ToolParam(description = "容差距离：单位到达离目标位置多远时视为已到达") int toleranceDis,
+                                    @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         List<Actor> actors = actorIds.stream().map(Actor::new).toList();
         return gameSocketAPI.moveUnitsByLocationAndWait(actors, new Location(x, y), maxWaitTime, toleranceDis);
     }
@@ -464,8 +701,9 @@ public class Red95Tools {
     @Tool(name = "set_rally_point", description = "为指定的生产建筑设置集结点，生产出的单位将自动移动到该位置")
     public String setRallyPoint(@ToolParam(description = "建筑单位ID列表：要设置集结点的生产建筑ID集合") List<Integer> actorIds,
                                 @ToolParam(description = "集结点X坐标：集结点的X坐标") int x,
-                                @ToolParam(description = "集结点Y坐标：集结点的Y坐标") int y) {
-        init();
+                                @ToolParam(description = "集结点Y坐标：集结点的Y坐标") int y,
+                                @ToolParam(description = GAME_ID_DESC, required = false) String gameId) {
+        GameSocketAPI gameSocketAPI = api(gameId);
         List<Actor> actors = actorIds.stream().map(Actor::new).toList();
         gameSocketAPI.setRallyPoint(actors, new Location(x, y));
         return "ok";
@@ -0,0 +1,122 @@
+package com.hoppinzq.red95.session;
+
+import com.hoppinzq.red95.config.Red95Properties;
+import com.hoppinzq.red95.metrics.GameMetrics;
+import com.hoppinzq.red95.service.GameSocketAPI;
+import com.hoppinzq.red95.service.ProductionQueueMonitor;
+import com.hoppinzq.red95.service.ProductionScheduler;
+import com.hoppinzq.red95.world.SelectorCompiler;
+import com.hoppinzq.red95.world.WorldSampler;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个游戏实例的会话，持有该实例独占的连接池、缓存和后台任务
+ */
+@Slf4j
+public class GameSession {
+    private final String gameId;
+    private final GameMetrics metrics;
+    private final GameSocketAPI gameSocketAPI;
+    private final ProductionScheduler productionScheduler;
+    private final ProductionQueueMonitor productionQueueMonitor;
+    private final StateCursorStore stateCursors;
+    private final WorldSampler worldSampler;
+    private final SelectorCompiler selectorCompiler;
+    private final long createdAt = System.currentTimeMillis();
+    private final AtomicLong toolCalls = new AtomicLong();
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    /**
+     * @param unixSocket 游戏的 Unix 域套接字文件，为空时使用 TCP
+     */
+    public GameSession(String gameId, String host, int port, String unixSocket, String language,
+                       Red95Properties properties, MeterRegistry meterRegistry) {
+        this.gameId = gameId;
+        this.metrics = new GameMetrics(meterRegistry, gameId);
+        this.gameSocketAPI = new GameSocketAPI(host, port, unixSocket, language, metrics, properties);
+        this.productionScheduler = new ProductionScheduler(gameSocketAPI);
+        this.productionQueueMonitor = new ProductionQueueMonitor(gameSocketAPI, properties.getQueueMonitor(),
+                this::getLastAccess);
+        this.worldSampler = new WorldSampler(gameSocketAPI, productionQueueMonitor, properties.getSampler(),
+                this::getLastAccess);
+        this.selectorCompiler = new SelectorCompiler(gameSocketAPI.getTechTree());
+        this.stateCursors = new StateCursorStore(properties.getResponse().getMaxCursors(),
+                properties.getResponse().getCursorTtl().toMillis());
+    }
+
+    public void start() {
+        productionScheduler.start();
+        productionQueueMonitor.start();
+        worldSampler.start();
+    }
+
+    /**
+     * 记录一次访问，并确保连接池已初始化
+     *
+     * @return 该会话的游戏接口
+     */
+    public GameSocketAPI touch() {
+        lastAccess = System.currentTimeMillis();
+        toolCalls.incrementAndGet();
+        if (!gameSocketAPI.isInitialized()) {
+            try {
+                gameSocketAPI.init();
+            } catch (Exception exception) {
+                log.warn("游戏{}连接池初始化失败: {}", gameId, exception.getMessage());
+            }
+        }
+        return gameSocketAPI;
+    }
+
+    public void close() {
+        productionScheduler.shutdown();
+        productionQueueMonitor.shutdown();
+        worldSampler.shutdown();
+        gameSocketAPI.close();
+        stateCursors.clear();
+        metrics.close();
+    }
+
+    public String getGameId() {
+        return gameId;
+    }
+
+    public GameSocketAPI getGameSocketAPI() {
+        return gameSocketAPI;
+    }
+
+    public ProductionScheduler getProductionScheduler() {
+        return productionScheduler;
+    }
+
+    public ProductionQueueMonitor getProductionQueueMonitor() {
+        return productionQueueMonitor;
+    }
+
+    public WorldSampler getWorldSampler() {
+        return worldSampler;
+    }
+
+    public SelectorCompiler getSelectorCompiler() {
+        return selectorCompiler;
+    }
+
+    public StateCursorStore getStateCursors() {
+        return stateCursors;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getToolCalls() {
+        return toolCalls.get();
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+}
@@ -0,0 +1,150 @@
+package com.hoppinzq.red95.session;
+
+import com.hoppinzq.red95.cluster.ClusterRouter;
+import com.hoppinzq.red95.config.Red95Properties;
+import com.hoppinzq.red95.service.GameSocketAPI;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 游戏会话管理，按游戏ID把工具调用路由到对应的游戏实例。
+ * 游戏ID可以是 application.yml 中 red95.games 配置的名称，也可以是 red95.allowed-addresses 中列出的 host:port；
+ * 会话按需创建，数量受 red95.max-sessions 限制，空闲超时后回收。
+ */
+@Service
+@Slf4j
+public class GameSessionManager {
+
+    @Resource
+    private Red95Properties properties;
+
+    @Resource
+    private ClusterRouter clusterRouter;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, GameSession> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Game-Session-Evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        evictor.scheduleWithFixedDelay(this::evictIdle, 1, 1, TimeUnit.MINUTES);
+        // 每 1/3 租约续约一次，续约失败说明认领已被其他节点接管
+        long renewMillis = Math.max(1000, clusterRouter.claimTtlMillis() / 3);
+        evictor.scheduleWithFixedDelay(this::renewClaims, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        evictor.shutdownNow();
+        sessions.forEach((id, session) -> {
+            session.close();
+            clusterRouter.release(id);
+        });
+        sessions.clear();
+    }
+
+    /**
+     * 获取游戏会话，不存在则创建
+     *
+     * @param gameId 游戏ID，为空时使用默认游戏
+     * @return 游戏会话
+     * @throws GameSocketAPI.GameAPIError 当游戏ID未配置且不在允许的地址中，或会话数已达上限时
+     */
+    public GameSession get(String gameId) {
+        String id = gameId == null || gameId.isBlank() ? Red95Properties.DEFAULT_GAME_ID : gameId.trim();
+        GameSession session = sessions.get(id);
+        if (session != null) {
+            return session;
+        }
+        return sessions.computeIfAbsent(id, key -> {
+            if (sessions.size() >= properties.getMaxSessions()) {
+                throw new GameSocketAPI.GameAPIError("TOO_MANY_SESSIONS",
+                        "游戏会话数已达上限 " + properties.getMaxSessions() + "，请等待空闲会话回收");
+            }
+            // 多节点部署时同一游戏只能由一个节点持有连接，先认领再建会话，认领失败时不创建任何资源
+            if (!clusterRouter.claim(key)) {
+                throw new GameSocketAPI.GameAPIError("NOT_OWNER",
+                        "游戏 " + key + " 的连接由节点 " + clusterRouter.ownerOf(key) + " 持有");
+            }
+            GameSession created = null;
+            try {
+                created = create(key);
+                created.start();
+            } catch (RuntimeException e) {
+                if (created != null) {
+                    created.close();
+                }
+                clusterRouter.release(key);
+                throw e;
+            }
+            log.info("创建游戏会话: {}", key);
+            return created;
+        });
+    }
+
+    public Collection<GameSession> getSessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    private GameSession create(String gameId) {
+        Red95Properties.GameEndpoint endpoint = properties.getGames().get(gameId);
+        if (endpoint != null) {
+            return new GameSession(gameId, endpoint.getHost(), endpoint.getPort(), endpoint.getUnixSocket(),
+                    endpoint.getLanguage(), properties, meterRegistry);
+        }
+        int colon = gameId.lastIndexOf(':');
+        // 只有显式允许的地址可以直接连接，避免工具参数让服务连接任意主机
+        if (colon > 0 && properties.getAllowedAddresses().contains(gameId)) {
+            try {
+                int port = Integer.parseInt(gameId.substring(colon + 1));
+                return new GameSession(gameId, gameId.substring(0, colon), port, null, "zh", properties,
+                        meterRegistry);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        throw new GameSocketAPI.GameAPIError("UNKNOWN_GAME",
+                "未知的游戏ID: " + gameId + "，可选值: " + properties.getGames().keySet() + " 或 " + properties.getAllowedAddresses());
+    }
+
+    void renewClaims() {
+        for (Map.Entry<String, GameSession> entry : sessions.entrySet()) {
+            try {
+                if (!clusterRouter.claim(entry.getKey()) && sessions.remove(entry.getKey(), entry.getValue())) {
+                    log.warn("游戏会话 {} 的认领已被节点 {} 接管，关闭本地会话", entry.getKey(),
+                            clusterRouter.ownerOf(entry.getKey()));
+                    entry.getValue().close();
+                }
+            } catch (RuntimeException e) {
+                log.warn("续约游戏会话 {} 失败: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    void evictIdle() {
+        long deadline = System.currentTimeMillis() - properties.getSessionIdleTimeout().toMillis();
+        for (Map.Entry<String, GameSession> entry : sessions.entrySet()) {
+            GameSession session = entry.getValue();
+            if (session.getLastAccess() < deadline && sessions.remove(entry.getKey(), session)) {
+                log.info("回收空闲游戏会话: {}", entry.getKey());
+                session.close();
+                clusterRouter.release(entry.getKey());
+            }
+        }
+    }
+}
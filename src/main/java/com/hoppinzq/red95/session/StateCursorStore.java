@@ -0,0 +1,186 @@
+package com.hoppinzq.red95.session;
+
+import com.hoppinzq.red95.model.Actor;
+import com.hoppinzq.red95.model.PlayerBaseInfo;
+import com.hoppinzq.red95.shaping.ResponseShaper;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * get_game_state 的增量游标。每个客户端(MCP 会话)第一次请求时分配一条游标链，
+ * 链上只保存最近一次返回给它的状态；下次带着游标来时只返回之后新出现、消失和变化的单位，以及变化的经济字段。
+ * 游标形如 链ID.版本号，过期、被淘汰或版本对不上(客户端重试了旧游标)时返回完整状态重新同步。
+ */
+public class StateCursorStore {
+    private final int maxCursors;
+    private final long ttlMillis;
+    private final Map<String, Snapshot> chains;
+
+    private record ActorState(String type, String faction, Integer x, Integer y, Integer hpPercent) {
+        static ActorState of(Actor actor) {
+            return new ActorState(actor.getType(), actor.getFaction(),
+                    actor.getPosition() == null ? null : actor.getPosition().getX(),
+                    actor.getPosition() == null ? null : actor.getPosition().getY(),
+                    actor.getHpPercent());
+        }
+    }
+
+    private record Snapshot(long version, Map<Integer, ActorState> actors, PlayerBaseInfo baseInfo, long at) {
+    }
+
+    /**
+     * @param maxCursors 最多保存的游标链数，超出时淘汰最久未使用的
+     * @param ttlMillis  游标链多久未使用后过期
+     */
+    public StateCursorStore(int maxCursors, long ttlMillis) {
+        this.maxCursors = maxCursors;
+        this.ttlMillis = ttlMillis;
+        this.chains = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+                return size() > StateCursorStore.this.maxCursors;
+            }
+        };
+    }
+
+    /**
+     * 计算相对游标的增量并推进游标
+     *
+     * @param cursor   上次返回的游标，为空时开启新的游标链
+     * @param actors   当前单位
+     * @param baseInfo 当前玩家资源
+     * @param columns  单位的列，见 {@link ResponseShaper#ACTOR_FIELDS}
+     * @return 增量(full=false)或完整状态(full=true)，都带新的 cursor
+     */
+    public Map<String, Object> advance(String cursor, List<Actor> actors, PlayerBaseInfo baseInfo, List<String> columns) {
+        long now = System.currentTimeMillis();
+        String chainId = null;
+        long version = -1;
+        if (cursor != null) {
+            int dot = cursor.lastIndexOf('.');
+            if (dot > 0) {
+                chainId = cursor.substring(0, dot);
+                try {
+                    version = Long.parseLong(cursor.substring(dot + 1));
+                } catch (NumberFormatException ignored) {
+                    chainId = null;
+                }
+            }
+        }
+
+        Map<Integer, ActorState> current = new LinkedHashMap<>();
+        for (Actor actor : actors) {
+            current.put(actor.getActorId(), ActorState.of(actor));
+        }
+
+        Snapshot previous;
+        synchronized (chains) {
+            evictExpired(now);
+            previous = chainId == null ? null : chains.get(chainId);
+            if (previous == null || previous.version() != version) {
+                previous = null;
+                chainId = chainId != null && chains.containsKey(chainId) ? chainId : newChainId();
+            }
+            long next = previous == null ? 1 : previous.version() + 1;
+            chains.put(chainId, new Snapshot(next, current, baseInfo, now));
+            version = next;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("cursor", chainId + "." + version);
+        if (previous == null) {
+            result.put("full", true);
+            result.put("playerBaseInfo", baseInfo);
+            result.put("actors", ResponseShaper.columnar(actors, columns));
+            return result;
+        }
+
+        List<Actor> spawned = new ArrayList<>();
+        List<Actor> changed = new ArrayList<>();
+        for (Actor actor : actors) {
+            ActorState before = previous.actors().get(actor.getActorId());
+            if (before == null) {
+                spawned.add(actor);
+            } else if (!before.equals(current.get(actor.getActorId()))) {
+                changed.add(actor);
+            }
+        }
+        List<Integer> removed = new ArrayList<>();
+        for (Integer actorId : previous.actors().keySet()) {
+            if (!current.containsKey(actorId)) {
+                removed.add(actorId);
+            }
+        }
+
+        result.put("full", false);
+        Map<String, Object> economy = economyDelta(previous.baseInfo(), baseInfo);
+        if (!economy.isEmpty()) {
+            result.put("playerBaseInfo", economy);
+        }
+        if (!spawned.isEmpty()) {
+            result.put("spawned", ResponseShaper.columnar(spawned, columns));
+        }
+        if (!changed.isEmpty()) {
+            result.put("changed", ResponseShaper.columnar(changed, columns));
+        }
+        if (!removed.isEmpty()) {
+            result.put("removed", removed);
+        }
+        return result;
+    }
+
+    private static Map<String, Object> economyDelta(PlayerBaseInfo before, PlayerBaseInfo after) {
+        Map<String, Object> delta = new LinkedHashMap<>();
+        if (before == null || after == null) {
+            if (after != null) {
+                delta.put("cash", after.getCash());
+                delta.put("resources", after.getResources());
+                delta.put("power", after.getPower());
+                delta.put("powerDrained", after.getPowerDrained());
+                delta.put("powerProvided", after.getPowerProvided());
+            }
+            return delta;
+        }
+        if (before.getCash() != after.getCash()) {
+            delta.put("cash", after.getCash());
+        }
+        if (before.getResources() != after.getResources()) {
+            delta.put("resources", after.getResources());
+        }
+        if (before.getPower() != after.getPower()) {
+            delta.put("power", after.getPower());
+        }
+        if (before.getPowerDrained() != after.getPowerDrained()) {
+            delta.put("powerDrained", after.getPowerDrained());
+        }
+        if (before.getPowerProvided() != after.getPowerProvided()) {
+            delta.put("powerProvided", after.getPowerProvided());
+        }
+        return delta;
+    }
+
+    private void evictExpired(long now) {
+        chains.values().removeIf(snapshot -> now - snapshot.at() > ttlMillis);
+    }
+
+    private String newChainId() {
+        String chainId;
+        do {
+            chainId = String.format("%08x", ThreadLocalRandom.current().nextInt());
+        } while (chains.containsKey(chainId));
+        return chainId;
+    }
+
+    public int size() {
+        synchronized (chains) {
+            return chains.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (chains) {
+            chains.clear();
+        }
+    }
+}
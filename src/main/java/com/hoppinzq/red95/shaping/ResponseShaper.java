@@ -0,0 +1,335 @@
+package com.hoppinzq.red95.shaping;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hoppinzq.red95.model.Actor;
+import com.hoppinzq.red95.model.MapQueryResult;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 工具返回值整形，减少返回给模型的字节数(和 token 数)：
+ * <ul>
+ *     <li>compact：单位列表按列编码，字段名只出现一次，可以只取需要的字段</li>
+ *     <li>grouped：按 阵营+类型 分组，只给数量和ID</li>
+ *     <li>summary：地图按 tileSize×tileSize 的块汇总为地形字符画和资源块列表</li>
+ *     <li>maxBytes：序列化后超过预算时按 己方→敌方→其他 的顺序保留单位，截掉其余并给出 truncated</li>
+ * </ul>
+ */
+public final class ResponseShaper {
+    public static final String FULL = "full";
+    public static final String COMPACT = "compact";
+    public static final String GROUPED = "grouped";
+    public static final String SUMMARY = "summary";
+    // 列式编码可选的字段，默认全部
+    public static final List<String> ACTOR_FIELDS = List.of("id", "type", "faction", "x", "y", "hp");
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final List<String> FACTION_ORDER = List.of("己方", "敌方");
+    private static final char UNEXPLORED = '?';
+    private static final String TILE_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    private ResponseShaper() {
+    }
+
+    /**
+     * 整形单位列表
+     *
+     * @param base     放在单位之前的内容(如玩家资源)，计入字节预算
+     * @param actors   单位列表
+     * @param format   compact 或 grouped
+     * @param fields   compact 时保留的字段，为空时取 {@link #ACTOR_FIELDS}
+     * @param maxBytes 整个返回值的字节预算，0 表示不限制
+     * @return base 加上 actors(compact)或 groups(grouped)，截断时带 total 和 truncated
+     */
+    public static Map<String, Object> shapeActors(Map<String, Object> base, List<Actor> actors, String format,
+                                                  List<String> fields, int maxBytes) {
+        if (GROUPED.equals(format)) {
+            return grouped(base, actors, maxBytes);
+        }
+        if (!COMPACT.equals(format)) {
+            throw new IllegalArgumentException("不支持的格式: " + format + "，可选 full、compact、grouped");
+        }
+        List<String> columns = columns(fields);
+        List<Actor> ordered = maxBytes > 0 ? prioritized(actors) : actors;
+        return fit(ordered, maxBytes, kept -> {
+            Map<String, Object> result = new LinkedHashMap<>(base);
+            result.put("actors", columnar(kept, columns));
+            return result;
+        });
+    }
+
+    /**
+     * 校验字段投影
+     *
+     * @param fields 需要的字段，为空时取 {@link #ACTOR_FIELDS}
+     * @return 去重后的列
+     * @throws IllegalArgumentException 含有不支持的字段
+     */
+    public static List<String> columns(List<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return ACTOR_FIELDS;
+        }
+        List<String> columns = new ArrayList<>();
+        for (String field : fields) {
+            if (!ACTOR_FIELDS.contains(field)) {
+                throw new IllegalArgumentException("不支持的字段: " + field + "，可选 " + ACTOR_FIELDS);
+            }
+            if (!columns.contains(field)) {
+                columns.add(field);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * 列式编码：{"columns":[...],"rows":[[...],...]}
+     */
+    public static Map<String, Object> columnar(List<Actor> actors, List<String> columns) {
+        List<List<Object>> rows = new ArrayList<>(actors.size());
+        for (Actor actor : actors) {
+            List<Object> row = new ArrayList<>(columns.size());
+            for (String column : columns) {
+                row.add(value(actor, column));
+            }
+            rows.add(row);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("columns", columns);
+        result.put("rows", rows);
+        return result;
+    }
+
+    private static Object value(Actor actor, String column) {
+        switch (column) {
+            case "id":
+                return actor.getActorId();
+            case "type":
+                return actor.getType();
+            case "faction":
+                return actor.getFaction();
+            case "x":
+                return actor.getPosition() == null ? null : actor.getPosition().getX();
+            case "y":
+                return actor.getPosition() == null ? null : actor.getPosition().getY();
+            case "hp":
+                return actor.getHpPercent();
+            default:
+                throw new IllegalArgumentException("不支持的字段: " + column);
+        }
+    }
+
+    // 超出预算时先去掉各组的ID，只保留数量
+    private static Map<String, Object> grouped(Map<String, Object> base, List<Actor> actors, int maxBytes) {
+        Map<String, Object> result = new LinkedHashMap<>(base);
+        result.put("groups", groups(actors, true));
+        if (maxBytes > 0 && sizeOf(result) > maxBytes) {
+            result.put("groups", groups(actors, false));
+            result.put("truncated", "ids");
+        }
+        return result;
+    }
+
+    /**
+     * 按 阵营+类型 分组计数，己方在前
+     */
+    public static List<Map<String, Object>> groups(List<Actor> actors, boolean withIds) {
+        Map<String, Map<String, Object>> groups = new LinkedHashMap<>();
+        for (Actor actor : prioritized(actors)) {
+            Map<String, Object> group = groups.computeIfAbsent(actor.getFaction() + '|' + actor.getType(), key -> {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("faction", actor.getFaction());
+                item.put("type", actor.getType());
+                item.put("count", 0);
+                if (withIds) {
+                    item.put("ids", new ArrayList<Integer>());
+                }
+                return item;
+            });
+            group.put("count", (Integer) group.get("count") + 1);
+            if (withIds) {
+                ((List<Integer>) group.get("ids")).add(actor.getActorId());
+            }
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    // 己方、敌方优先，同阵营内保持原顺序
+    private static List<Actor> prioritized(List<Actor> actors) {
+        List<Actor> ordered = new ArrayList<>(actors);
+        ordered.sort(Comparator.comparingInt(actor -> {
+            int index = FACTION_ORDER.indexOf(actor.getFaction());
+            return index < 0 ? FACTION_ORDER.size() : index;
+        }));
+        return ordered;
+    }
+
+    /**
+     * 在字节预算内保留尽可能多的前缀，二分查找，序列化次数为 log(n)
+     */
+    private static <T> Map<String, Object> fit(List<T> items, int maxBytes,
+                                               Function<List<T>, Map<String, Object>> render) {
+        Map<String, Object> full = render.apply(items);
+        if (maxBytes <= 0 || sizeOf(full) <= maxBytes) {
+            return full;
+        }
+        int low = 0;
+        int high = items.size() - 1;
+        Map<String, Object> best = truncated(items, 0, render);
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            Map<String, Object> candidate = truncated(items, mid, render);
+            if (sizeOf(candidate) <= maxBytes) {
+                low = mid;
+                best = candidate;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return best;
+    }
+
+    private static <T> Map<String, Object> truncated(List<T> items, int keep,
+                                                     Function<List<T>, Map<String, Object>> render) {
+        Map<String, Object> result = render.apply(items.subList(0, keep));
+        result.put("total", items.size());
+        result.put("truncated", items.size() - keep);
+        return result;
+    }
+
+    /**
+     * 地图汇总：每个块取出现最多的地形，未探索的块为 '?'；有资源的块列出块中心坐标、资源类型和总量
+     *
+     * @param map      地图查询结果，网格按 [x][y] 存放
+     * @param tileSize 块边长(格子数)
+     */
+    public static Map<String, Object> summarizeMap(MapQueryResult map, int tileSize) {
+        int size = Math.max(1, tileSize);
+        int width = Math.min(map.getMapWidth(), rows(map.getTerrain()));
+        int height = Math.min(map.getMapHeight(), width == 0 ? 0 : map.getTerrain().get(0).size());
+        int tilesX = (width + size - 1) / size;
+        int tilesY = (height + size - 1) / size;
+
+        Map<String, Integer> terrainCounts = new HashMap<>();
+        String[][] dominant = new String[tilesX][tilesY];
+        List<List<Object>> resourceRows = new ArrayList<>();
+        int explored = 0;
+        int visible = 0;
+        for (int tx = 0; tx < tilesX; tx++) {
+            for (int ty = 0; ty < tilesY; ty++) {
+                Map<String, Integer> counts = new HashMap<>();
+                Map<String, Integer> resources = new HashMap<>();
+                boolean tileExplored = false;
+                for (int x = tx * size; x < Math.min(width, (tx + 1) * size); x++) {
+                    for (int y = ty * size; y < Math.min(height, (ty + 1) * size); y++) {
+                        boolean cellExplored = cell(map.getIsExplored(), x, y, Boolean.TRUE);
+                        if (cellExplored) {
+                            explored++;
+                            tileExplored = true;
+                            String cellTerrain = map.getTerrain().get(x).get(y);
+                            if (cellTerrain != null) {  // 游戏可能对未知地形返回 null，不参与统计
+                                counts.merge(cellTerrain, 1, Integer::sum);
+                            }
+                            int amount = cell(map.getResources(), x, y, 0);
+                            String type = cell(map.getResourcesType(), x, y, "");
+                            if (amount > 0 && type != null && !type.isEmpty()) {
+                                resources.merge(type, amount, Integer::sum);
+                            }
+                        }
+                        if (cell(map.getIsVisible(), x, y, Boolean.FALSE)) {
+                            visible++;
+                        }
+                    }
+                }
+                if (tileExplored && !counts.isEmpty()) {
+                    String terrain = Collections.max(counts.entrySet(), Map.Entry.comparingByValue()).getKey();
+                    dominant[tx][ty] = terrain;
+                    terrainCounts.merge(terrain, 1, Integer::sum);
+                }
+                for (Map.Entry<String, Integer> resource : resources.entrySet()) {
+                    resourceRows.add(List.of(Math.min(width - 1, tx * size + size / 2),
+                            Math.min(height - 1, ty * size + size / 2), resource.getKey(), resource.getValue()));
+                }
+            }
+        }
+
+        Map<String, Character> codes = codes(terrainCounts);
+        List<String> tiles = new ArrayList<>(tilesY);
+        for (int ty = 0; ty < tilesY; ty++) {
+            StringBuilder row = new StringBuilder(tilesX);
+            for (int tx = 0; tx < tilesX; tx++) {
+                row.append(dominant[tx][ty] == null ? UNEXPLORED : codes.get(dominant[tx][ty]));
+            }
+            tiles.add(row.toString());
+        }
+        Map<String, String> legend = new LinkedHashMap<>();
+        codes.forEach((terrain, code) -> legend.put(String.valueOf(code), terrain));
+        legend.put(String.valueOf(UNEXPLORED), "未探索");
+
+        long cells = (long) width * height;
+        Map<String, Object> resourceTiles = new LinkedHashMap<>();
+        resourceTiles.put("columns", List.of("x", "y", "type", "amount"));
+        resourceTiles.put("rows", resourceRows);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mapWidth", map.getMapWidth());
+        result.put("mapHeight", map.getMapHeight());
+        result.put("tileSize", size);
+        result.put("exploredPercent", cells == 0 ? 0 : Math.round(explored * 1000.0 / cells) / 10.0);
+        result.put("visiblePercent", cells == 0 ? 0 : Math.round(visible * 1000.0 / cells) / 10.0);
+        result.put("legend", legend);
+        result.put("tiles", tiles);  // 每行一个 y 方向的块，每个字符一个 x 方向的块
+        result.put("resourceTiles", resourceTiles);
+        return result;
+    }
+
+    private static int rows(List<?> grid) {
+        return grid == null ? 0 : grid.size();
+    }
+
+    // 网格缺失或该格为空时返回默认值(游戏旧版本不返回某些图层)
+    private static <T> T cell(List<List<T>> grid, int x, int y, T defaultValue) {
+        if (grid == null || x >= grid.size() || y >= grid.get(x).size()) {
+            return defaultValue;
+        }
+        T value = grid.get(x).get(y);
+        return value == null ? defaultValue : value;
+    }
+
+    // 出现最多的地形优先用自己的首字母
+    private static Map<String, Character> codes(Map<String, Integer> terrainCounts) {
+        List<String> terrains = new ArrayList<>(terrainCounts.keySet());
+        terrains.sort(Comparator.comparing((String terrain) -> -terrainCounts.get(terrain)).thenComparing(t -> t));
+        Map<String, Character> codes = new LinkedHashMap<>();
+        Set<Character> used = new HashSet<>();
+        for (String terrain : terrains) {
+            char code = terrain.isEmpty() ? 0 : Character.toUpperCase(terrain.charAt(0));
+            if (TILE_CHARS.indexOf(code) < 0 || used.contains(code)) {
+                code = 0;
+                for (char candidate : TILE_CHARS.toCharArray()) {
+                    if (!used.contains(candidate)) {
+                        code = candidate;
+                        break;
+                    }
+                }
+            }
+            if (code == 0) {
+                code = '*';  // 地形种类超过可用字符，剩余的合并显示
+            }
+            used.add(code);
+            codes.put(terrain, code);
+        }
+        return codes;
+    }
+
+    /**
+     * @return 序列化为 JSON 后的 UTF-8 字节数
+     */
+    public static int sizeOf(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value).length;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("无法序列化返回值: " + e.getMessage(), e);
+        }
+    }
+}
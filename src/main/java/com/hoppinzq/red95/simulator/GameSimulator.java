@@ -0,0 +1,343 @@
+package com.hoppinzq.red95.simulator;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hoppinzq.red95.frame.FrameCodec;
+import com.hoppinzq.red95.frame.FrameRing;
+import com.hoppinzq.red95.socket.WireCompression;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地游戏模拟器，实现与 OpenRA mod 相同的 socket 协议：每个连接读取一个JSON请求，写回响应后关闭连接。
+ * 命令由 {@link SimulatedWorld} 在合成世界上执行，并按配置叠加延迟、抖动和脚本化故障，
+ * 用于在没有游戏的机器上做压测和延迟测试。配置了 unixSocket 时同时在该 Unix 域套接字上提供相同的协议。
+ * 客户端通过 frame_channel_open 交来映射文件后，带 frameSeq 的 map_query/query_actor 结果写成帧，响应中只回复序号。
+ * 请求声明了 compression 时，不小于阈值的响应按 deflate 压缩。
+ * <pre>
+ * try (GameSimulator simulator = new GameSimulator(new SimulatorConfig()).start()) {
+ *     GameSocketAPI api = new GameSocketAPI("127.0.0.1", simulator.getPort(), "zh");
+ * }
+ * </pre>
+ */
+@Slf4j
+public class GameSimulator implements AutoCloseable {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final SimulatorConfig config;
+    private final SimulatedWorld world;
+    private final List<RuleState> rules = new ArrayList<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedFailures = new AtomicLong();
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "Game-Simulator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ServerSocket serverSocket;
+    private ServerSocketChannel unixServer;
+    private Path unixSocket;
+    private FrameRing frames;  // 客户端打开的帧通道，本模拟器是唯一的生产者，写入时持有 frameLock
+    private final Object frameLock = new Object();
+    private volatile boolean running;
+
+    // 故障规则及其计数
+    private static class RuleState {
+        final SimulatorConfig.FailureRule rule;
+        final AtomicLong matched = new AtomicLong();
+        final AtomicLong triggered = new AtomicLong();
+
+        RuleState(SimulatorConfig.FailureRule rule) {
+            this.rule = rule;
+        }
+
+        boolean fire(String command) {
+            if (!"*".equals(rule.getCommand()) && !rule.getCommand().equals(command)) {
+                return false;
+            }
+            if (matched.incrementAndGet() <= rule.getSkipFirst()) {
+                return false;
+            }
+            if (rule.getProbability() < 1.0 && ThreadLocalRandom.current().nextDouble() >= rule.getProbability()) {
+                return false;
+            }
+            return triggered.incrementAndGet() <= rule.getMaxCount();
+        }
+    }
+
+    public GameSimulator(SimulatorConfig config) {
+        this.config = config;
+        this.world = new SimulatedWorld(config);
+        for (SimulatorConfig.FailureRule rule : config.getFailures()) {
+            rules.add(new RuleState(rule));
+        }
+    }
+
+    /**
+     * 在回环地址上开始监听
+     *
+     * @return this，便于 try-with-resources
+     */
+    public synchronized GameSimulator start() throws IOException {
+        if (running) {
+            return this;
+        }
+        serverSocket = new ServerSocket(config.getPort(), 128, InetAddress.getLoopbackAddress());
+        if (config.getUnixSocket() != null && !config.getUnixSocket().isBlank()) {
+            unixSocket = Path.of(config.getUnixSocket());
+            Files.deleteIfExists(unixSocket);  // 上次异常退出留下的套接字文件
+            unixServer = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            unixServer.bind(UnixDomainSocketAddress.of(unixSocket), 128);
+        }
+        running = true;
+        workers.execute(this::acceptLoop);
+        if (unixServer != null) {
+            workers.execute(this::acceptUnixLoop);
+        }
+        log.info("游戏模拟器已启动，端口: {}{}", getPort(), unixSocket != null ? "，Unix 域套接字: " + unixSocket : "");
+        return this;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Unix 域套接字文件，未配置时为 null
+     */
+    public Path getUnixSocket() {
+        return unixSocket;
+    }
+
+    public SimulatedWorld getWorld() {
+        return world;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getInjectedFailureCount() {
+        return injectedFailures.get();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                workers.execute(() -> handle(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("模拟器接受连接失败", e);
+                }
+            }
+        }
+    }
+
+    private void acceptUnixLoop() {
+        while (running) {
+            try {
+                SocketChannel channel = unixServer.accept();
+                workers.execute(() -> {
+                    try (channel) {
+                        handle(Channels.newInputStream(channel), Channels.newOutputStream(channel));
+                    } catch (IOException ignored) {
+                    }
+                });
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("模拟器接受 Unix 域套接字连接失败", e);
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket) {
+            handle(socket.getInputStream(), socket.getOutputStream());
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void handle(InputStream in, OutputStream out) {
+        try (in; out) {
+            // 客户端写完请求后不会关闭输出流，只能按JSON结构读取一个完整请求
+            Map<String, Object> request;
+            try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+                request = objectMapper.readValue(parser, Map.class);
+            }
+            if (request == null) {
+                return;  // 连接池预建后直接关闭的连接
+            }
+            requests.incrementAndGet();
+            String command = String.valueOf(request.get("command"));
+            Object params = request.get("params");
+
+            delay();
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("requestId", request.get("requestId"));
+            SimulatorConfig.FailureRule.Mode failure = failure(command);
+            if (failure == SimulatorConfig.FailureRule.Mode.DROP) {
+                return;
+            }
+            if (failure == SimulatorConfig.FailureRule.Mode.HANG) {
+                // 保持连接不响应，直到客户端超时断开或模拟器关闭
+                while (running && in.read() != -1) {
+                }
+                return;
+            }
+            if (failure == SimulatorConfig.FailureRule.Mode.ERROR) {
+                error(response, "SIMULATED_FAILURE", "模拟故障: " + command);
+            } else {
+                try {
+                    response.put("status", 1);
+                    response.put("data", execute(command,
+                            params instanceof Map ? (Map<String, Object>) params : Map.of()));
+                } catch (SimulatedWorld.SimulatedError e) {
+                    error(response, e.getCode(), e.getMessage());
+                } catch (RuntimeException e) {
+                    log.warn("模拟器处理命令{}异常", command, e);
+                    error(response, "COMMAND_EXECUTION_ERROR", String.valueOf(e.getMessage()));
+                }
+            }
+            out.write(compress(request.get("compression"), objectMapper.writeValueAsBytes(response)));
+            out.flush();
+        } catch (IOException ignored) {
+            // 客户端提前断开
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Object execute(String command, Map<String, Object> params) {
+        switch (command) {
+            case "frame_channel_open":
+                return openFrames(params);
+            case "frame_channel_close":
+                closeFrames();
+                return Map.of();
+            default:
+                break;
+        }
+        Object data = world.handle(command, params);
+        Object seq = params.get("frameSeq");
+        if (seq instanceof Number && ("map_query".equals(command) || "query_actor".equals(command))) {
+            return writeFrame(command, ((Number) seq).longValue(), (Map<String, Object>) data);
+        }
+        return data;
+    }
+
+    private Object openFrames(Map<String, Object> params) {
+        Object path = params.get("path");
+        if (!(path instanceof String)) {
+            throw new SimulatedWorld.SimulatedError("INVALID_PARAMS", "缺少帧通道文件路径");
+        }
+        synchronized (frameLock) {
+            closeFrames();
+            try {
+                frames = FrameRing.attach(Path.of((String) path));
+            } catch (IOException e) {
+                throw new SimulatedWorld.SimulatedError("FRAME_CHANNEL_ERROR", "打开帧通道失败: " + e.getMessage());
+            }
+            return Map.of("capacity", frames.getCapacity());
+        }
+    }
+
+    private void closeFrames() {
+        synchronized (frameLock) {
+            if (frames != null) {
+                try {
+                    frames.close();
+                } catch (IOException ignored) {
+                }
+                frames = null;
+            }
+        }
+    }
+
+    // 写成帧后只回复序号；没有帧通道或缓冲区放不下时照常回复 JSON
+    private Object writeFrame(String command, long seq, Map<String, Object> data) {
+        boolean map = "map_query".equals(command);
+        ByteBuffer payload = map
+                ? FrameCodec.encodeMap(data)
+                : FrameCodec.encodeActors((List<Map<String, Object>>) data.get("actors"));
+        synchronized (frameLock) {
+            if (frames != null && frames.offer(map ? FrameCodec.MAP : FrameCodec.ACTORS, seq, payload)) {
+                return Map.of("frame", seq);
+            }
+        }
+        return data;
+    }
+
+    private static byte[] compress(Object negotiated, byte[] body) {
+        if (!(negotiated instanceof Map)) {
+            return body;
+        }
+        Map<String, Object> options = (Map<String, Object>) negotiated;
+        if (!WireCompression.ALGORITHM.equals(options.get("algorithm"))) {
+            return body;
+        }
+        int threshold = options.get("threshold") instanceof Number ? ((Number) options.get("threshold")).intValue() : 8192;
+        int level = options.get("level") instanceof Number ? ((Number) options.get("level")).intValue() : 1;
+        return body.length >= threshold ? WireCompression.deflate(body, level) : body;
+    }
+
+    private SimulatorConfig.FailureRule.Mode failure(String command) {
+        for (RuleState state : rules) {
+            if (state.fire(command)) {
+                injectedFailures.incrementAndGet();
+                return state.rule.getMode();
+            }
+        }
+        return null;
+    }
+
+    private void delay() throws InterruptedException {
+        long millis = config.getLatency().toMillis();
+        long jitter = config.getJitter().toMillis();
+        if (jitter > 0) {
+            millis += ThreadLocalRandom.current().nextLong(jitter + 1);
+        }
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private static void error(Map<String, Object> response, String code, String message) {
+        response.put("status", -1);
+        response.put("error", Map.of("code", code, "message", message));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        running = false;
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        if (unixServer != null) {
+            unixServer.close();
+            Files.deleteIfExists(unixSocket);
+        }
+        workers.shutdownNow();
+        closeFrames();
+    }
+}
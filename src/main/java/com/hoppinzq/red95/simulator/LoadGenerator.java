@@ -0,0 +1,213 @@
+package com.hoppinzq.red95.simulator;
+
+import com.hoppinzq.red95.service.Red95Tools;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 压测入口，启用 loadtest profile 时运行：
+ * 启动内嵌的游戏模拟器，按 red95.simulator.load-test.rate 的目标速率调用 Red95Tools，
+ * 定期输出吞吐量和延迟分位数，结束后退出进程。
+ * <pre>
+ * java -jar mcp-demo-red95.jar --spring.profiles.active=loadtest --red95.simulator.load-test.rate=50
+ * </pre>
+ * 调用按计划时间发起(开环)，延迟从计划时间开始计算，工具线程不够用时排队时间也会体现在延迟中。
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+public class LoadGenerator implements CommandLineRunner {
+    @Resource
+    private Red95Tools red95Tools;
+
+    @Resource
+    private SimulatorConfig config;
+
+    @Resource
+    private ApplicationContext context;
+
+    private final List<Call> mix = new ArrayList<>();
+    private int totalWeight;
+
+    // 一种工具调用及其在调用组合中的权重
+    private static class Call {
+        final String name;
+        final int weight;
+        final Consumer<String> action;
+        final Stats stats = new Stats();
+
+        Call(String name, int weight, Consumer<String> action) {
+            this.name = name;
+            this.weight = weight;
+            this.action = action;
+        }
+    }
+
+    // 延迟样本(微秒)和错误计数，每个报告周期取走一次
+    private static class Stats {
+        final ConcurrentLinkedQueue<Long> interval = new ConcurrentLinkedQueue<>();
+        final List<Long> all = Collections.synchronizedList(new ArrayList<>());
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong intervalErrors = new AtomicLong();
+
+        void record(long micros) {
+            interval.add(micros);
+            all.add(micros);
+        }
+
+        List<Long> drain() {
+            List<Long> samples = new ArrayList<>();
+            Long sample;
+            while ((sample = interval.poll()) != null) {
+                samples.add(sample);
+            }
+            return samples;
+        }
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        SimulatorConfig.LoadTest loadTest = config.getLoadTest();
+        try (GameSimulator simulator = new GameSimulator(config).start()) {
+            String gameId = "127.0.0.1:" + simulator.getPort();
+            buildMix();
+            log.info("开始压测: 目标{}次/秒, 持续{}, 线程{}, 游戏{}",
+                    loadTest.getRate(), loadTest.getDuration(), loadTest.getThreads(), gameId);
+            red95Tools.isGameRun(gameId);  // 预先建立会话和连接池
+
+            ExecutorService callers = Executors.newFixedThreadPool(loadTest.getThreads(), r -> {
+                Thread thread = new Thread(r, "Load-Generator");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long periodNanos = (long) (1_000_000_000L / loadTest.getRate());
+            long reportNanos = loadTest.getReportInterval().toNanos();
+            long start = System.nanoTime();
+            long end = start + loadTest.getDuration().toNanos();
+            long nextReport = start + reportNanos;
+            long lastReport = start;
+            long scheduled = 0;
+
+            for (long next = start; next < end; next += periodNanos) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                Call call = pick();
+                long intended = next;
+                callers.execute(() -> invoke(call, gameId, intended));
+                scheduled++;
+                if (System.nanoTime() >= nextReport) {
+                    report("区间", System.nanoTime() - lastReport, false);
+                    lastReport = System.nanoTime();
+                    nextReport += reportNanos;
+                }
+            }
+            callers.shutdown();
+            if (!callers.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("仍有调用未完成，强制结束");
+                callers.shutdownNow();
+            }
+            log.info("压测结束: 计划{}次调用, 模拟器收到{}次请求, 注入故障{}次",
+                    scheduled, simulator.getRequestCount(), simulator.getInjectedFailureCount());
+            report("汇总", System.nanoTime() - start, true);
+        }
+        System.exit(SpringApplication.exit(context));
+    }
+
+    private void buildMix() {
+        Random random = new Random(config.getSeed());
+        int size = config.getMapSize();
+        mix.add(new Call("get_game_state", 20, gameId -> red95Tools.getGameState(gameId, null, null, null, null, null)));
+        mix.add(new Call("visible_units", 20, gameId ->
+                red95Tools.visibleUnits(List.of("战斗单位"), "己方", "all", null, gameId, null, null, null, null)));
+        mix.add(new Call("query_player_info", 10, gameId -> red95Tools.queryPlayerInfo(gameId, null)));
+        mix.add(new Call("move_units", 15, gameId -> red95Tools.moveUnits(List.of(2, 3),
+                random.nextInt(size), random.nextInt(size), false, gameId)));
+        mix.add(new Call("camera_move_to", 5, gameId ->
+                red95Tools.cameraMoveTo(random.nextInt(size), random.nextInt(size), gameId)));
+        mix.add(new Call("visible_query", 10, gameId ->
+                red95Tools.visibleQuery(random.nextInt(size), random.nextInt(size), gameId)));
+        mix.add(new Call("can_produce_all", 10, gameId ->
+                red95Tools.canProduceAll(List.of("步兵", "重坦", "电厂"), gameId)));
+        mix.add(new Call("query_production_queue", 5, gameId ->
+                red95Tools.queryProductionQueue("Infantry", gameId)));
+        mix.add(new Call("query_map_info", 5, gameId -> red95Tools.queryMapInfo(gameId, null, null)));
+        for (Call call : mix) {
+            totalWeight += call.weight;
+        }
+    }
+
+    private Call pick() {
+        int roll = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Call call : mix) {
+            roll -= call.weight;
+            if (roll < 0) {
+                return call;
+            }
+        }
+        return mix.get(mix.size() - 1);
+    }
+
+    private void invoke(Call call, String gameId, long intendedNanos) {
+        try {
+            call.action.accept(gameId);
+        } catch (Exception e) {
+            call.stats.errors.incrementAndGet();
+            call.stats.intervalErrors.incrementAndGet();
+            log.debug("工具{}调用失败: {}", call.name, e.getMessage());
+        }
+        call.stats.record((System.nanoTime() - intendedNanos) / 1000);
+    }
+
+    private void report(String label, long elapsedNanos, boolean total) {
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder sb = new StringBuilder(String.format("%s(%.1fs):%n", label, seconds));
+        sb.append(String.format("  %-24s %8s %8s %7s %9s %9s %9s %9s%n",
+                "tool", "calls", "errors", "qps", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)"));
+        List<Long> merged = new ArrayList<>();
+        long errors = 0;
+        for (Call call : mix) {
+            List<Long> samples;
+            if (total) {
+                synchronized (call.stats.all) {
+                    samples = new ArrayList<>(call.stats.all);
+                }
+            } else {
+                samples = call.stats.drain();
+            }
+            long callErrors = total ? call.stats.errors.get() : call.stats.intervalErrors.getAndSet(0);
+            merged.addAll(samples);
+            errors += callErrors;
+            sb.append(line(call.name, samples, callErrors, seconds));
+        }
+        sb.append(line("(all)", merged, errors, seconds));
+        log.info(sb.toString());
+    }
+
+    private static String line(String name, List<Long> samples, long errors, double seconds) {
+        Collections.sort(samples);
+        return String.format("  %-24s %8d %8d %7.1f %9.2f %9.2f %9.2f %9.2f%n",
+                name, samples.size(), errors, samples.size() / seconds,
+                percentile(samples, 0.50), percentile(samples, 0.90), percentile(samples, 0.99),
+                percentile(samples, 1.0));
+    }
+
+    private static double percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int i = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, i))) / 1000.0;
+    }
+}
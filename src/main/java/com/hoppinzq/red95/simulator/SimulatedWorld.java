@@ -0,0 +1,795 @@
+package com.hoppinzq.red95.simulator;
+
+import com.hoppinzq.red95.model.ProductionQueue;
+import com.hoppinzq.red95.model.TechItem;
+import com.hoppinzq.red95.rules.TechTree;
+
+import java.util.*;
+
+/**
+ * 模拟器中的合成世界：地图、单位、资金电力、生产队列和等待任务。
+ * 每次处理命令前按真实时间推进世界(移动、生产、采矿收入)，所有方法在同一把锁下执行。
+ */
+public class SimulatedWorld {
+    private static final String SELF = "己方";
+    private static final String ENEMY = "敌方";
+    private static final String NEUTRAL = "中立";
+    private static final String CONSTRUCTION_YARD = "建造厂";
+    private static final String MCV = "基地车";
+    private static final int SIGHT = 6;  // 单位视野半径
+    private static final int SCREEN_WIDTH = 40;
+    private static final int SCREEN_HEIGHT = 24;
+    private static final double UNIT_SPEED = 4.0;  // 每秒移动格数
+    private static final int HARVESTER_INCOME = 25;  // 每辆矿车每秒带来的资金
+
+    private final SimulatorConfig config;
+    private final TechTree techTree = TechTree.getDefault();
+    private final Random random;
+    private final int size;
+
+    // 地图静态图层，按 [x][y] 存储
+    private final int[][] height;
+    private final String[][] terrain;
+    private final String[][] resourcesType;
+    private final int[][] resources;
+    private final boolean[][] explored;
+
+    private final Map<Integer, SimActor> actors = new LinkedHashMap<>();
+    private final Map<Integer, Production> waits = new HashMap<>();
+    private final Map<String, Deque<Production>> queues = new HashMap<>();
+    private final Set<Integer> selected = new HashSet<>();
+    private final Map<Integer, List<Integer>> groups = new HashMap<>();
+    private final Location base;
+    private Location cameraCenter;
+    private double cash;
+    private int nextActorId = 1;
+    private int nextWaitId = 1;
+    private long lastAdvance = System.nanoTime();
+
+    private static class Location {
+        final int x;
+        final int y;
+
+        Location(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private static class SimActor {
+        final int id;
+        String type;
+        final String faction;
+        double x;
+        double y;
+        Location destination;
+        int hp;
+        final int maxHp;
+
+        SimActor(int id, String type, String faction, int x, int y, int maxHp) {
+            this.id = id;
+            this.type = type;
+            this.faction = faction;
+            this.x = x;
+            this.y = y;
+            this.hp = maxHp;
+            this.maxHp = maxHp;
+        }
+
+        int cellX() {
+            return (int) Math.round(x);
+        }
+
+        int cellY() {
+            return (int) Math.round(y);
+        }
+    }
+
+    private static class Production {
+        final int waitId;
+        final TechItem item;
+        int remaining;  // 剩余数量
+        final boolean autoPlace;
+        double progress;  // 当前这一个的完成度 0~1
+        boolean paused;
+        boolean ready;  // 建筑已完成等待放置
+
+        Production(int waitId, TechItem item, int quantity, boolean autoPlace) {
+            this.waitId = waitId;
+            this.item = item;
+            this.remaining = quantity;
+            this.autoPlace = autoPlace;
+        }
+    }
+
+    public SimulatedWorld(SimulatorConfig config) {
+        this.config = config;
+        this.random = new Random(config.getSeed());
+        this.size = Math.max(16, config.getMapSize());
+        this.height = new int[size][size];
+        this.terrain = new String[size][size];
+        this.resourcesType = new String[size][size];
+        this.resources = new int[size][size];
+        this.explored = new boolean[size][size];
+        this.cash = config.getStartingCash();
+        this.base = new Location(size / 5, size / 5);
+        this.cameraCenter = base;
+        generateMap();
+        spawnActors();
+        for (String queueType : ProductionQueue.QUEUE_TYPES) {
+            queues.put(queueType, new ArrayDeque<>());
+        }
+    }
+
+    private void generateMap() {
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                height[x][y] = random.nextInt(4);
+                int roll = random.nextInt(20);
+                terrain[x][y] = roll == 0 ? "Water" : roll < 3 ? "Rough" : "Clear";
+                resourcesType[x][y] = "";
+            }
+        }
+        // 几片矿区
+        for (int patch = 0; patch < Math.max(4, size / 16); patch++) {
+            int cx = random.nextInt(size);
+            int cy = random.nextInt(size);
+            for (int x = Math.max(0, cx - 4); x < Math.min(size, cx + 4); x++) {
+                for (int y = Math.max(0, cy - 4); y < Math.min(size, cy + 4); y++) {
+                    if (!"Water".equals(terrain[x][y])) {
+                        resourcesType[x][y] = "Ore";
+                        resources[x][y] = 1 + random.nextInt(12);
+                    }
+                }
+            }
+        }
+    }
+
+    private void spawnActors() {
+        spawn(MCV, SELF, base.x, base.y);
+        spawn("步兵", SELF, base.x + 2, base.y + 1);
+        spawn("步兵", SELF, base.x + 3, base.y + 1);
+        spawn(CONSTRUCTION_YARD, ENEMY, size - base.x, size - base.y);
+        spawn("电厂", ENEMY, size - base.x - 3, size - base.y);
+        spawn("兵营", ENEMY, size - base.x, size - base.y - 3);
+        List<TechItem> units = new ArrayList<>();
+        for (TechItem item : techTree.getItems()) {
+            if (!item.isBuilding()) {
+                units.add(item);
+            }
+        }
+        for (int i = 0; i < config.getActorCount(); i++) {
+            TechItem item = units.get(random.nextInt(units.size()));
+            int roll = random.nextInt(10);
+            String faction = roll < 4 ? SELF : roll < 9 ? ENEMY : NEUTRAL;
+            spawn(item.getName(), faction, random.nextInt(size), random.nextInt(size));
+        }
+        for (SimActor actor : actors.values()) {
+            if (SELF.equals(actor.faction)) {
+                reveal(actor.cellX(), actor.cellY(), SIGHT * 2);
+            }
+        }
+    }
+
+    private SimActor spawn(String type, String faction, int x, int y) {
+        TechItem item = techTree.find(type);
+        int maxHp = item != null && item.isBuilding() ? 1000 : 100 + (item != null ? item.getCost() / 10 : 0);
+        SimActor actor = new SimActor(nextActorId++, type, faction, clamp(x), clamp(y), maxHp);
+        actors.put(actor.id, actor);
+        return actor;
+    }
+
+    private int clamp(int v) {
+        return Math.max(0, Math.min(size - 1, v));
+    }
+
+    private void reveal(int cx, int cy, int radius) {
+        for (int x = Math.max(0, cx - radius); x <= Math.min(size - 1, cx + radius); x++) {
+            for (int y = Math.max(0, cy - radius); y <= Math.min(size - 1, cy + radius); y++) {
+                explored[x][y] = true;
+            }
+        }
+    }
+
+    /**
+     * 处理一个命令
+     *
+     * @return 响应中 data 字段的内容
+     * @throws SimulatedError 当命令参数无效或执行失败时
+     */
+    public synchronized Object handle(String command, Map<String, Object> params) {
+        advance();
+        switch (command) {
+            case "ping":
+                return Map.of("status", 1);
+            case "query_actor":
+                return Map.of("actors", queryActors(asMap(params.get("targets"))));
+            case "move_actor":
+                return moveActors(params);
+            case "map_query":
+                return mapQuery();
+            case "fog_query":
+                return fogQuery(asMap(params.get("pos")));
+            case "player_baseinfo_query":
+                return baseInfo();
+            case "screen_info_query":
+                return screenInfo();
+            case "camera_move":
+                return cameraMove(params);
+            case "view":
+                SimActor viewed = actors.get(asInt(params.get("actorId"), -1));
+                if (viewed != null) {
+                    cameraCenter = new Location(viewed.cellX(), viewed.cellY());
+                }
+                return Map.of();
+            case "query_can_produce":
+                return canProduce(params);
+            case "start_production":
+                return startProduction(params);
+            case "query_wait_info":
+                return waitInfo(asInt(params.get("waitId"), -1));
+            case "query_production_queue":
+                if (params.get("queueTypes") instanceof List) {
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    for (Object queueType : (List<Object>) params.get("queueTypes")) {
+                        if (queues.containsKey(queueType)) {
+                            result.put((String) queueType, productionQueue((String) queueType));
+                        }
+                    }
+                    return Map.of("queues", result);
+                }
+                return productionQueue((String) params.get("queueType"));
+            case "place_building":
+                return placeBuilding((String) params.get("queueType"));
+            case "manage_production":
+                return manageProduction((String) params.get("queueType"), (String) params.get("action"));
+            case "deploy":
+                for (SimActor actor : targets(params.get("targets"))) {
+                    if (MCV.equals(actor.type)) {
+                        actor.type = CONSTRUCTION_YARD;
+                    }
+                }
+                return Map.of();
+            case "attack":
+                return attack(params);
+            case "select_unit":
+                selected.clear();
+                for (Map<String, Object> actor : queryActors(asMap(params.get("targets")))) {
+                    selected.add(asInt(actor.get("id"), -1));
+                }
+                return Map.of();
+            case "form_group":
+                List<Integer> members = new ArrayList<>();
+                for (SimActor actor : targets(params.get("targets"))) {
+                    members.add(actor.id);
+                }
+                groups.put(asInt(params.get("groupId"), 0), members);
+                return Map.of();
+            case "query_path":
+                return queryPath(params);
+            case "unit_attribute_query":
+                return unitAttributes(params);
+            case "stop":
+                for (SimActor actor : targets(params.get("targets"))) {
+                    actor.destination = null;
+                }
+                return Map.of();
+            case "repair":
+                for (SimActor actor : targets(params.get("targets"))) {
+                    actor.hp = actor.maxHp;
+                }
+                return Map.of();
+            case "occupy":
+            case "set_rally_point":
+                return Map.of();
+            default:
+                throw new SimulatedError("INVALID_COMMAND", "未知命令: " + command);
+        }
+    }
+
+    // 按真实时间推进：移动、生产、采矿收入
+    private void advance() {
+        long now = System.nanoTime();
+        double dt = (now - lastAdvance) / 1e9 * config.getGameSpeed();
+        lastAdvance = now;
+        if (dt <= 0) {
+            return;
+        }
+
+        int harvesters = 0;
+        for (SimActor actor : actors.values()) {
+            if (SELF.equals(actor.faction) && "矿车".equals(actor.type)) {
+                harvesters++;
+            }
+            if (actor.destination != null) {
+                double dx = actor.destination.x - actor.x;
+                double dy = actor.destination.y - actor.y;
+                double distance = Math.sqrt(dx * dx + dy * dy);
+                double step = UNIT_SPEED * dt;
+                if (distance <= step) {
+                    actor.x = actor.destination.x;
+                    actor.y = actor.destination.y;
+                    actor.destination = null;
+                } else {
+                    actor.x += dx / distance * step;
+                    actor.y += dy / distance * step;
+                }
+                if (SELF.equals(actor.faction)) {
+                    reveal(actor.cellX(), actor.cellY(), SIGHT);
+                }
+            }
+        }
+        cash += harvesters * HARVESTER_INCOME * dt;
+
+        double lowPower = power() < 0 ? 0.5 : 1.0;
+        for (Map.Entry<String, Deque<Production>> entry : queues.entrySet()) {
+            Production head = entry.getValue().peekFirst();
+            if (head == null || head.paused || head.ready) {
+                continue;
+            }
+            head.progress += dt * lowPower / Math.max(1, head.item.getBuildTime());
+            if (head.progress >= 1.0) {
+                complete(entry.getValue(), head);
+            }
+        }
+    }
+
+    private void complete(Deque<Production> queue, Production production) {
+        if (production.item.isBuilding() && !production.autoPlace) {
+            production.ready = true;
+            production.progress = 1.0;
+            return;
+        }
+        spawnNearBase(production.item.getName());
+        production.remaining--;
+        production.progress = 0;
+        if (production.remaining <= 0) {
+            queue.pollFirst();
+        }
+    }
+
+    private void spawnNearBase(String type) {
+        SimActor actor = spawn(type, SELF, base.x + random.nextInt(9) - 4, base.y + random.nextInt(9) - 4);
+        reveal(actor.cellX(), actor.cellY(), SIGHT);
+    }
+
+    private List<Map<String, Object>> queryActors(Map<String, Object> targets) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        List<Integer> ids = asIntList(targets.get("actorId"));
+        List<String> types = (List<String>) targets.get("type");
+        String faction = (String) targets.get("faction");
+        String range = (String) targets.get("range");
+        int maxNum = Integer.MAX_VALUE;
+        for (Map<String, Object> restrain : (List<Map<String, Object>>) targets.getOrDefault("restrain", List.of())) {
+            if (restrain != null && restrain.get("maxNum") != null) {
+                maxNum = asInt(restrain.get("maxNum"), maxNum);
+            }
+        }
+
+        for (SimActor actor : actors.values()) {
+            if (result.size() >= maxNum) {
+                break;
+            }
+            if (ids != null && !ids.contains(actor.id)) {
+                continue;
+            }
+            if (!matchesType(actor, types) || !matchesFaction(actor, faction) || !matchesRange(actor, range)) {
+                continue;
+            }
+            result.add(toJson(actor));
+        }
+        return result;
+    }
+
+    private boolean matchesType(SimActor actor, List<String> types) {
+        if (types == null || types.isEmpty()) {
+            return true;
+        }
+        TechItem item = techTree.find(actor.type);
+        for (String type : types) {
+            if (type.equals(actor.type)) {
+                return true;
+            }
+            TechItem wanted = techTree.find(type);
+            if (wanted != null && wanted == item) {
+                return true;  // 按代码查询，如 mcv
+            }
+            if ("建筑".equals(type) && (CONSTRUCTION_YARD.equals(actor.type) || item != null && item.isBuilding())) {
+                return true;
+            }
+            if (item != null && item.getCategories().contains(type)) {
+                return true;
+            }
+            if ("mcv".equals(type) && MCV.equals(actor.type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesFaction(SimActor actor, String faction) {
+        if (faction == null || faction.isEmpty() || "任意".equals(faction)) {
+            return true;
+        }
+        if ("自己".equals(faction) || SELF.equals(faction)) {
+            return SELF.equals(actor.faction);
+        }
+        return faction.equals(actor.faction);
+    }
+
+    private boolean matchesRange(SimActor actor, String range) {
+        if ("screen".equals(range)) {
+            return Math.abs(actor.cellX() - cameraCenter.x) <= SCREEN_WIDTH / 2
+                    && Math.abs(actor.cellY() - cameraCenter.y) <= SCREEN_HEIGHT / 2;
+        }
+        if ("selected".equals(range)) {
+            return selected.contains(actor.id);
+        }
+        return true;
+    }
+
+    private static Map<String, Object> toJson(SimActor actor) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", actor.id);
+        json.put("type", actor.type);
+        json.put("faction", actor.faction);
+        json.put("position", Map.of("x", actor.cellX(), "y", actor.cellY()));
+        json.put("hp", actor.hp);
+        json.put("maxHp", actor.maxHp);
+        return json;
+    }
+
+    private List<SimActor> targets(Object targets) {
+        List<SimActor> result = new ArrayList<>();
+        List<Integer> ids = asIntList(asMap(targets).get("actorId"));
+        if (ids != null) {
+            for (Integer id : ids) {
+                SimActor actor = actors.get(id);
+                if (actor != null) {
+                    result.add(actor);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Object moveActors(Map<String, Object> params) {
+        List<SimActor> movers = targets(params.get("targets"));
+        Map<String, Object> location = asMap(params.get("location"));
+        List<Map<String, Object>> path = (List<Map<String, Object>>) params.get("path");
+        for (SimActor actor : movers) {
+            if (!location.isEmpty()) {
+                actor.destination = new Location(clamp(asInt(location.get("x"), 0)), clamp(asInt(location.get("y"), 0)));
+            } else if (path != null && !path.isEmpty()) {
+                Map<String, Object> last = path.get(path.size() - 1);
+                actor.destination = new Location(clamp(asInt(last.get("x"), 0)), clamp(asInt(last.get("y"), 0)));
+            } else if (params.get("direction") != null) {
+                int[] d = direction((String) params.get("direction"));
+                int distance = asInt(params.get("distance"), 0);
+                actor.destination = new Location(clamp(actor.cellX() + d[0] * distance), clamp(actor.cellY() + d[1] * distance));
+            }
+        }
+        return Map.of();
+    }
+
+    private static int[] direction(String direction) {
+        switch (direction) {
+            case "北": case "上": return new int[]{0, -1};
+            case "东北": case "右上": return new int[]{1, -1};
+            case "东": case "右": return new int[]{1, 0};
+            case "东南": case "右下": return new int[]{1, 1};
+            case "南": case "下": return new int[]{0, 1};
+            case "西南": case "左下": return new int[]{-1, 1};
+            case "西": case "左": return new int[]{-1, 0};
+            case "西北": case "左上": return new int[]{-1, -1};
+            default: throw new SimulatedError("INVALID_DIRECTION", "无效的方向: " + direction);
+        }
+    }
+
+    private boolean[][] visibility() {
+        boolean[][] visible = new boolean[size][size];
+        for (SimActor actor : actors.values()) {
+            if (!SELF.equals(actor.faction)) {
+                continue;
+            }
+            for (int x = Math.max(0, actor.cellX() - SIGHT); x <= Math.min(size - 1, actor.cellX() + SIGHT); x++) {
+                for (int y = Math.max(0, actor.cellY() - SIGHT); y <= Math.min(size - 1, actor.cellY() + SIGHT); y++) {
+                    visible[x][y] = true;
+                }
+            }
+        }
+        return visible;
+    }
+
+    private Object mapQuery() {
+        boolean[][] visible = visibility();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("MapWidth", size);
+        map.put("MapHeight", size);
+        map.put("Height", height);
+        map.put("IsVisible", visible);
+        map.put("IsExplored", explored);
+        map.put("Terrain", terrain);
+        map.put("ResourcesType", resourcesType);
+        map.put("Resources", resources);
+        return map;
+    }
+
+    private Object fogQuery(Map<String, Object> pos) {
+        int x = asInt(pos.get("x"), -1);
+        int y = asInt(pos.get("y"), -1);
+        if (x < 0 || y < 0 || x >= size || y >= size) {
+            throw new SimulatedError("INVALID_POSITION", "位置超出地图范围");
+        }
+        return Map.of("IsVisible", visibility()[x][y], "IsExplored", explored[x][y]);
+    }
+
+    private int power() {
+        int power = 0;
+        for (SimActor actor : actors.values()) {
+            if (SELF.equals(actor.faction)) {
+                power += techTree.getPower(actor.type);
+            }
+        }
+        return power;
+    }
+
+    private Object baseInfo() {
+        int provided = 0;
+        int drained = 0;
+        for (SimActor actor : actors.values()) {
+            if (SELF.equals(actor.faction)) {
+                int p = techTree.getPower(actor.type);
+                if (p > 0) {
+                    provided += p;
+                } else {
+                    drained -= p;
+                }
+            }
+        }
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("Cash", (int) cash);
+        info.put("Resources", 0);
+        info.put("Power", provided - drained);
+        info.put("PowerDrained", drained);
+        info.put("PowerProvided", provided);
+        return info;
+    }
+
+    private Object screenInfo() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("ScreenMin", Map.of("X", cameraCenter.x - SCREEN_WIDTH / 2, "Y", cameraCenter.y - SCREEN_HEIGHT / 2));
+        info.put("ScreenMax", Map.of("X", cameraCenter.x + SCREEN_WIDTH / 2, "Y", cameraCenter.y + SCREEN_HEIGHT / 2));
+        info.put("IsMouseOnScreen", true);
+        info.put("MousePosition", Map.of("X", cameraCenter.x, "Y", cameraCenter.y));
+        return info;
+    }
+
+    private Object cameraMove(Map<String, Object> params) {
+        Map<String, Object> location = asMap(params.get("location"));
+        if (!location.isEmpty()) {
+            cameraCenter = new Location(clamp(asInt(location.get("x"), 0)), clamp(asInt(location.get("y"), 0)));
+        } else if (params.get("direction") != null) {
+            int[] d = direction((String) params.get("direction"));
+            int distance = asInt(params.get("distance"), 0);
+            cameraCenter = new Location(clamp(cameraCenter.x + d[0] * distance), clamp(cameraCenter.y + d[1] * distance));
+        }
+        return Map.of();
+    }
+
+    private boolean owns(String type) {
+        for (SimActor actor : actors.values()) {
+            if (SELF.equals(actor.faction) && type.equals(actor.type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean canProduce(TechItem item) {
+        if (item == null) {
+            return false;
+        }
+        if (item.isBuilding() && !owns(CONSTRUCTION_YARD)) {
+            return false;
+        }
+        for (String prerequisite : item.getPrerequisites()) {
+            if (!owns(prerequisite)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Object canProduce(Map<String, Object> params) {
+        List<Map<String, Object>> units = new ArrayList<>();
+        boolean all = true;
+        for (Map<String, Object> unit : (List<Map<String, Object>>) params.getOrDefault("units", List.of())) {
+            String type = (String) unit.get("unit_type");
+            boolean can = canProduce(techTree.find(type));
+            all &= can;
+            units.add(Map.of("unit_type", type, "canProduce", can));
+        }
+        return Map.of("canProduce", all, "units", units);
+    }
+
+    private Object startProduction(Map<String, Object> params) {
+        boolean autoPlace = Boolean.TRUE.equals(params.get("autoPlaceBuilding"));
+        Integer waitId = null;
+        for (Map<String, Object> unit : (List<Map<String, Object>>) params.getOrDefault("units", List.of())) {
+            TechItem item = techTree.find((String) unit.get("unit_type"));
+            int quantity = Math.max(1, asInt(unit.get("quantity"), 1));
+            if (!canProduce(item)) {
+                throw new SimulatedError("COMMAND_EXECUTION_ERROR", "无法生产: " + unit.get("unit_type"));
+            }
+            int cost = item.getCost() * quantity;
+            if (cost > cash) {
+                throw new SimulatedError("COMMAND_EXECUTION_ERROR", "资金不足");
+            }
+            cash -= cost;
+            Production production = new Production(nextWaitId++, item, quantity, autoPlace);
+            waits.put(production.waitId, production);
+            queues.get(item.getQueue()).addLast(production);
+            waitId = production.waitId;
+        }
+        return waitId == null ? Map.of() : Map.of("waitId", waitId);
+    }
+
+    private Object waitInfo(int waitId) {
+        Production production = waits.get(waitId);
+        if (production == null) {
+            throw new SimulatedError("COMMAND_EXECUTION_ERROR", "不存在的waitId: " + waitId);
+        }
+        boolean done = production.remaining <= 0 || production.ready;
+        return Map.of("waitStatus", done ? "success" : "waiting", "status", done);
+    }
+
+    private Deque<Production> queue(String queueType) {
+        Deque<Production> queue = queues.get(queueType);
+        if (queue == null) {
+            throw new SimulatedError("INVALID_QUEUE_TYPE", "无效的队列类型: " + queueType);
+        }
+        return queue;
+    }
+
+    private Object productionQueue(String queueType) {
+        List<Map<String, Object>> items = new ArrayList<>();
+        boolean hasReady = false;
+        for (Production production : queue(queueType)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            int total = production.item.getBuildTime();
+            item.put("name", production.item.getCode());
+            item.put("chineseName", production.item.getName());
+            item.put("status", production.ready ? "completed" : production.paused ? "paused"
+                    : production.progress > 0 ? "in_progress" : "waiting");
+            item.put("progress_percent", (int) (production.progress * 100));
+            item.put("remaining_time", (int) Math.ceil(total * (1 - production.progress)));
+            item.put("total_time", total);
+            item.put("owner_actor_id", -1);
+            item.put("done", production.ready);
+            items.add(item);
+            hasReady |= production.ready;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("queue_type", queueType);
+        result.put("queue_items", items);
+        result.put("has_ready_item", hasReady);
+        return result;
+    }
+
+    private Object placeBuilding(String queueType) {
+        Deque<Production> queue = queue(queueType);
+        Production head = queue.peekFirst();
+        if (head == null || !head.ready) {
+            throw new SimulatedError("COMMAND_EXECUTION_ERROR", "队列顶端没有已就绪的建筑");
+        }
+        spawnNearBase(head.item.getName());
+        head.ready = false;
+        head.progress = 0;
+        head.remaining--;
+        if (head.remaining <= 0) {
+            queue.pollFirst();
+        }
+        return Map.of();
+    }
+
+    private Object manageProduction(String queueType, String action) {
+        Deque<Production> queue = queue(queueType);
+        Production head = queue.peekFirst();
+        if (head != null) {
+            switch (action) {
+                case "pause" -> head.paused = true;
+                case "resume" -> head.paused = false;
+                case "cancel" -> {
+                    queue.pollFirst();
+                    cash += head.item.getCost() * head.remaining;
+                    head.remaining = 0;
+                }
+                default -> throw new SimulatedError("INVALID_ACTION", "无效的操作: " + action);
+            }
+        }
+        return Map.of();
+    }
+
+    private Object attack(Map<String, Object> params) {
+        List<SimActor> attackers = targets(params.get("attackers"));
+        List<SimActor> victims = targets(params.get("targets"));
+        if (attackers.isEmpty() || victims.isEmpty()) {
+            return Map.of("status", 0);
+        }
+        SimActor victim = victims.get(0);
+        victim.hp -= 10 * attackers.size();
+        if (victim.hp <= 0) {
+            actors.remove(victim.id);
+        }
+        return Map.of("status", 1);
+    }
+
+    private Object queryPath(Map<String, Object> params) {
+        List<SimActor> movers = targets(params.get("targets"));
+        Map<String, Object> destination = asMap(params.get("destination"));
+        int dx = asInt(destination.get("x"), 0);
+        int dy = asInt(destination.get("y"), 0);
+        List<Map<String, Object>> path = new ArrayList<>();
+        if (!movers.isEmpty()) {
+            SimActor from = movers.get(0);
+            int steps = Math.max(Math.abs(dx - from.cellX()), Math.abs(dy - from.cellY()));
+            for (int i = 0; i <= steps; i++) {
+                double t = steps == 0 ? 1 : (double) i / steps;
+                path.add(Map.of("x", (int) Math.round(dx + (from.cellX() - dx) * t),
+                        "y", (int) Math.round(dy + (from.cellY() - dy) * t)));
+            }
+        }
+        return Map.of("path", path);
+    }
+
+    private Object unitAttributes(Map<String, Object> params) {
+        List<Map<String, Object>> attributes = new ArrayList<>();
+        for (SimActor actor : targets(params.get("targets"))) {
+            List<Integer> inRange = new ArrayList<>();
+            for (SimActor other : actors.values()) {
+                if (!other.faction.equals(actor.faction)
+                        && Math.abs(other.cellX() - actor.cellX()) + Math.abs(other.cellY() - actor.cellY()) <= SIGHT) {
+                    inRange.add(other.id);
+                }
+            }
+            attributes.add(Map.of("id", actor.id, "speed", UNIT_SPEED, "attackRange", SIGHT, "targets", inRange));
+        }
+        return Map.of("attributes", attributes);
+    }
+
+    private static Map<String, Object> asMap(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : Map.of();
+    }
+
+    private static int asInt(Object value, int defaultValue) {
+        return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+    }
+
+    private static List<Integer> asIntList(Object value) {
+        if (!(value instanceof List)) {
+            return null;
+        }
+        List<Integer> result = new ArrayList<>();
+        for (Object item : (List<?>) value) {
+            result.add(asInt(item, -1));
+        }
+        return result;
+    }
+
+    /**
+     * 模拟的命令执行错误，会以 status&lt;0 的错误响应返回给客户端
+     */
+    public static class SimulatedError extends RuntimeException {
+        private final String code;
+
+        public SimulatedError(String code, String message) {
+            super(message);
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.hoppinzq.red95.simulator;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本地游戏模拟器配置，对应 application-loadtest.yml 中的 red95.simulator 节点，也可以直接 new 出来嵌入使用
+ */
+@Data
+@ConfigurationProperties(prefix = "red95.simulator")
+public class SimulatorConfig {
+    private int port = 0;  // 监听端口，0表示随机端口
+    private String unixSocket;  // 同时监听的 Unix 域套接字文件，为空时只监听 TCP
+    private long seed = 42;  // 随机种子，相同种子生成相同的世界
+    private int mapSize = 128;  // 地图边长
+    private int actorCount = 100;  // 额外生成的随机单位数量
+    private int startingCash = 10000;  // 初始资金
+    private double gameSpeed = 1.0;  // 生产、移动速度倍率
+    private Duration latency = Duration.ZERO;  // 每个请求的固定延迟
+    private Duration jitter = Duration.ZERO;  // 在固定延迟之上叠加的随机延迟上限
+    private List<FailureRule> failures = new ArrayList<>();  // 脚本化故障
+    private LoadTest loadTest = new LoadTest();  // 压测配置，仅在 loadtest profile 下生效
+
+    /**
+     * 故障规则：命中的请求按 mode 处理
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class FailureRule {
+        private String command = "*";  // 命令名，* 表示全部命令
+        private Mode mode = Mode.ERROR;
+        private double probability = 1.0;  // 命中概率
+        private long skipFirst = 0;  // 跳过前多少个匹配的请求
+        private long maxCount = Long.MAX_VALUE;  // 最多触发次数
+
+        public enum Mode {
+            ERROR,  // 返回错误响应(status<0)
+            DROP,  // 不响应直接断开连接
+            HANG  // 挂起不响应，直到客户端超时
+        }
+    }
+
+    @Data
+    public static class LoadTest {
+        private double rate = 20;  // 目标工具调用次数/秒
+        private Duration duration = Duration.ofSeconds(60);  // 压测时长
+        private int threads = 16;  // 执行工具调用的线程数
+        private Duration reportInterval = Duration.ofSeconds(10);  // 中间结果输出间隔
+    }
+}
@@ -0,0 +1,105 @@
+package com.hoppinzq.red95.socket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 游戏连接熔断器。游戏未启动或连接中断时，每次请求都要经历建连超时和重试，
+ * 熔断后请求直接失败，不再做任何 I/O：
+ * <ul>
+ *     <li>CLOSED：正常放行，连续 failureThreshold 次连接失败后进入 OPEN</li>
+ *     <li>OPEN：直接拒绝，由 {@link ReconnectSupervisor} 按退避间隔在后台发送 ping 探测</li>
+ *     <li>HALF_OPEN：探测进行中，成功回到 CLOSED，失败回到 OPEN；探测期间请求仍被拒绝</li>
+ * </ul>
+ * 只有连接层面的失败才计数，游戏返回的业务错误说明游戏在运行，视为成功。
+ */
+@Slf4j
+public class CircuitBreaker {
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final String name;
+    private final CircuitBreakerConfig config;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long lastSuccessAt;
+    private volatile long lastFailureAt;
+    private volatile String lastError;
+
+    public CircuitBreaker(String name, CircuitBreakerConfig config) {
+        this.name = name;
+        this.config = config;
+    }
+
+    /**
+     * @return 是否放行请求，熔断中返回 false
+     */
+    public boolean allowRequest() {
+        return !config.isEnabled() || state.get() == State.CLOSED;
+    }
+
+    public void onSuccess() {
+        lastSuccessAt = System.currentTimeMillis();
+        consecutiveFailures.set(0);
+        State previous = state.getAndSet(State.CLOSED);
+        if (previous != State.CLOSED) {
+            log.info("游戏{}已恢复，熔断关闭", name);
+        }
+    }
+
+    /**
+     * @param error 连接失败原因
+     */
+    public void onFailure(String error) {
+        lastFailureAt = System.currentTimeMillis();
+        lastError = error;
+        int failures = consecutiveFailures.incrementAndGet();
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (state.compareAndSet(State.HALF_OPEN, State.OPEN)) {
+            log.debug("游戏{}探测失败，继续熔断: {}", name, error);
+        } else if (failures >= config.getFailureThreshold() && state.compareAndSet(State.CLOSED, State.OPEN)) {
+            log.warn("游戏{}连续{}次连接失败，熔断: {}", name, failures, error);
+        }
+    }
+
+    /**
+     * 探测开始时调用，OPEN 进入 HALF_OPEN
+     */
+    public void startProbe() {
+        state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    /**
+     * 探测结束时调用：探测没有得出结论(如连接池已满、请求被中断)时回到 OPEN，等下次探测
+     */
+    public void releaseProbe() {
+        state.compareAndSet(State.HALF_OPEN, State.OPEN);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * @return 熔断器状态，只读内存，不做 I/O
+     */
+    public Map<String, Object> snapshot() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("state", state.get().name());
+        result.put("consecutiveFailures", consecutiveFailures.get());
+        result.put("lastSuccessAgoMillis", lastSuccessAt == 0 ? null : now - lastSuccessAt);
+        result.put("lastFailureAgoMillis", lastFailureAt == 0 ? null : now - lastFailureAt);
+        result.put("lastError", lastError);
+        return result;
+    }
+}
@@ -0,0 +1,12 @@
+package com.hoppinzq.red95.socket;
+
+import lombok.Data;
+
+/**
+ * 熔断器配置，对应 application.yml 中的 red95.circuit-breaker 节点，每个游戏实例的熔断器使用同一份配置
+ */
+@Data
+public class CircuitBreakerConfig {
+    private boolean enabled = true;  // 关闭后所有请求直连游戏，不做快速失败
+    private int failureThreshold = 3;  // 连续多少次连接失败后熔断
+}
@@ -0,0 +1,17 @@
+package com.hoppinzq.red95.socket;
+
+import lombok.Data;
+import org.springframework.util.unit.DataSize;
+
+import java.util.zip.Deflater;
+
+/**
+ * 响应压缩配置，对应 application.yml 中的 red95.compression 节点，每个游戏实例使用同一份配置
+ */
+@Data
+public class CompressionConfig {
+    private boolean enabled = false;  // 开启后在请求中声明支持 deflate，游戏可以压缩超过阈值的响应，不支持的游戏照常返回 JSON
+    private int threshold = 8192;  // 响应不小于该字节数时才压缩，小命令的响应不值得付出压缩耗时
+    private int level = Deflater.BEST_SPEED;  // 压缩级别(1-9)，传给游戏，游戏按此级别压缩
+    private DataSize maxInflatedSize = DataSize.ofMegabytes(64);  // 单个响应解压后的上限，超出时按无效响应处理，防止解压炸弹耗尽内存
+}
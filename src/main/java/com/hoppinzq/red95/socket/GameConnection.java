@@ -0,0 +1,37 @@
+package com.hoppinzq.red95.socket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 到游戏的一条连接，屏蔽 TCP 和 Unix 域套接字的差别，协议不变：写一个JSON请求，读到对端关闭为止就是响应
+ */
+public interface GameConnection {
+
+    InputStream getInputStream() throws IOException;
+
+    OutputStream getOutputStream() throws IOException;
+
+    /**
+     * @return 连接未关闭且两个方向都没有被关闭
+     */
+    boolean isOpen();
+
+    /**
+     * 检查空闲连接是否还能用来发新请求：对端已关闭(读到 EOF)或有未读数据时返回 false
+     */
+    boolean isAlive();
+
+    /**
+     * 修改读取响应的超时时间，连接只服务一个请求，不需要恢复
+     *
+     * @param millis 超时毫秒数，0表示不超时
+     */
+    void setReadTimeout(int millis) throws IOException;
+
+    /**
+     * 关闭连接，忽略关闭时的异常
+     */
+    void close();
+}
@@ -1,23 +1,31 @@
 package com.hoppinzq.red95.socket;
 
+import lombok.extern.slf4j.Slf4j;
+
 import java.io.*;
-import java.net.Socket;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
+@Slf4j
 public class GlobalSocketManager {
-    private static volatile Socket socket;
+    private static volatile GameConnection socket;
     private static volatile PrintWriter out;
     private static volatile BufferedReader in;
     private static final ReentrantLock lock = new ReentrantLock();
-    private static final AtomicBoolean isConnecting = new AtomicBoolean(false);
     private static final AtomicBoolean isRunning = new AtomicBoolean(true);
+    // 断线期间待发送的消息，重连成功后按顺序补发；队列满或放弃重连时丢弃
+    private static final int MAX_PENDING = 1000;
+    private static final Deque<String> pending = new LinkedBlockingDeque<>(MAX_PENDING);
     
     // 配置参数
-    private static String host = "localhost";
-    private static int port = 7445;
-    private static long reconnectInterval = 5000; // 重连间隔(毫秒)
-    private static int maxReconnectAttempts = 10; // 最大重连次数
+    private static final int CONNECT_TIMEOUT_MILLIS = 3000;  // 建连超时，避免对端不响应时重连线程一直卡在 connect 上
+    private static Transport transport = Transport.tcp("localhost", 7445);
+    private static ReconnectConfig reconnectConfig = new ReconnectConfig();
+    // 监听、发送两条路径发现断线时都交给它，同一时刻只有一轮重连
+    private static volatile ReconnectSupervisor supervisor;
     
     // 状态监听器
     private static SocketStateListener stateListener;
@@ -31,77 +39,111 @@ public class GlobalSocketManager {
     
     // 初始化Socket管理器
     public static void initialize(String host, int port, SocketStateListener listener) {
-        GlobalSocketManager.host = host;
-        GlobalSocketManager.port = port;
+        initialize(host, port, listener, reconnectConfig);
+    }
+
+    public static void initialize(String host, int port, SocketStateListener listener, ReconnectConfig config) {
+        initialize(Transport.tcp(host, port), listener, config);
+    }
+
+    /**
+     * @param transport TCP 或 Unix 域套接字，见 {@link Transport#of}
+     */
+    public static void initialize(Transport transport, SocketStateListener listener, ReconnectConfig config) {
+        GlobalSocketManager.transport = transport;
         GlobalSocketManager.stateListener = listener;
+        GlobalSocketManager.reconnectConfig = config;
+        supervisor = new ReconnectSupervisor("Socket " + transport, config, GlobalSocketManager::connect);
         
         // 启动连接
-        connect();
-        
-        // 启动心跳检测线程
-        startHeartbeat();
+        try {
+            connect();
+        } catch (IOException e) {
+            if (stateListener != null) {
+                stateListener.onError(e);
+            }
+            log.warn("Socket连接失败: {}", e.getMessage());
+            scheduleReconnect(e.getMessage());
+        }
         
         // 启动消息监听线程
         startMessageListener();
     }
     
-    // 建立连接
-    private static void connect() {
-        if (isConnecting.get()) {
-            return;
-        }
-        
+    // 建立连接，由初始化和重连监督器调用，失败时抛出异常
+    private static void connect() throws IOException {
         lock.lock();
         try {
-            isConnecting.set(true);
-            
             // 关闭旧连接
             closeResources();
             
             // 建立新连接
-            socket = new Socket(host, port);
+            // 不再发送应用层 PING(游戏协议不认识)，断线由读取线程读到 EOF 或 TCP keepalive 发现；长连接读取不设超时
+            socket = transport.connect(CONNECT_TIMEOUT_MILLIS, 0);
             out = new PrintWriter(socket.getOutputStream(), true);
             in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
             
-            isConnecting.set(false);
-            
-            // 通知连接成功
-            if (stateListener != null) {
-                stateListener.onConnected();
-            }
-            
-            System.out.println("Socket连接成功: " + host + ":" + port);
-            
-        } catch (Exception e) {
-            isConnecting.set(false);
-            if (stateListener != null) {
-                stateListener.onError(e);
+            // 补发断线期间的消息
+            String message;
+            while ((message = pending.pollFirst()) != null) {
+                out.println(message);
+                if (out.checkError()) {
+                    pending.offerFirst(message);
+                    throw new IOException("补发消息失败");
+                }
             }
-            System.err.println("Socket连接失败: " + e.getMessage());
         } finally {
             lock.unlock();
         }
+        
+        // 通知连接成功
+        if (stateListener != null) {
+            stateListener.onConnected();
+        }
+        
+        log.info("Socket连接成功: {}", transport);
     }
     
-    // 发送消息
+    /**
+     * 发送消息。断线或重连期间消息进入待发送队列，重连成功后补发
+     *
+     * @return false 表示消息被丢弃：队列已满、已放弃重连或管理器已关闭
+     */
     public static boolean sendMessage(String message) {
-        if (out == null || socket == null || !socket.isConnected() || socket.isClosed()) {
-            System.err.println("Socket未连接，无法发送消息");
+        if (!isRunning.get()) {
+            return false;
+        }
+        ReconnectSupervisor current = supervisor;
+        if (current != null && current.getState() == ReconnectSupervisor.State.DISCONNECTED) {
+            log.warn("Socket已放弃重连，无法发送消息");
             return false;
         }
         
         lock.lock();
         try {
+            if (!isConnected() || (current != null && current.isReconnecting())) {
+                return enqueue(message);
+            }
             out.println(message);
-            return true;
-        } catch (Exception e) {
-            System.err.println("发送消息失败: " + e.getMessage());
-            // 发送失败时尝试重连
-            scheduleReconnect();
-            return false;
+            if (!out.checkError()) {
+                return true;
+            }
+            // PrintWriter 不抛异常，写入失败只能通过 checkError 发现
+            log.warn("发送消息失败，重连后补发");
         } finally {
             lock.unlock();
         }
+        boolean queued = enqueue(message);
+        scheduleReconnect("发送消息失败");
+        return queued;
+    }
+
+    private static boolean enqueue(String message) {
+        if (pending.offerLast(message)) {
+            return true;
+        }
+        log.warn("待发送消息已达上限{}，丢弃消息", MAX_PENDING);
+        return false;
     }
     
     // 启动消息监听
@@ -109,7 +151,8 @@ public class GlobalSocketManager {
         Thread listenerThread = new Thread(() -> {
             while (isRunning.get()) {
                 try {
-                    if (in != null && socket != null && socket.isConnected() && !socket.isClosed()) {
+                    ReconnectSupervisor current = supervisor;
+                    if (isConnected() && !current.isReconnecting()) {
                         String message = in.readLine();
                         if (message != null) {
                             if (stateListener != null) {
@@ -117,15 +160,20 @@ public class GlobalSocketManager {
                             }
                         } else {
                             // 读到null说明连接已断开
-                            System.err.println("连接已断开，准备重连...");
-                            scheduleReconnect();
+                            log.warn("连接已断开，准备重连...");
+                            scheduleReconnect("连接被对端关闭");
                         }
-                    } else {
+                    } else if (current.isReconnecting()) {
+                        current.awaitConnected(1000);
+                    } else if (current.getState() == ReconnectSupervisor.State.DISCONNECTED) {
+                        dropPending();
                         Thread.sleep(1000);
+                    } else {
+                        scheduleReconnect("连接未建立");
                     }
                 } catch (IOException e) {
-                    System.err.println("读取消息异常: " + e.getMessage());
-                    scheduleReconnect();
+                    log.warn("读取消息异常: {}", e.getMessage());
+                    scheduleReconnect(e.getMessage());
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     break;
@@ -136,65 +184,30 @@ public class GlobalSocketManager {
         listenerThread.start();
     }
     
-    // 启动心跳检测
-    private static void startHeartbeat() {
-        Thread heartbeatThread = new Thread(() -> {
-            while (isRunning.get()) {
-                try {
-                    Thread.sleep(30000); // 30秒发送一次心跳
-                    
-                    if (!sendMessage("PING")) {
-                        System.err.println("心跳发送失败，连接可能已断开");
-                        scheduleReconnect();
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-        }, "Socket-Heartbeat");
-        heartbeatThread.setDaemon(true);
-        heartbeatThread.start();
-    }
-    
-    // 安排重连
-    private static void scheduleReconnect() {
-        if (!isRunning.get()) {
+    // 安排重连，已在重连中时不会重复开启
+    private static void scheduleReconnect(String cause) {
+        ReconnectSupervisor current = supervisor;
+        if (!isRunning.get() || current == null) {
             return;
         }
-        
-        new Thread(() -> {
-            for (int attempt = 1; attempt <= maxReconnectAttempts && isRunning.get(); attempt++) {
-                try {
-                    System.out.println("尝试重连 (" + attempt + "/" + maxReconnectAttempts + ")...");
-                    
-                    if (stateListener != null) {
-                        stateListener.onDisconnected();
-                    }
-                    
-                    connect();
-                    
-                    if (isConnected()) {
-                        System.out.println("重连成功");
-                        break;
-                    }
-                    
-                    Thread.sleep(reconnectInterval);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-        }, "Socket-Reconnector").start();
+        if (current.requestReconnect(cause) && stateListener != null) {
+            stateListener.onDisconnected();
+        }
+    }
+
+    // 放弃重连或关闭后，队列中的消息不会再有机会发出，直接丢弃
+    private static void dropPending() {
+        int dropped = pending.size();
+        if (dropped > 0) {
+            pending.clear();
+            log.warn("Socket连接不可用，丢弃{}条待发送消息", dropped);
+        }
     }
     
     // 检查连接状态
     public static boolean isConnected() {
-        return socket != null && 
-               socket.isConnected() && 
-               !socket.isClosed() && 
-               !socket.isInputShutdown() && 
-               !socket.isOutputShutdown();
+        GameConnection current = socket;
+        return current != null && current.isOpen();
     }
     
     // 关闭资源
@@ -204,23 +217,28 @@ public class GlobalSocketManager {
             if (in != null) in.close();
             if (socket != null) socket.close();
         } catch (IOException e) {
-            System.err.println("关闭资源时出错: " + e.getMessage());
+            log.warn("关闭资源时出错: {}", e.getMessage());
         }
     }
     
     // 关闭Socket管理器
     public static void shutdown() {
         isRunning.set(false);
+        ReconnectSupervisor current = supervisor;
+        if (current != null) {
+            current.stop();
+        }
         closeResources();
-        System.out.println("Socket管理器已关闭");
+        dropPending();
+        log.info("Socket管理器已关闭");
     }
     
     // 配置方法
     public static void setReconnectInterval(long interval) {
-        reconnectInterval = interval;
+        reconnectConfig.setInitialDelay(Duration.ofMillis(interval));
     }
     
     public static void setMaxReconnectAttempts(int maxAttempts) {
-        maxReconnectAttempts = maxAttempts;
+        reconnectConfig.setMaxAttempts(maxAttempts);
     }
-}
\ No newline at end of file
+}
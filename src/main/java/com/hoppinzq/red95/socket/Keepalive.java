@@ -0,0 +1,172 @@
+package com.hoppinzq.red95.socket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 游戏连接保活。游戏协议每个连接只处理一个请求，没有可以挂心跳的长连接，
+ * 因此存活以最近一次收到响应为准：任何请求收到响应都刷新 lastSeen。
+ * 往返时间(RTT)由调用方用 ping、query_wait_info 等小控制命令的耗时持续喂给 {@link #onRtt}，
+ * 只有空闲超过 idleInterval 时才补发一次 ping 兜底。
+ * <ul>
+ *     <li>所有游戏共用一个计时线程，ping 在工作线程上执行，每个游戏同一时刻最多一个；
+ *     调用方把 pingTimeout 作为这次 ping 的读超时，某个游戏不响应不会拖住其他游戏的保活</li>
+ *     <li>繁忙的游戏不会收到额外的 ping</li>
+ *     <li>熔断期间不发 ping，由 {@link ReconnectSupervisor} 负责探测</li>
+ *     <li>RTT、存活和 lastSeen 只读内存，is_game_run 等调用不产生 I/O</li>
+ * </ul>
+ */
+@Slf4j
+public class Keepalive {
+    // 只负责计时，不执行阻塞操作
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Game-Keepalive");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 执行 ping，每个游戏同一时刻最多占用一个线程，空闲线程一分钟后回收
+    private static final ExecutorService PINGS = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Game-Keepalive-Ping-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private static final double RTT_SMOOTHING = 0.2;  // RTT 指数移动平均中新样本的权重
+
+    /**
+     * 发送一次 ping，最多阻塞 pingTimeout，抛出异常表示失败
+     */
+    @FunctionalInterface
+    public interface Pinger {
+        void ping() throws Exception;
+    }
+
+    private final String name;
+    private final KeepaliveConfig config;
+    private final BooleanSupplier active;
+    private final Pinger pinger;
+    private final AtomicBoolean pinging = new AtomicBoolean();
+    private volatile ScheduledFuture<?> task;
+    private volatile long lastSeenAt;
+    private volatile long lastRttNanos;
+    private volatile long smoothedRttNanos;
+    private volatile long lastRttAt;
+    private volatile long pings;
+
+    /**
+     * @param name   日志中的名称
+     * @param config 保活配置
+     * @param active 当前是否需要保活，如熔断关闭且连接池已初始化
+     * @param pinger 发送 ping
+     */
+    public Keepalive(String name, KeepaliveConfig config, BooleanSupplier active, Pinger pinger) {
+        this.name = name;
+        this.config = config;
+        this.active = active;
+        this.pinger = pinger;
+    }
+
+    public synchronized void start() {
+        if (task != null || !config.isEnabled()) {
+            return;
+        }
+        long period = Math.max(100, config.getIdleInterval().toMillis() / 2);
+        task = SCHEDULER.scheduleWithFixedDelay(this::tick, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    private void tick() {
+        if (idleMillis() < config.getIdleInterval().toMillis() || !active.getAsBoolean()
+                || !pinging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            PINGS.execute(this::ping);
+        } catch (RejectedExecutionException e) {
+            pinging.set(false);
+        }
+    }
+
+    // 在工作线程上执行，RTT 由调用方在收到响应时记录
+    private void ping() {
+        try {
+            pinger.ping();
+            pings++;
+        } catch (Exception e) {
+            log.debug("{}保活 ping 失败: {}", name, e.getMessage());
+        } finally {
+            pinging.set(false);
+        }
+    }
+
+    private long idleMillis() {
+        return lastSeenAt == 0 ? Long.MAX_VALUE : System.currentTimeMillis() - lastSeenAt;
+    }
+
+    /**
+     * 收到游戏的任意响应(包括业务错误)时调用
+     */
+    public void onResponse() {
+        lastSeenAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 记录一次往返时间样本
+     */
+    public void onRtt(long nanos) {
+        lastRttNanos = nanos;
+        long smoothed = smoothedRttNanos;
+        smoothedRttNanos = smoothed == 0 ? nanos : (long) (smoothed + RTT_SMOOTHING * (nanos - smoothed));
+        lastRttAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @return 最近 staleAfter 内是否收到过游戏的响应
+     */
+    public boolean isAlive() {
+        return idleMillis() <= config.getStaleAfter().toMillis();
+    }
+
+    /**
+     * @return 平滑后的 RTT 毫秒数，还没有测量过时为 -1
+     */
+    public double getRttMillis() {
+        long smoothed = smoothedRttNanos;
+        return smoothed == 0 ? -1 : smoothed / 1_000_000.0;
+    }
+
+    /**
+     * @return 距离最近一次收到响应的毫秒数，从未收到过时为 -1
+     */
+    public long getLastSeenAgoMillis() {
+        return lastSeenAt == 0 ? -1 : System.currentTimeMillis() - lastSeenAt;
+    }
+
+    public Map<String, Object> snapshot() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("alive", isAlive());
+        result.put("lastSeenAgoMillis", lastSeenAt == 0 ? null : now - lastSeenAt);
+        result.put("rttMillis", smoothedRttNanos == 0 ? null : Math.round(smoothedRttNanos / 1000.0) / 1000.0);
+        result.put("lastRttMillis", lastRttNanos == 0 ? null : Math.round(lastRttNanos / 1000.0) / 1000.0);
+        result.put("rttAgeMillis", lastRttAt == 0 ? null : now - lastRttAt);
+        result.put("keepalivePings", pings);
+        return result;
+    }
+}
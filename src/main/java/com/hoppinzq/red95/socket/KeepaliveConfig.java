@@ -0,0 +1,16 @@
+package com.hoppinzq.red95.socket;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * 保活配置，对应 application.yml 中的 red95.keepalive 节点，每个游戏实例使用同一份配置
+ */
+@Data
+public class KeepaliveConfig {
+    private boolean enabled = true;  // 关闭后不再发送 ping，lastSeen 仍由正常请求刷新
+    private Duration idleInterval = Duration.ofSeconds(10);  // 超过该时间没有收到任何响应时补发一次 ping
+    private Duration staleAfter = Duration.ofSeconds(30);  // 超过该时间没有收到任何响应时认为游戏不再存活
+    private Duration pingTimeout = Duration.ofSeconds(2);  // 保活 ping 的读超时，超时记为一次连接失败
+}
@@ -0,0 +1,18 @@
+package com.hoppinzq.red95.socket;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * 重连配置，对应 application.yml 中的 red95.reconnect 节点，游戏连接池和 GlobalSocketManager 共用
+ */
+@Data
+public class ReconnectConfig {
+    private Duration initialDelay = Duration.ofMillis(200);  // 第一次重连前的等待时间
+    private Duration maxDelay = Duration.ofSeconds(30);  // 重连间隔上限
+    private double multiplier = 2.0;  // 每次失败后间隔的增长倍数
+    private double jitter = 0.5;  // 随机缩短间隔的比例，0~1，避免多个连接同时重连
+    private int maxAttempts = 0;  // 最多重连次数，0表示一直重连直到成功或关闭
+    private Duration requeueTimeout = Duration.ofSeconds(1);  // 尚未发出的请求遇到断线时等待重连的最长时间，超时后失败
+}
@@ -0,0 +1,206 @@
+package com.hoppinzq.red95.socket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接的重连监督器。发送、读取、保活等路径发现断线时都调用 {@link #requestReconnect(String)}，
+ * 同一时刻只有一轮重连在进行，其他调用直接返回：
+ * <ul>
+ *     <li>按指数退避重试，间隔为 initialDelay * multiplier^n，不超过 maxDelay，再随机缩短 jitter 比例</li>
+ *     <li>所有监督器共用一个计时线程，到点后把重连尝试交给一个小的工作线程池执行，
+ *     某个游戏的建连卡住时不会拖住其他游戏的重连</li>
+ *     <li>等待中的请求通过 {@link #awaitConnected(long)} 挂起，重连成功后继续，超时、放弃或停止时返回 false</li>
+ * </ul>
+ */
+@Slf4j
+public class ReconnectSupervisor {
+    private static final int PROBE_THREADS = 4;  // 同时进行的重连尝试上限，每个监督器同一时刻最多一个
+    // 只负责计时，不执行阻塞操作
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Reconnect-Supervisor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 执行建连和探测，线程按需创建
+    private static final ExecutorService PROBES = Executors.newFixedThreadPool(PROBE_THREADS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Reconnect-Probe-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public enum State {
+        CONNECTED,  // 没有进行中的重连
+        RECONNECTING,
+        DISCONNECTED  // 达到最大次数后放弃，或已停止；再次 requestReconnect 时重新开始
+    }
+
+    /**
+     * 建立连接，抛出异常表示本次失败
+     */
+    @FunctionalInterface
+    public interface Connector {
+        void connect() throws Exception;
+    }
+
+    private final String name;
+    private final ReconnectConfig config;
+    private final Connector connector;
+    private final AtomicInteger attempts = new AtomicInteger();
+    private volatile State state = State.CONNECTED;
+    private volatile CompletableFuture<Boolean> round = CompletableFuture.completedFuture(true);
+    private volatile ScheduledFuture<?> next;
+    private volatile long nextAttemptAt;
+    private volatile long lastConnectedAt;
+    private volatile String lastError;
+
+    public ReconnectSupervisor(String name, ReconnectConfig config, Connector connector) {
+        this.name = name;
+        this.config = config;
+        this.connector = connector;
+    }
+
+    /**
+     * 请求重连，已在重连中时什么也不做
+     *
+     * @param cause 断线原因
+     * @return 本次调用是否开启了新一轮重连
+     */
+    public boolean requestReconnect(String cause) {
+        if (state == State.RECONNECTING) {
+            return false;
+        }
+        synchronized (this) {
+            if (state == State.RECONNECTING) {
+                return false;
+            }
+            state = State.RECONNECTING;
+            round = new CompletableFuture<>();
+            attempts.set(0);
+            lastError = cause;
+            log.info("{}连接断开，开始重连: {}", name, cause);
+            schedule();
+            return true;
+        }
+    }
+
+    private void schedule() {
+        long delay = delayMillis(attempts.get());
+        nextAttemptAt = System.currentTimeMillis() + delay;
+        try {
+            next = SCHEDULER.schedule(() -> PROBES.execute(this::attempt), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            finish(State.DISCONNECTED, false);
+        }
+    }
+
+    long delayMillis(int attempt) {
+        double base = config.getInitialDelay().toMillis() * Math.pow(config.getMultiplier(), attempt);
+        double capped = Math.min(base, config.getMaxDelay().toMillis());
+        double jitter = Math.min(1, Math.max(0, config.getJitter()));
+        return (long) (capped * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    private void attempt() {
+        if (state != State.RECONNECTING) {
+            return;
+        }
+        int attempt = attempts.incrementAndGet();
+        try {
+            connector.connect();
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            synchronized (this) {
+                if (state != State.RECONNECTING) {
+                    return;
+                }
+                if (config.getMaxAttempts() > 0 && attempt >= config.getMaxAttempts()) {
+                    log.warn("{}重连{}次失败，放弃: {}", name, attempt, lastError);
+                    finish(State.DISCONNECTED, false);
+                } else {
+                    log.debug("{}第{}次重连失败: {}", name, attempt, lastError);
+                    schedule();
+                }
+            }
+            return;
+        }
+        synchronized (this) {
+            if (state == State.RECONNECTING) {
+                lastConnectedAt = System.currentTimeMillis();
+                log.info("{}第{}次重连成功", name, attempt);
+                finish(State.CONNECTED, true);
+            }
+        }
+    }
+
+    private synchronized void finish(State state, boolean connected) {
+        this.state = state;
+        nextAttemptAt = 0;
+        round.complete(connected);
+    }
+
+    /**
+     * 等待进行中的重连完成，没有重连时立即返回 true
+     *
+     * @param timeoutMillis 最长等待时间
+     * @return 是否已重连；超时、放弃或停止时为 false
+     */
+    public boolean awaitConnected(long timeoutMillis) throws InterruptedException {
+        CompletableFuture<Boolean> current = round;
+        try {
+            return current.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 停止进行中的重连，等待者立即得到 false
+     */
+    public synchronized void stop() {
+        ScheduledFuture<?> scheduled = next;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        if (state == State.RECONNECTING) {
+            finish(State.DISCONNECTED, false);
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isReconnecting() {
+        return state == State.RECONNECTING;
+    }
+
+    /**
+     * @return 距离下次重连的毫秒数，不在重连中时为0
+     */
+    public long nextAttemptInMillis() {
+        long at = nextAttemptAt;
+        return at == 0 ? 0 : Math.max(0, at - System.currentTimeMillis());
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("state", state.name());
+        result.put("attempts", attempts.get());
+        result.put("nextAttemptInMillis", nextAttemptInMillis());
+        result.put("lastError", lastError);
+        result.put("lastConnectedAgoMillis", lastConnectedAt == 0 ? null : System.currentTimeMillis() - lastConnectedAt);
+        return result;
+    }
+}
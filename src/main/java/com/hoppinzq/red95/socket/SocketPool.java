@@ -1,81 +1,249 @@
 package com.hoppinzq.red95.socket;
 
+import lombok.extern.slf4j.Slf4j;
+
 import java.io.IOException;
-import java.net.Socket;
+import java.net.SocketException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * 游戏连接池。游戏协议每个连接只处理一个请求(响应后对端关闭)，
+ * 因此池子的作用是提前建好连接省掉建连耗时，并限制同时打开的连接数：
+ * <ul>
+ *     <li>按需创建，后台把空闲连接补齐到 minIdle，构造时不做任何 I/O</li>
+ *     <li>借出数量不超过 maxTotal，超出时最多等待 borrowTimeout，超时抛出 {@link PoolExhaustedException}</li>
+ *     <li>借出前检查连接是否已被对端关闭，刚归还/刚建立的连接在 validationBypass 内跳过检查</li>
+ *     <li>空闲超过 maxIdleTime 的连接被回收，借出超过 leakDetectionThreshold 未归还的连接记录告警</li>
+ * </ul>
+ * 连接经由 {@link Transport} 建立，可以是 TCP 或 Unix 域套接字。
+ */
+@Slf4j
 public class SocketPool {
-    private static final int MAX_POOL_SIZE = 10;
-    private final BlockingQueue<Socket> pool = new LinkedBlockingQueue<>(MAX_POOL_SIZE);
-    private final String host;
-    private final int port;
-    private ScheduledExecutorService heartbeatExecutor;
+    private final Transport transport;
+    private final SocketPoolConfig config;
+    private final Semaphore permits;  // 借出名额
+    private final Deque<IdleSocket> idle = new ConcurrentLinkedDeque<>();  // 最近归还的在前
+    private final Map<GameConnection, Borrow> borrowed = new ConcurrentHashMap<>();
+    private final AtomicInteger openCount = new AtomicInteger();  // 已打开且未关闭的连接数
+    private final AtomicBoolean filling = new AtomicBoolean();
+    private final ScheduledExecutorService maintenance;
+    private volatile boolean closed;
 
-    public SocketPool(String host, int port) {
-        this.host = host;
-        this.port = port;
-        initializePool();
-    }
-
-    private void startHeartbeat() {
-        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor();
-        heartbeatExecutor.scheduleAtFixedRate(() -> {
-            pool.forEach(socket -> {
-                try {
-                    socket.getOutputStream().write("心跳\n".getBytes());
-                } catch (IOException ioException) {
-                    reconnect(socket);
-                }
-            });
-        }, 30, 30, TimeUnit.SECONDS); // 每30秒发送一次心跳
+    private static class IdleSocket {
+        final GameConnection socket;
+        final long since;
+
+        IdleSocket(GameConnection socket, long since) {
+            this.socket = socket;
+            this.since = since;
+        }
     }
 
-    private void initializePool() {
-        for (int i = 0; i < MAX_POOL_SIZE; i++) {
-            pool.add(createNewSocket());
+    private static class Borrow {
+        final long at = System.currentTimeMillis();
+        final String thread = Thread.currentThread().getName();
+        final Exception stack;  // 借出位置，仅开启泄漏检测时记录
+        volatile boolean reported;
+
+        Borrow(boolean captureStack) {
+            this.stack = captureStack ? new Exception("借出位置") : null;
         }
     }
 
-    private Socket createNewSocket() {
+    /**
+     * 借连接超时，连接池已满
+     */
+    public static class PoolExhaustedException extends IOException {
+        public PoolExhaustedException(String message) {
+            super(message);
+        }
+    }
+
+    public SocketPool(String host, int port) {
+        this(host, port, new SocketPoolConfig());
+    }
+
+    public SocketPool(String host, int port, SocketPoolConfig config) {
+        this(Transport.tcp(host, port), config);
+    }
+
+    public SocketPool(Transport transport, SocketPoolConfig config) {
+        this.transport = transport;
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxTotal(), true);
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Socket-Pool-" + transport);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getMaintenanceInterval().toMillis();
+        maintenance.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+        scheduleFill();
+    }
+
+    /**
+     * 借一个连接，用完后必须调用 {@link #returnSocket(GameConnection)}
+     *
+     * @throws PoolExhaustedException 等待 borrowTimeout 后仍没有名额
+     * @throws IOException            建立新连接失败(ConnectException/SocketTimeoutException)
+     */
+    public GameConnection borrowSocket() throws IOException, InterruptedException {
+        if (closed) {
+            throw new SocketException("连接池已关闭");
+        }
+        if (!permits.tryAcquire(config.getBorrowTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new PoolExhaustedException("等待" + config.getBorrowTimeout().toMillis() + "ms后仍无可用连接，已借出"
+                    + borrowed.size() + "个");
+        }
         try {
-            Socket socket= new Socket(host, port);
-            socket.setKeepAlive(true);    // 启用Keep-Alive
-            socket.setSoTimeout(10000);
+            GameConnection socket = takeIdle();
+            if (socket == null) {
+                socket = createNewSocket();
+            }
+            borrowed.put(socket, new Borrow(!config.getLeakDetectionThreshold().isZero()));
+            scheduleFill();
             return socket;
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to create socket", e);
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
         }
     }
 
-    public Socket borrowSocket() throws InterruptedException {
-        if(pool.size()==0){
-            initializePool();
+    /**
+     * 归还连接；已关闭的连接(请求结束时随输入输出流一起关闭)直接丢弃
+     */
+    public void returnSocket(GameConnection socket) {
+        if (socket == null || borrowed.remove(socket) == null) {
+            return;  // 不是本池借出的连接或重复归还
+        }
+        permits.release();
+        if (closed || !socket.isOpen()) {
+            discard(socket);
+        } else {
+            idle.addFirst(new IdleSocket(socket, System.currentTimeMillis()));
         }
-        return pool.take();
     }
 
-    public void returnSocket(Socket socket) {
-        if (socket != null && !socket.isClosed()) {
-            pool.offer(socket);
+    private GameConnection takeIdle() {
+        IdleSocket candidate;
+        long now = System.currentTimeMillis();
+        while ((candidate = idle.pollFirst()) != null) {
+            long idleMillis = now - candidate.since;
+            if (idleMillis > config.getMaxIdleTime().toMillis()) {
+                discard(candidate.socket);
+                continue;
+            }
+            if (config.isValidateOnBorrow() && idleMillis > config.getValidationBypass().toMillis()
+                    && !candidate.socket.isAlive()) {
+                discard(candidate.socket);
+                continue;
+            }
+            return candidate.socket;
         }
+        return null;
     }
 
-    private void reconnect(Socket socket) {
-        close(socket);
-        createNewSocket();
+    private GameConnection createNewSocket() throws IOException {
+        GameConnection socket = transport.connect((int) config.getConnectTimeout().toMillis(),
+                (int) config.getReadTimeout().toMillis());
+        openCount.incrementAndGet();
+        return socket;
+    }
+
+    private void scheduleFill() {
+        if (!closed && idle.size() < config.getMinIdle() && filling.compareAndSet(false, true)) {
+            try {
+                maintenance.execute(this::fill);
+            } catch (RejectedExecutionException e) {
+                filling.set(false);
+            }
+        }
     }
 
-    public void close(Socket socket) {
+    // 把空闲连接补齐到 minIdle，游戏未启动时静默放弃，等下个周期再试
+    private void fill() {
         try {
-            socket.close();
-        } catch (IOException ignored) {
+            while (!closed && idle.size() < config.getMinIdle() && openCount.get() < config.getMaxTotal()) {
+                idle.addLast(new IdleSocket(createNewSocket(), System.currentTimeMillis()));
+            }
+        } catch (IOException e) {
+            log.debug("预建连接{}失败: {}", transport, e.getMessage());
+        } finally {
+            filling.set(false);
+        }
+    }
+
+    void maintain() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Iterator<IdleSocket> it = idle.iterator(); it.hasNext(); ) {
+                IdleSocket candidate = it.next();
+                if (now - candidate.since > config.getMaxIdleTime().toMillis() && idle.remove(candidate)) {
+                    discard(candidate.socket);
+                }
+            }
+
+            long leakMillis = config.getLeakDetectionThreshold().toMillis();
+            if (leakMillis > 0) {
+                for (Borrow borrow : borrowed.values()) {
+                    if (!borrow.reported && now - borrow.at > leakMillis) {
+                        borrow.reported = true;
+                        log.warn("连接{}被线程{}借出{}ms未归还，可能存在连接泄漏", transport, borrow.thread,
+                                now - borrow.at, borrow.stack);
+                    }
+                }
+            }
+
+            if (filling.compareAndSet(false, true)) {
+                fill();
+            }
+        } catch (Exception e) {
+            log.warn("连接池维护异常", e);
+        }
+    }
+
+    private void discard(GameConnection socket) {
+        close(socket);
+        openCount.decrementAndGet();
+    }
+
+    public void close(GameConnection socket) {
+        socket.close();
+    }
+
+    /**
+     * 关闭全部空闲连接，断线后调用，避免重连后借到断线前建立的连接
+     */
+    public void evictIdle() {
+        IdleSocket candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            discard(candidate.socket);
         }
     }
 
+    public int getOpenCount() {
+        return openCount.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getBorrowedCount() {
+        return borrowed.size();
+    }
+
+    /**
+     * 关闭连接池：停止后台任务并关闭空闲连接，借出中的连接在归还时关闭
+     */
     public void closeAll() {
-        pool.forEach(socket -> {
-            close(socket);
-        });
-        pool.clear();
+        closed = true;
+        maintenance.shutdownNow();
+        evictIdle();
     }
 }
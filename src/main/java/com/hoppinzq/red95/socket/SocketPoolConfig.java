@@ -0,0 +1,22 @@
+package com.hoppinzq.red95.socket;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * 连接池配置，对应 application.yml 中的 red95.pool 节点，每个游戏实例的连接池使用同一份配置
+ */
+@Data
+public class SocketPoolConfig {
+    private int minIdle = 2;  // 预先建好的空闲连接数，借出后在后台补齐
+    private int maxTotal = 10;  // 最大连接数(空闲+借出)，超出时借连接需要等待
+    private Duration borrowTimeout = Duration.ofSeconds(3);  // 借连接的最长等待时间
+    private Duration connectTimeout = Duration.ofSeconds(2);  // 建立连接的超时时间
+    private Duration readTimeout = Duration.ofSeconds(10);  // 读取响应的超时时间
+    private Duration maxIdleTime = Duration.ofSeconds(30);  // 空闲超过该时间的连接被回收
+    private boolean validateOnBorrow = true;  // 借出前检查连接是否已被对端关闭
+    private Duration validationBypass = Duration.ofMillis(500);  // 空闲不超过该时间的连接借出时跳过检查
+    private Duration leakDetectionThreshold = Duration.ofSeconds(60);  // 借出超过该时间未归还时记录告警，0表示关闭
+    private Duration maintenanceInterval = Duration.ofSeconds(5);  // 后台回收、补齐和泄漏检查的周期
+}
@@ -1,5 +1,6 @@
 package com.hoppinzq.red95.socket;
 
+import com.hoppinzq.red95.config.Red95Properties;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
@@ -16,9 +17,14 @@ public class SocketService {
     @Resource
     private ApplicationContext applicationContext;
 
+    @Resource
+    private Red95Properties properties;
+
     @PostConstruct
     public void init() {
-        GlobalSocketManager.initialize("localhost", 7445, new GlobalSocketManager.SocketStateListener() {
+        Red95Properties.GameEndpoint endpoint = properties.getGames().get(Red95Properties.DEFAULT_GAME_ID);
+        Transport transport = Transport.of(endpoint.getHost(), endpoint.getPort(), endpoint.getUnixSocket());
+        GlobalSocketManager.initialize(transport, new GlobalSocketManager.SocketStateListener() {
             @Override
             public void onConnected() {
                 log.info("Socket连接成功");
@@ -43,7 +49,7 @@ public class SocketService {
                 // 处理业务逻辑
                 processMessage(message);
             }
-        });
+        }, properties.getReconnect());
     }
     
     @PreDestroy
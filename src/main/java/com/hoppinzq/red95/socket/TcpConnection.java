@@ -0,0 +1,67 @@
+package com.hoppinzq.red95.socket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+class TcpConnection implements GameConnection {
+    private final Socket socket;
+
+    TcpConnection(Socket socket) {
+        this.socket = socket;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return socket.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return socket.getOutputStream();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !socket.isClosed() && !socket.isInputShutdown() && !socket.isOutputShutdown();
+    }
+
+    // 对端关闭的连接读到 EOF；存活的连接没有数据可读，短超时后返回
+    @Override
+    public boolean isAlive() {
+        if (!isOpen()) {
+            return false;
+        }
+        int timeout = 0;
+        try {
+            timeout = socket.getSoTimeout();
+            socket.setSoTimeout(1);
+            socket.getInputStream().read();
+            return false;  // EOF 或游戏主动发来的数据，都不能再用于新请求
+        } catch (SocketTimeoutException e) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                socket.setSoTimeout(timeout);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Override
+    public void setReadTimeout(int millis) throws IOException {
+        socket.setSoTimeout(millis);
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.hoppinzq.red95.socket;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+
+/**
+ * 建立到游戏的连接。游戏和 MCP 服务在同一台机器上时可以用 Unix 域套接字，省掉 TCP 回环的协议栈开销，
+ * 每个请求一个连接也不再消耗临时端口
+ */
+public interface Transport {
+
+    /**
+     * @param connectTimeoutMillis 建立连接的超时时间
+     * @param readTimeoutMillis    每次读取的超时时间，0表示不超时
+     */
+    GameConnection connect(int connectTimeoutMillis, int readTimeoutMillis) throws IOException;
+
+    static Transport tcp(String host, int port) {
+        return new Transport() {
+            @Override
+            public GameConnection connect(int connectTimeoutMillis, int readTimeoutMillis) throws IOException {
+                Socket socket = new Socket();
+                try {
+                    socket.setKeepAlive(true);
+                    socket.setTcpNoDelay(true);
+                    socket.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+                    socket.setSoTimeout(readTimeoutMillis);
+                } catch (IOException e) {
+                    try {
+                        socket.close();
+                    } catch (IOException ignored) {
+                    }
+                    throw e;
+                }
+                return new TcpConnection(socket);
+            }
+
+            @Override
+            public String toString() {
+                return host + ":" + port;
+            }
+        };
+    }
+
+    /**
+     * @param path 游戏监听的套接字文件
+     */
+    static Transport unix(Path path) {
+        return new Transport() {
+            @Override
+            public GameConnection connect(int connectTimeoutMillis, int readTimeoutMillis) throws IOException {
+                // 本机连接要么立即成功，要么立即失败(文件不存在、拒绝连接)，不需要建连超时
+                return UnixConnection.open(path, readTimeoutMillis);
+            }
+
+            @Override
+            public String toString() {
+                return "unix:" + path;
+            }
+        };
+    }
+
+    /**
+     * @param unixSocket 套接字文件，为空时使用 TCP
+     */
+    static Transport of(String host, int port, String unixSocket) {
+        return unixSocket == null || unixSocket.isBlank() ? tcp(host, port) : unix(Path.of(unixSocket));
+    }
+}
@@ -0,0 +1,146 @@
+package com.hoppinzq.red95.socket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unix 域套接字连接。阻塞模式的 SocketChannel 没有读超时，
+ * 每次读取时在共享的定时线程上登记一个超时任务，到期关闭通道让读取返回，对外表现为 SocketTimeoutException
+ */
+class UnixConnection implements GameConnection {
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "Unix-Socket-Timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        timer.setRemoveOnCancelPolicy(true);  // 绝大多数读取会在超时前完成，取消的任务不在队列里堆积
+    }
+
+    private final SocketChannel channel;
+    private volatile int readTimeoutMillis;
+    private final InputStream in;
+    private final OutputStream out;
+    private volatile boolean timedOut;
+
+    private UnixConnection(SocketChannel channel, int readTimeoutMillis) {
+        this.channel = channel;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.in = new TimedInputStream(Channels.newInputStream(channel));
+        this.out = Channels.newOutputStream(channel);
+    }
+
+    static UnixConnection open(Path path, int readTimeoutMillis) throws IOException {
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(path));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new UnixConnection(channel, readTimeoutMillis);
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen() && channel.isConnected();
+    }
+
+    // 非阻塞地读一次：0 表示没有数据、连接存活，-1 是对端已关闭，读到数据说明连接上有残留响应
+    @Override
+    public boolean isAlive() {
+        if (!isOpen()) {
+            return false;
+        }
+        try {
+            channel.configureBlocking(false);
+            try {
+                return channel.read(ByteBuffer.allocate(1)) == 0;
+            } finally {
+                channel.configureBlocking(true);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void setReadTimeout(int millis) {
+        readTimeoutMillis = millis;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void expire() {
+        timedOut = true;
+        close();
+    }
+
+    private class TimedInputStream extends InputStream {
+        private final InputStream delegate;
+
+        TimedInputStream(InputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (readTimeoutMillis <= 0) {
+                return delegate.read(b, off, len);
+            }
+            ScheduledFuture<?> timeout = timer.schedule(UnixConnection.this::expire, readTimeoutMillis,
+                    TimeUnit.MILLISECONDS);
+            try {
+                return delegate.read(b, off, len);
+            } catch (AsynchronousCloseException e) {
+                if (timedOut) {
+                    throw new SocketTimeoutException("Read timed out");
+                }
+                throw e;
+            } finally {
+                timeout.cancel(false);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
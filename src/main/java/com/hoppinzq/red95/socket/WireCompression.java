@@ -0,0 +1,106 @@
+package com.hoppinzq.red95.socket;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 消息级 deflate 压缩。压缩后的消息是完整的 zlib 流，以 0x78 开头，与以 { 开头的 JSON 可以直接区分，
+ * 因此协议不需要额外的长度或标志字段：客户端在请求的 compression 字段里声明支持，游戏自行决定某个响应是否压缩。
+ * Inflater/Deflater 持有本地内存，创建和销毁都不便宜，这里按需创建、用完 reset 后放回池中复用。
+ */
+public final class WireCompression {
+    public static final String ALGORITHM = "deflate";
+    private static final int MAX_POOLED = 16;
+
+    private static final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+    private static final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+
+    private WireCompression() {
+    }
+
+    /**
+     * 是否是 zlib 流：压缩方法为 deflate(低4位为8)，且头两个字节按大端组成的数能被31整除
+     */
+    public static boolean isCompressed(byte[] data) {
+        if (data.length < 2) {
+            return false;
+        }
+        int cmf = data[0] & 0xFF;
+        int flg = data[1] & 0xFF;
+        return (cmf & 0x0F) == 8 && (cmf >> 4) <= 7 && ((cmf << 8) | flg) % 31 == 0;
+    }
+
+    /**
+     * @param maxSize 解压后的最大字节数
+     * @throws DataFormatException 数据不完整、格式错误或解压后超过 maxSize 时
+     */
+    public static byte[] inflate(byte[] data, int maxSize) throws DataFormatException {
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(maxSize, data.length * 4L));
+            byte[] chunk = new byte[16384];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("压缩数据不完整");
+                }
+                if (out.size() + (long) n > maxSize) {
+                    throw new DataFormatException("解压后超过" + maxSize + "字节上限");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            releaseInflater(inflater);
+        }
+    }
+
+    /**
+     * @param level 压缩级别，1最快、9压缩率最高
+     */
+    public static byte[] deflate(byte[] data, int level) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater();
+        }
+        try {
+            deflater.setLevel(level);
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] chunk = new byte[16384];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            releaseDeflater(deflater);
+        }
+    }
+
+    private static void releaseInflater(Inflater inflater) {
+        inflater.reset();
+        if (inflaters.size() < MAX_POOLED) {
+            inflaters.offer(inflater);
+        } else {
+            inflater.end();
+        }
+    }
+
+    private static void releaseDeflater(Deflater deflater) {
+        deflater.reset();
+        if (deflaters.size() < MAX_POOLED) {
+            deflaters.offer(deflater);
+        } else {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.hoppinzq.red95.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一个追踪片段，字段与 Zipkin v2 JSON 对应：时间戳和耗时为微秒。
+ * 通过 {@link Tracer} 创建，try-with-resources 结束时自动上报并恢复父片段为当前片段。
+ */
+public class Span implements AutoCloseable {
+    // 未开启追踪或没有父片段时使用，所有操作都是空操作
+    static final Span NOOP = new Span(null, null, null, null, null);
+
+    private final Tracer tracer;
+    private final String traceId;
+    private final String id;
+    private final String parentId;
+    private final String name;
+    private final long timestamp;  // 开始时间(epoch 微秒)
+    private final long startNanos;
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private Span previous;  // 开始前的当前片段，结束时恢复
+    private volatile long duration = -1;  // 耗时(微秒)，-1 表示未结束
+
+    Span(Tracer tracer, String traceId, String id, String parentId, String name) {
+        this.tracer = tracer;
+        this.traceId = traceId;
+        this.id = id;
+        this.parentId = parentId;
+        this.name = name;
+        this.timestamp = System.currentTimeMillis() * 1000;
+        this.startNanos = System.nanoTime();
+    }
+
+    public boolean isNoop() {
+        return tracer == null;
+    }
+
+    public Span tag(String key, Object value) {
+        if (tracer != null && value != null) {
+            synchronized (tags) {
+                tags.put(key, String.valueOf(value));
+            }
+        }
+        return this;
+    }
+
+    public Span error(Throwable throwable) {
+        return tag("error", throwable.getMessage() != null ? throwable.getMessage() : throwable.getClass().getSimpleName());
+    }
+
+    @Override
+    public void close() {
+        if (tracer == null || duration >= 0) {
+            return;
+        }
+        duration = Math.max(1, (System.nanoTime() - startNanos) / 1000);
+        tracer.finish(this);
+    }
+
+    void setPrevious(Span previous) {
+        this.previous = previous;
+    }
+
+    Span getPrevious() {
+        return previous;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getParentId() {
+        return parentId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public Map<String, String> getTags() {
+        synchronized (tags) {
+            return new LinkedHashMap<>(tags);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.hoppinzq.red95.tracing;
+
+import java.util.*;
+
+/**
+ * 把多条追踪按调用路径(工具;命令;...)合并成火焰图式的汇总：
+ * 每个节点记录调用次数、总耗时和自身耗时(扣除子片段)，
+ * 同时输出 folded 格式(路径 自身耗时微秒)，可直接交给 flamegraph.pl 或 speedscope 渲染。
+ */
+public class TraceSummary {
+    private final Node root = new Node("all");
+    private int traceCount;
+
+    private static class Node {
+        final String name;
+        final Map<String, Node> children = new LinkedHashMap<>();
+        long count;
+        long total;  // 微秒
+        long self;
+
+        Node(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * @param traces 追踪列表，见 {@link Tracer#recentTraces()}
+     * @param tool   只汇总该工具的追踪，为空时汇总全部
+     */
+    public static TraceSummary of(List<List<Span>> traces, String tool) {
+        TraceSummary summary = new TraceSummary();
+        for (List<Span> trace : traces) {
+            Span rootSpan = null;
+            Map<String, List<Span>> byParent = new HashMap<>();
+            for (Span span : trace) {
+                if (span.getParentId() == null) {
+                    rootSpan = span;
+                } else {
+                    byParent.computeIfAbsent(span.getParentId(), id -> new ArrayList<>()).add(span);
+                }
+            }
+            if (rootSpan == null || tool != null && !tool.isBlank() && !tool.equals(rootSpan.getName())) {
+                continue;
+            }
+            summary.traceCount++;
+            summary.root.count++;
+            summary.root.total += rootSpan.getDuration();
+            summary.add(summary.root, rootSpan, byParent);
+        }
+        return summary;
+    }
+
+    private void add(Node parent, Span span, Map<String, List<Span>> byParent) {
+        Node node = parent.children.computeIfAbsent(span.getName(), Node::new);
+        node.count++;
+        node.total += span.getDuration();
+        long childTotal = 0;
+        for (Span child : byParent.getOrDefault(span.getId(), List.of())) {
+            childTotal += child.getDuration();
+            add(node, child, byParent);
+        }
+        node.self += Math.max(0, span.getDuration() - childTotal);
+    }
+
+    public int getTraceCount() {
+        return traceCount;
+    }
+
+    /**
+     * 缩进的调用树，按总耗时从大到小排列，形如
+     * "  query_wait_info  x38  total 4120.5ms (62.3%)  self 4120.5ms"
+     */
+    public List<String> tree() {
+        List<String> lines = new ArrayList<>();
+        for (Node child : sorted(root)) {
+            tree(child, 0, lines);
+        }
+        return lines;
+    }
+
+    private void tree(Node node, int depth, List<String> lines) {
+        double percent = root.total == 0 ? 0 : node.total * 100.0 / root.total;
+        lines.add(String.format("%s%s  x%d  total %.1fms (%.1f%%)  self %.1fms",
+                "  ".repeat(depth), node.name, node.count, node.total / 1000.0, percent, node.self / 1000.0));
+        for (Node child : sorted(node)) {
+            tree(child, depth + 1, lines);
+        }
+    }
+
+    /**
+     * folded 格式：每行 "路径;分号;分隔 自身耗时(微秒)"
+     */
+    public List<String> folded() {
+        List<String> lines = new ArrayList<>();
+        for (Node child : sorted(root)) {
+            folded(child, child.name, lines);
+        }
+        return lines;
+    }
+
+    private void folded(Node node, String path, List<String> lines) {
+        if (node.self > 0) {
+            lines.add(path + " " + node.self);
+        }
+        for (Node child : sorted(node)) {
+            folded(child, path + ";" + child.name, lines);
+        }
+    }
+
+    private static List<Node> sorted(Node node) {
+        List<Node> children = new ArrayList<>(node.children.values());
+        children.sort(Comparator.comparingLong((Node n) -> n.total).reversed());
+        return children;
+    }
+}
@@ -0,0 +1,148 @@
+package com.hoppinzq.red95.tracing;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 进程内的轻量追踪器。每次 @Tool 调用开启一条追踪(根片段)，
+ * 工具线程上触发的 sendRequest、轮询和等待作为子片段挂在当前片段下；
+ * 根片段结束时整条追踪交给导出器，并保留最近若干条供 trace_summary 汇总。
+ * 后台线程(生产调度、队列监视)上没有当前片段，startSpan 返回空片段，不产生追踪。
+ */
+public class Tracer {
+    private static final Tracer INSTANCE = new Tracer();
+
+    private final ThreadLocal<Span> current = new ThreadLocal<>();
+    private final Map<String, List<Span>> pending = new ConcurrentHashMap<>();  // 追踪ID -> 已结束的子片段
+    private final Map<String, AtomicInteger> dropped = new ConcurrentHashMap<>();  // 追踪ID -> 超出上限被丢弃的片段数
+    private final Deque<List<Span>> recent = new ConcurrentLinkedDeque<>();
+    private volatile boolean enabled = true;
+    private volatile Consumer<List<Span>> exporter;
+    private volatile int maxTraces = 100;
+    private volatile int maxSpansPerTrace = 2000;
+
+    public static Tracer get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param enabled          是否开启追踪
+     * @param exporter         追踪导出器，可以为 null
+     * @param maxTraces        内存中保留的最近追踪数
+     * @param maxSpansPerTrace 单条追踪最多记录的片段数，长时间轮询时超出部分丢弃
+     */
+    public void configure(boolean enabled, Consumer<List<Span>> exporter, int maxTraces, int maxSpansPerTrace) {
+        this.enabled = enabled;
+        this.exporter = exporter;
+        this.maxTraces = maxTraces;
+        this.maxSpansPerTrace = maxSpansPerTrace;
+    }
+
+    /**
+     * 停止导出，导出器实现了 AutoCloseable 时关闭它(写完队列中的追踪)
+     */
+    public void shutdown() throws Exception {
+        Consumer<List<Span>> exporter = this.exporter;
+        this.exporter = null;
+        if (exporter instanceof AutoCloseable) {
+            ((AutoCloseable) exporter).close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 开启一条新追踪；当前线程已有片段时作为其子片段
+     */
+    public Span startTrace(String name) {
+        if (!enabled) {
+            return Span.NOOP;
+        }
+        Span parent = current.get();
+        Span span = parent != null
+                ? new Span(this, parent.getTraceId(), newId(), parent.getId(), name)
+                : new Span(this, newId() + newId(), newId(), null, name);
+        span.setPrevious(parent);
+        current.set(span);
+        return span;
+    }
+
+    /**
+     * 在当前片段下开启子片段，当前线程不在追踪中时返回空片段
+     */
+    public Span startSpan(String name) {
+        Span parent = current.get();
+        if (parent == null || !enabled) {
+            return Span.NOOP;
+        }
+        Span span = new Span(this, parent.getTraceId(), newId(), parent.getId(), name);
+        span.setPrevious(parent);
+        current.set(span);
+        return span;
+    }
+
+    /**
+     * @return 当前线程上的片段，没有时为 null
+     */
+    public Span current() {
+        return current.get();
+    }
+
+    void finish(Span span) {
+        if (current.get() == span) {
+            if (span.getPrevious() != null) {
+                current.set(span.getPrevious());
+            } else {
+                current.remove();
+            }
+        }
+        if (span.getParentId() != null) {
+            List<Span> spans = pending.computeIfAbsent(span.getTraceId(), id -> Collections.synchronizedList(new ArrayList<>()));
+            if (spans.size() < maxSpansPerTrace) {
+                spans.add(span);
+            } else {
+                dropped.computeIfAbsent(span.getTraceId(), id -> new AtomicInteger()).incrementAndGet();
+            }
+            return;
+        }
+
+        // 根片段结束，整条追踪完成
+        List<Span> trace = new ArrayList<>();
+        List<Span> children = pending.remove(span.getTraceId());
+        if (children != null) {
+            synchronized (children) {
+                trace.addAll(children);
+            }
+        }
+        AtomicInteger droppedCount = dropped.remove(span.getTraceId());
+        if (droppedCount != null) {
+            span.tag("droppedSpans", droppedCount.get());
+        }
+        trace.add(span);
+        recent.addFirst(trace);
+        while (recent.size() > maxTraces) {
+            recent.pollLast();
+        }
+        Consumer<List<Span>> exporter = this.exporter;
+        if (exporter != null) {
+            exporter.accept(trace);
+        }
+    }
+
+    /**
+     * @return 最近完成的追踪，新的在前，每条追踪中根片段在最后
+     */
+    public List<List<Span>> recentTraces() {
+        return new ArrayList<>(recent);
+    }
+
+    private static String newId() {
+        return String.format("%016x", ThreadLocalRandom.current().nextLong());
+    }
+}
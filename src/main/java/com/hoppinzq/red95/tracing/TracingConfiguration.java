@@ -0,0 +1,25 @@
+package com.hoppinzq.red95.tracing;
+
+import com.hoppinzq.red95.config.Red95Properties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+@Configuration
+public class TracingConfiguration {
+
+    // 追踪器是进程内单例(GameSocketAPI 等非 Spring 类直接使用 Tracer.get())，这里按配置初始化，容器关闭时刷盘
+    @Bean(destroyMethod = "shutdown")
+    public Tracer tracer(Red95Properties properties) {
+        Red95Properties.Tracing tracing = properties.getTracing();
+        ZipkinFileExporter exporter = null;
+        if (tracing.isEnabled() && tracing.getFile() != null && !tracing.getFile().isBlank()) {
+            exporter = new ZipkinFileExporter(Paths.get(tracing.getFile()),
+                    tracing.getMaxFileSize().toBytes(), tracing.getServiceName());
+        }
+        Tracer tracer = Tracer.get();
+        tracer.configure(tracing.isEnabled(), exporter, tracing.getMaxTraces(), tracing.getMaxSpansPerTrace());
+        return tracer;
+    }
+}
@@ -0,0 +1,60 @@
+package com.hoppinzq.red95.tracing;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.function.Supplier;
+
+/**
+ * 包装工具回调，每次 @Tool 调用开启一条追踪，工具内部的游戏命令和等待都挂在这条追踪下
+ */
+public class TracingToolCallback implements ToolCallback {
+    private static final int MAX_INPUT_LENGTH = 256;  // 记录到片段中的参数最大长度
+
+    private final ToolCallback delegate;
+    private final Tracer tracer;
+    private final String tool;
+
+    public TracingToolCallback(ToolCallback delegate, Tracer tracer) {
+        this.delegate = delegate;
+        this.tracer = tracer;
+        this.tool = delegate.getToolDefinition().name();
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return trace(toolInput, () -> delegate.call(toolInput));
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        return trace(toolInput, () -> delegate.call(toolInput, toolContext));
+    }
+
+    private String trace(String toolInput, Supplier<String> call) {
+        try (Span span = tracer.startTrace(tool)) {
+            if (toolInput != null) {
+                span.tag("tool.input", toolInput.length() > MAX_INPUT_LENGTH
+                        ? toolInput.substring(0, MAX_INPUT_LENGTH) + "..." : toolInput);
+            }
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                span.error(e);
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.hoppinzq.red95.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * 把追踪以 Zipkin v2 JSON 写入本地文件，每行是一条追踪的片段数组，
+ * 可以逐行 POST 到 Zipkin 的 /api/v2/spans，也可以直接导入 Zipkin/Jaeger UI 查看。
+ * 写文件在后台线程进行，队列满时丢弃，不阻塞工具调用；文件超过上限后滚动为 .1。
+ */
+@Slf4j
+public class ZipkinFileExporter implements Consumer<List<Span>>, AutoCloseable {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int QUEUE_CAPACITY = 1000;
+
+    private final Path file;
+    private final long maxFileSize;
+    private final String serviceName;
+    private final BlockingQueue<List<Span>> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public ZipkinFileExporter(Path file, long maxFileSize, String serviceName) {
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.serviceName = serviceName;
+        this.writer = new Thread(this::writeLoop, "Trace-Exporter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void accept(List<Span> trace) {
+        if (!queue.offer(trace)) {
+            log.debug("追踪导出队列已满，丢弃一条追踪");
+        }
+    }
+
+    private void writeLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                List<Span> trace = queue.take();
+                List<List<Span>> batch = new ArrayList<>();
+                batch.add(trace);
+                queue.drainTo(batch);
+                write(batch);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    List<List<Span>> rest = new ArrayList<>();
+                    queue.drainTo(rest);
+                    write(rest);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void write(List<List<Span>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            if (Files.exists(file) && Files.size(file) > maxFileSize) {
+                Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+            }
+            try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (List<Span> trace : batch) {
+                    out.write(objectMapper.writeValueAsBytes(toZipkin(trace)));
+                    out.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            log.warn("写入追踪文件{}失败: {}", file, e.getMessage());
+        }
+    }
+
+    private List<Map<String, Object>> toZipkin(List<Span> trace) {
+        List<Map<String, Object>> spans = new ArrayList<>(trace.size());
+        for (Span span : trace) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("traceId", span.getTraceId());
+            json.put("id", span.getId());
+            if (span.getParentId() != null) {
+                json.put("parentId", span.getParentId());
+            } else {
+                json.put("kind", "SERVER");
+            }
+            json.put("name", span.getName());
+            json.put("timestamp", span.getTimestamp());
+            json.put("duration", span.getDuration());
+            json.put("localEndpoint", Map.of("serviceName", serviceName));
+            Map<String, String> tags = span.getTags();
+            if (!tags.isEmpty()) {
+                json.put("tags", tags);
+            }
+            spans.add(json);
+        }
+        return spans;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
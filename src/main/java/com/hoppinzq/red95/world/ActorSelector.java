@@ -0,0 +1,115 @@
+package com.hoppinzq.red95.world;
+
+import java.util.*;
+
+/**
+ * 编译好的单位查询，在快照上按 类型索引 -> 阵营 -> 范围 -> 数量上限 的顺序求值，由 {@link SelectorCompiler} 生成
+ */
+public final class ActorSelector {
+    private final Set<String> types;  // 具体单位类型，null 表示不限
+    private final Set<String> literals;  // 科技树中查不到的类型名，只有快照中出现过才能确定是单位类型而不是游戏的类别
+    private final Set<String> known;  // 查询含类别时为科技树覆盖的类型，快照中出现其他类型时类别展开可能不全；不含类别时为 null
+    private final String faction;
+    private final boolean screenOnly;
+    private final int maxNum;
+
+    ActorSelector(Set<String> types, Set<String> literals, Set<String> known, String faction, boolean screenOnly,
+                  int maxNum) {
+        this.types = types;
+        this.literals = literals;
+        this.known = known;
+        this.faction = faction;
+        this.screenOnly = screenOnly;
+        this.maxNum = maxNum;
+    }
+
+    /**
+     * @return 满足条件的单位，保持快照中的顺序；有无法确定的类型名、或类别可能包含快照中科技树以外的类型时
+     * 返回 null，调用方应查询游戏
+     */
+    public List<ActorState> select(WorldSnapshot snapshot) {
+        for (String literal : literals) {
+            if (!snapshot.typeIndex().containsKey(literal)) {
+                return null;
+            }
+        }
+        if (known != null) {
+            for (String type : snapshot.typeIndex().keySet()) {
+                if (!known.contains(type)) {
+                    return null;
+                }
+            }
+        }
+        List<ActorState> actors = snapshot.actors();
+        List<ActorState> result = new ArrayList<>();
+        if (types == null) {
+            for (ActorState actor : actors) {
+                if (result.size() >= maxNum) {
+                    break;
+                }
+                if (matches(actor, snapshot)) {
+                    result.add(actor);
+                }
+            }
+            return result;
+        }
+
+        // 从类型索引取候选，按快照中的位置排序，保证和全量过滤的顺序一致
+        int count = 0;
+        List<List<Integer>> postings = new ArrayList<>();
+        for (String type : types) {
+            List<Integer> positions = snapshot.typeIndex().get(type);
+            if (positions != null) {
+                postings.add(positions);
+                count += positions.size();
+            }
+        }
+        int[] candidates = new int[count];
+        int n = 0;
+        for (List<Integer> positions : postings) {
+            for (int position : positions) {
+                candidates[n++] = position;
+            }
+        }
+        if (postings.size() > 1) {
+            Arrays.sort(candidates);
+        }
+        for (int position : candidates) {
+            if (result.size() >= maxNum) {
+                break;
+            }
+            ActorState actor = actors.get(position);
+            if (matches(actor, snapshot)) {
+                result.add(actor);
+            }
+        }
+        return result;
+    }
+
+    private boolean matches(ActorState actor, WorldSnapshot snapshot) {
+        return matchesFaction(actor, faction)
+                && (!screenOnly || snapshot.screen() != null && snapshot.screen().contains(actor.x(), actor.y()));
+    }
+
+    private static boolean matchesFaction(ActorState actor, String faction) {
+        if (faction == null || faction.isEmpty() || "任意".equals(faction)) {
+            return true;
+        }
+        if ("自己".equals(faction)) {
+            return "己方".equals(actor.faction());
+        }
+        return faction.equals(actor.faction());
+    }
+
+    @Override
+    public String toString() {
+        return "ActorSelector{" +
+                "types=" + types +
+                ", literals=" + literals +
+                ", categorized=" + (known != null) +
+                ", faction='" + faction + '\'' +
+                ", screenOnly=" + screenOnly +
+                ", maxNum=" + maxNum +
+                '}';
+    }
+}
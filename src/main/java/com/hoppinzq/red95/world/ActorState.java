@@ -0,0 +1,25 @@
+package com.hoppinzq.red95.world;
+
+import com.hoppinzq.red95.model.Actor;
+import com.hoppinzq.red95.model.Location;
+
+/**
+ * 快照中的单位，不可变。相邻两次采样中没有变化的单位共用同一个实例
+ *
+ * @param hpPercent 生命值百分比，游戏未返回时为 null
+ */
+public record ActorState(int actorId, String type, String faction, int x, int y, Integer hpPercent) {
+
+    public static ActorState of(Actor actor) {
+        Location position = actor.getPosition();
+        return new ActorState(actor.getActorId(), actor.getType(), actor.getFaction(),
+                position.getX(), position.getY(), actor.getHpPercent());
+    }
+
+    /**
+     * @return 新的 Actor 副本，调用方修改它不会影响快照
+     */
+    public Actor toActor() {
+        return new Actor(actorId, type, faction, new Location(x, y), hpPercent);
+    }
+}
@@ -0,0 +1,16 @@
+package com.hoppinzq.red95.world;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * 世界状态采样配置，对应 application.yml 中的 red95.sampler 节点，每个游戏实例使用同一份配置
+ */
+@Data
+public class SamplerConfig {
+    private boolean enabled = false;  // 开启后后台定时采样，读工具优先使用快照
+    private Duration interval = Duration.ofMillis(500);  // 采样周期
+    private Duration defaultMaxStaleness = Duration.ofSeconds(1);  // 读工具不传 maxStalenessMillis 时可接受的快照年龄
+    private Duration idlePause = Duration.ofSeconds(60);  // 会话超过该时间没有工具调用时暂停采样，避免空转占用游戏
+}
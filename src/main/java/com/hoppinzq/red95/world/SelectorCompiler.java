@@ -0,0 +1,121 @@
+package com.hoppinzq.red95.world;
+
+import com.hoppinzq.red95.model.TargetsQueryParam;
+import com.hoppinzq.red95.model.TechItem;
+import com.hoppinzq.red95.rules.TechTree;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 把 {@link TargetsQueryParam} 编译成在快照上求值的 {@link ActorSelector}，visible_units 不再每次都访问游戏。
+ * 单位类别(士兵、载具、坦克、战斗单位、建筑等)和游戏内部代码按科技树展开成具体单位类型，在快照的类型索引上查找。
+ * 科技树只列出本方阵营的单位，游戏的类别还包括敌方阵营、海军和中立建筑等类型，
+ * 因此只有快照中的类型全都在科技树里时才在本地回答类别查询，否则交给游戏，不返回残缺的结果。
+ * 本地无法回答的条件返回 null 交给游戏：已选中范围、编组、位置/方向、相对方向等约束，以及 visible=false。
+ */
+public class SelectorCompiler {
+    private static final String BUILDING = "建筑";
+    private static final String CONSTRUCTION_YARD = "建造厂";  // 不在科技树中，游戏把它算作建筑
+    private static final int MAX_CACHED = 256;
+
+    private final TechTree techTree;
+    private final Map<String, Set<String>> categories = new HashMap<>();  // 类别 -> 具体单位类型
+    private final Set<String> known = new HashSet<>();  // 类别展开能覆盖到的全部单位类型
+    private final Map<List<String>, Expansion> expanded = new ConcurrentHashMap<>();  // 类型列表 -> 展开结果
+
+    // types 为具体单位类型，literals 为科技树中查不到的类型名，categorized 表示其中有类别
+    private record Expansion(Set<String> types, Set<String> literals, boolean categorized) {
+    }
+
+    public SelectorCompiler(TechTree techTree) {
+        this.techTree = techTree;
+        for (TechItem item : techTree.getItems()) {
+            for (String category : item.getCategories()) {
+                categories.computeIfAbsent(category, key -> new HashSet<>()).add(item.getName());
+            }
+            if (item.isBuilding()) {
+                categories.computeIfAbsent(BUILDING, key -> new HashSet<>()).add(item.getName());
+            }
+        }
+        categories.computeIfAbsent(BUILDING, key -> new HashSet<>()).add(CONSTRUCTION_YARD);
+        for (TechItem item : techTree.getItems()) {
+            known.add(item.getName());
+        }
+        known.add(CONSTRUCTION_YARD);
+    }
+
+    /**
+     * @return 编译好的查询，含有本地无法求值的条件时返回 null
+     */
+    public ActorSelector compile(TargetsQueryParam param) {
+        String range = param.getRange();
+        boolean screenOnly = "screen".equals(range);
+        if (!screenOnly && range != null && !range.isEmpty() && !"all".equals(range)) {
+            return null;  // selected：选中状态不在快照中
+        }
+        if (param.getGroupId() != null && !param.getGroupId().isEmpty()
+                || param.getLocation() != null || param.getDirection() != null) {
+            return null;
+        }
+
+        int maxNum = Integer.MAX_VALUE;
+        if (param.getRestrain() != null) {
+            for (Map<String, Object> restrain : param.getRestrain()) {
+                if (restrain == null) {
+                    continue;
+                }
+                for (Map.Entry<String, Object> entry : restrain.entrySet()) {
+                    if ("visible".equals(entry.getKey()) && Boolean.TRUE.equals(entry.getValue())) {
+                        continue;  // 快照中本来就只有可见单位
+                    }
+                    if ("maxNum".equals(entry.getKey()) && entry.getValue() instanceof Number) {
+                        maxNum = Math.min(maxNum, ((Number) entry.getValue()).intValue());
+                        continue;
+                    }
+                    return null;
+                }
+            }
+        }
+
+        List<String> type = param.getType();
+        if (type == null || type.isEmpty()) {
+            return new ActorSelector(null, Collections.emptySet(), null, param.getFaction(), screenOnly, maxNum);
+        }
+        Expansion expansion = expanded.get(type);
+        if (expansion == null) {
+            expansion = expand(type);
+            if (expanded.size() >= MAX_CACHED) {
+                expanded.clear();
+            }
+            expanded.put(Collections.unmodifiableList(new ArrayList<>(type)), expansion);
+        }
+        return new ActorSelector(expansion.types(), expansion.literals(), expansion.categorized() ? known : null,
+                param.getFaction(), screenOnly, maxNum);
+    }
+
+    private Expansion expand(List<String> type) {
+        Set<String> types = new HashSet<>();
+        Set<String> literals = new HashSet<>();
+        boolean categorized = false;
+        for (String name : type) {
+            Set<String> members = categories.get(name);
+            if (members != null) {
+                types.addAll(members);
+                categorized = true;
+                continue;
+            }
+            if (name == null) {
+                continue;
+            }
+            TechItem item = techTree.find(name);  // 中文名或游戏代码，如 mcv
+            if (item != null) {
+                types.add(item.getName());
+            } else {
+                types.add(name);
+                literals.add(name);
+            }
+        }
+        return new Expansion(Set.copyOf(types), Set.copyOf(literals), categorized);
+    }
+}
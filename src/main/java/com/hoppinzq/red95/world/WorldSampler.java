@@ -0,0 +1,118 @@
+package com.hoppinzq.red95.world;
+
+import com.hoppinzq.red95.model.Actor;
+import com.hoppinzq.red95.model.PlayerBaseInfo;
+import com.hoppinzq.red95.model.ScreenInfoResult;
+import com.hoppinzq.red95.model.TargetsQueryParam;
+import com.hoppinzq.red95.service.GameSocketAPI;
+import com.hoppinzq.red95.service.ProductionQueueMonitor;
+import com.hoppinzq.red95.socket.CircuitBreaker;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * 世界状态采样器，按固定周期在后台把视野内单位、玩家资源和屏幕信息一起取回，组成一份快照。
+ * 生产队列直接取 {@link ProductionQueueMonitor} 最近一次的轮询结果，不重复查询。
+ * 读工具按调用方给出的 maxStaleness 使用快照，快照太旧或采样未开启时仍然实时查询。
+ * 快照不可变，只有采样线程写入 {@link #latest}，读方拿到引用后不需要任何锁。
+ */
+@Slf4j
+public class WorldSampler {
+    private final GameSocketAPI gameSocketAPI;
+    private final ProductionQueueMonitor queueMonitor;
+    private final SamplerConfig config;
+    private final LongSupplier lastAccess;  // 会话最近一次工具调用的时间
+    private final AtomicReference<WorldSnapshot> latest = new AtomicReference<>();
+    private ScheduledExecutorService executor;
+    private volatile boolean stopped;
+
+    public WorldSampler(GameSocketAPI gameSocketAPI, ProductionQueueMonitor queueMonitor, SamplerConfig config,
+                        LongSupplier lastAccess) {
+        this.gameSocketAPI = gameSocketAPI;
+        this.queueMonitor = queueMonitor;
+        this.config = config;
+        this.lastAccess = lastAccess;
+    }
+
+    public synchronized void start() {
+        if (executor != null || !config.isEnabled()) {
+            return;
+        }
+        stopped = false;
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "World-Sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getInterval().toMillis();
+        executor.scheduleAtFixedRate(this::sample, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        stopped = true;
+        latest.set(null);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    void sample() {
+        // 没有人读或游戏不可用时不采样
+        if (System.currentTimeMillis() - lastAccess.getAsLong() > config.getIdlePause().toMillis()
+                || !gameSocketAPI.isInitialized()
+                || gameSocketAPI.getCircuitBreaker().getState() != CircuitBreaker.State.CLOSED) {
+            return;
+        }
+        long sampledAt = System.currentTimeMillis();
+        try {
+            List<Actor> actors = gameSocketAPI.queryActor(TargetsQueryParam.builder()
+                    .type(Collections.emptyList())
+                    .faction("任意")
+                    .range("all")
+                    .restrain(Collections.singletonList(Map.of("visible", true)))
+                    .build());
+            PlayerBaseInfo baseInfo = gameSocketAPI.playerBaseInfoQuery();
+            ScreenInfoResult screen = gameSocketAPI.screenInfoQuery();
+            WorldSnapshot previous = latest.get();
+            WorldSnapshot next = WorldSnapshot.next(previous, sampledAt, actors, baseInfo, screen, queueMonitor.getQueues());
+            // 关闭后不再发布，避免正在进行的采样把快照写回去
+            if (!stopped) {
+                latest.compareAndSet(previous, next);
+            }
+        } catch (Exception e) {
+            log.debug("世界状态采样失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @param maxStalenessMillis 可接受的快照年龄，0 表示必须实时查询
+     * @return 足够新的快照，没有时为 null，调用方应实时查询
+     */
+    public WorldSnapshot fresh(long maxStalenessMillis) {
+        WorldSnapshot snapshot = latest.get();
+        if (snapshot == null || maxStalenessMillis <= 0 || snapshot.ageMillis() > maxStalenessMillis) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return 最近一次的快照，可能为 null
+     */
+    public WorldSnapshot getLatest() {
+        return latest.get();
+    }
+}
@@ -0,0 +1,217 @@
+package com.hoppinzq.red95.world;
+
+import com.hoppinzq.red95.model.Actor;
+import com.hoppinzq.red95.model.Location;
+import com.hoppinzq.red95.model.PlayerBaseInfo;
+import com.hoppinzq.red95.model.ProductionItem;
+import com.hoppinzq.red95.model.ProductionQueue;
+import com.hoppinzq.red95.model.ScreenInfoResult;
+
+import java.util.*;
+
+/**
+ * 一次采样得到的世界状态：视野内的单位、玩家资源、屏幕信息和生产队列。
+ * 整个快照不可变，由采样器通过一个原子引用整体发布，读工具拿到的总是同一次采样的完整结果，
+ * 不需要加锁，也不会阻塞采样线程。
+ * 新快照由上一份快照 {@link #next} 得到：没有变化的单位、资源、屏幕和队列直接沿用上一份的实例，
+ * 单位全都没变时连列表和两个索引一起沿用。
+ *
+ * @param version   采样序号，每次采样加一
+ * @param sampledAt 开始采样的时间，年龄按它计算，偏保守
+ * @param typeIndex 单位类型 -> 该类型的单位在 actors 中的下标(升序)，供 {@link ActorSelector} 查找
+ * @param queues    生产队列，队列类型 -> 队列，来自队列监视器的轮询结果，复制为不可变的记录
+ */
+public record WorldSnapshot(long version, long sampledAt, List<ActorState> actors, Map<Integer, ActorState> actorsById,
+                            Map<String, List<Integer>> typeIndex, Economy economy, Screen screen,
+                            Map<String, Queue> queues) {
+
+    /**
+     * 玩家资源，对应 {@link PlayerBaseInfo}
+     */
+    public record Economy(int cash, int resources, int power, int powerDrained, int powerProvided) {
+        static Economy of(PlayerBaseInfo info) {
+            return new Economy(info.getCash(), info.getResources(), info.getPower(), info.getPowerDrained(),
+                    info.getPowerProvided());
+        }
+
+        PlayerBaseInfo toBaseInfo() {
+            return new PlayerBaseInfo(cash, resources, power, powerDrained, powerProvided);
+        }
+    }
+
+    /**
+     * 屏幕范围(包含两端)和鼠标位置，对应 {@link ScreenInfoResult}
+     *
+     * @param mouseX 鼠标位置，游戏未返回时为 null
+     */
+    public record Screen(int minX, int minY, int maxX, int maxY, boolean mouseOnScreen, Integer mouseX, Integer mouseY) {
+        static Screen of(ScreenInfoResult info) {
+            if (info.getScreenMin() == null || info.getScreenMax() == null) {
+                return null;
+            }
+            Location mouse = info.getMousePosition();
+            return new Screen(info.getScreenMin().getX(), info.getScreenMin().getY(),
+                    info.getScreenMax().getX(), info.getScreenMax().getY(), info.isIsMouseOnScreen(),
+                    mouse != null ? mouse.getX() : null, mouse != null ? mouse.getY() : null);
+        }
+
+        ScreenInfoResult toScreenInfo() {
+            return new ScreenInfoResult(new Location(minX, minY), new Location(maxX, maxY), mouseOnScreen,
+                    mouseX != null ? new Location(mouseX, mouseY) : null);
+        }
+
+        boolean contains(int x, int y) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY;
+        }
+    }
+
+    /**
+     * 生产队列，对应 {@link ProductionQueue}
+     */
+    public record Queue(String queueType, List<Item> items, boolean hasReadyItem) {
+        static Queue of(ProductionQueue queue) {
+            List<Item> items = new ArrayList<>();
+            if (queue.getItems() != null) {
+                for (ProductionItem item : queue.getItems()) {
+                    items.add(Item.of(item));
+                }
+            }
+            return new Queue(queue.getQueueType(), Collections.unmodifiableList(items), queue.isHasReadyItem());
+        }
+
+        /**
+         * @return 新的 ProductionQueue 副本，调用方修改它不会影响快照
+         */
+        public ProductionQueue toProductionQueue() {
+            List<ProductionItem> copies = new ArrayList<>(items.size());
+            for (Item item : items) {
+                copies.add(item.toProductionItem());
+            }
+            return new ProductionQueue(queueType, copies, hasReadyItem);
+        }
+    }
+
+    /**
+     * 生产队列中的项目，对应 {@link ProductionItem}
+     */
+    public record Item(String name, String chineseName, String status, int progressPercent, int remainingTime,
+                       int totalTime, int ownerActorId, boolean done) {
+        static Item of(ProductionItem item) {
+            return new Item(item.getName(), item.getChineseName(), item.getStatus(), item.getProgressPercent(),
+                    item.getRemainingTime(), item.getTotalTime(), item.getOwnerActorId(), item.isDone());
+        }
+
+        ProductionItem toProductionItem() {
+            return new ProductionItem(name, chineseName, status, progressPercent, remainingTime, totalTime,
+                    ownerActorId, done);
+        }
+    }
+
+    /**
+     * 由上一份快照和本次采样结果生成新快照
+     *
+     * @param previous 上一份快照，第一次采样时为 null
+     */
+    public static WorldSnapshot next(WorldSnapshot previous, long sampledAt, List<Actor> actors,
+                                     PlayerBaseInfo baseInfo, ScreenInfoResult screen,
+                                     Map<String, ProductionQueue> queues) {
+        List<ActorState> states = new ArrayList<>(actors.size());
+        Map<Integer, ActorState> byId = new HashMap<>();
+        boolean unchanged = previous != null && previous.actors.size() == actors.size();
+        for (Actor actor : actors) {
+            ActorState state = ActorState.of(actor);
+            ActorState old = previous != null ? previous.actorsById.get(state.actorId()) : null;
+            if (state.equals(old)) {
+                state = old;
+            }
+            unchanged = unchanged && previous.actors.get(states.size()) == state;
+            states.add(state);
+            byId.put(state.actorId(), state);
+        }
+
+        Map<String, List<Integer>> typeIndex = previous != null && unchanged ? previous.typeIndex : indexTypes(states);
+        Economy economy = Economy.of(baseInfo);
+        Screen view = screen != null ? Screen.of(screen) : null;
+        Map<String, Queue> queueCopy = new LinkedHashMap<>();
+        queues.forEach((queueType, queue) -> {
+            Queue state = Queue.of(queue);
+            Queue old = previous != null ? previous.queues.get(queueType) : null;
+            queueCopy.put(queueType, state.equals(old) ? old : state);
+        });
+        if (previous == null) {
+            return new WorldSnapshot(1, sampledAt, Collections.unmodifiableList(states),
+                    Collections.unmodifiableMap(byId), typeIndex, economy, view, Collections.unmodifiableMap(queueCopy));
+        }
+        return new WorldSnapshot(previous.version + 1, sampledAt,
+                unchanged ? previous.actors : Collections.unmodifiableList(states),
+                unchanged ? previous.actorsById : Collections.unmodifiableMap(byId),
+                typeIndex,
+                economy.equals(previous.economy) ? previous.economy : economy,
+                Objects.equals(view, previous.screen) ? previous.screen : view,
+                queueCopy.equals(previous.queues) ? previous.queues : Collections.unmodifiableMap(queueCopy));
+    }
+
+    private static Map<String, List<Integer>> indexTypes(List<ActorState> actors) {
+        Map<String, List<Integer>> index = new HashMap<>();
+        for (int i = 0; i < actors.size(); i++) {
+            index.computeIfAbsent(actors.get(i).type(), key -> new ArrayList<>()).add(i);
+        }
+        index.replaceAll((type, positions) -> Collections.unmodifiableList(positions));
+        return Collections.unmodifiableMap(index);
+    }
+
+    public long ageMillis() {
+        return System.currentTimeMillis() - sampledAt;
+    }
+
+    public ActorState actor(int actorId) {
+        return actorsById.get(actorId);
+    }
+
+    /**
+     * @return 玩家资源的副本
+     */
+    public PlayerBaseInfo toBaseInfo() {
+        return economy.toBaseInfo();
+    }
+
+    /**
+     * @return 屏幕信息的副本，采样时游戏未返回屏幕范围时为 null
+     */
+    public ScreenInfoResult toScreenInfo() {
+        return screen != null ? screen.toScreenInfo() : null;
+    }
+
+    /**
+     * @return 生产队列的副本，队列类型 -> 队列
+     */
+    public Map<String, ProductionQueue> toProductionQueues() {
+        Map<String, ProductionQueue> result = new LinkedHashMap<>();
+        queues.forEach((queueType, queue) -> result.put(queueType, queue.toProductionQueue()));
+        return result;
+    }
+
+    /**
+     * 按具体单位类型、阵营和范围过滤单位，语义与游戏的 query_actor 一致；单位类别和约束条件见 {@link SelectorCompiler}
+     *
+     * @param types   单位类型，为空时不限
+     * @param faction 阵营：任意、己方(自己)、敌方、中立
+     * @param range   all 或 screen
+     */
+    public List<ActorState> select(Collection<String> types, String faction, String range) {
+        Set<String> wanted = types == null || types.isEmpty() ? null : new HashSet<>(types);
+        return new ActorSelector(wanted, Collections.emptySet(), null, faction, "screen".equals(range), Integer.MAX_VALUE)
+                .select(this);
+    }
+
+    /**
+     * @return 单位的 Actor 副本，供整形和序列化使用
+     */
+    public static List<Actor> toActors(List<ActorState> states) {
+        List<Actor> actors = new ArrayList<>(states.size());
+        for (ActorState state : states) {
+            actors.add(state.toActor());
+        }
+        return actors;
+    }
+}
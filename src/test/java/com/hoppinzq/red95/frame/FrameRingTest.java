@@ -0,0 +1,98 @@
+package com.hoppinzq.red95.frame;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 消费者用 create、生产者用 attach 各自映射同一个文件，和游戏与 MCP 服务的用法一致
+ */
+class FrameRingTest {
+    private static final int CAPACITY = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void wrapsAroundTheDataArea() throws Exception {
+        Path path = directory.resolve("ring");
+        try (FrameRing consumer = FrameRing.create(path, CAPACITY); FrameRing producer = FrameRing.attach(path)) {
+            assertEquals(CAPACITY, producer.getCapacity());
+            // 每帧 16+197 字节对齐到 216，数据区放不下整数个帧，尾部会写入回绕标记
+            for (int seq = 0; seq < 50; seq++) {
+                assertTrue(producer.offer(seq % 3, seq, payload(seq, 197)), "第" + seq + "帧写入失败");
+                FrameRing.Frame frame = consumer.poll();
+                assertNotNull(frame);
+                assertEquals(seq % 3, frame.type());
+                assertEquals(seq, frame.seq());
+                assertEquals(payload(seq, 197), frame.payload());
+                consumer.release(frame);
+                assertNull(consumer.poll());
+            }
+        }
+    }
+
+    @Test
+    void keepsFramesInOrderAcrossTheWrap() throws Exception {
+        Path path = directory.resolve("ring");
+        try (FrameRing consumer = FrameRing.create(path, CAPACITY); FrameRing producer = FrameRing.attach(path)) {
+            long next = 0;
+            for (int seq = 0; seq < 40; seq++) {
+                // 两帧在途：前一帧未释放时写入下一帧，回绕发生在两帧之间
+                assertTrue(producer.offer(1, seq, payload(seq, 300)));
+                if (seq == 0) {
+                    continue;
+                }
+                FrameRing.Frame frame = consumer.poll();
+                assertEquals(next, frame.seq());
+                assertEquals(payload((int) next, 300), frame.payload());
+                consumer.release(frame);
+                next++;
+            }
+        }
+    }
+
+    @Test
+    void rejectsFramesThatDoNotFit() throws Exception {
+        Path path = directory.resolve("ring");
+        try (FrameRing consumer = FrameRing.create(path, CAPACITY); FrameRing producer = FrameRing.attach(path)) {
+            assertFalse(producer.offer(1, 0, payload(0, CAPACITY / 2)));
+
+            assertTrue(producer.offer(1, 1, payload(1, 400)));
+            assertTrue(producer.offer(1, 2, payload(2, 400)));
+            assertFalse(producer.offer(1, 3, payload(3, 400)));  // 未释放的帧占着空间
+
+            consumer.release(consumer.poll());
+            assertTrue(producer.offer(1, 3, payload(3, 400)));
+            FrameRing.Frame frame = consumer.poll();
+            assertEquals(2, frame.seq());
+            consumer.release(frame);
+            assertEquals(3, consumer.poll().seq());
+        }
+    }
+
+    @Test
+    void refusesExistingFile() throws Exception {
+        Path path = Files.createFile(directory.resolve("ring"));
+        assertThrows(FileAlreadyExistsException.class, () -> FrameRing.create(path, CAPACITY));
+    }
+
+    @Test
+    void rejectsCapacityThatIsNotPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> FrameRing.create(directory.resolve("ring"), 3000));
+    }
+
+    private static ByteBuffer payload(int seed, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (int i = 0; i < length; i++) {
+            buffer.put(i, (byte) (seed * 31 + i));
+        }
+        return buffer;
+    }
+}
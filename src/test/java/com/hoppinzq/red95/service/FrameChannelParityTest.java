@@ -0,0 +1,77 @@
+package com.hoppinzq.red95.service;
+
+import com.hoppinzq.red95.config.Red95Properties;
+import com.hoppinzq.red95.metrics.GameMetrics;
+import com.hoppinzq.red95.model.Actor;
+import com.hoppinzq.red95.model.MapQueryResult;
+import com.hoppinzq.red95.model.TargetsQueryParam;
+import com.hoppinzq.red95.simulator.GameSimulator;
+import com.hoppinzq.red95.simulator.SimulatorConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 同一个模拟器世界分别经由帧通道和 JSON 查询，结果必须一致
+ */
+class FrameChannelParityTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void framesMatchJson() throws Exception {
+        SimulatorConfig config = new SimulatorConfig();
+        config.setMapSize(96);
+        config.setActorCount(200);
+        try (GameSimulator simulator = new GameSimulator(config).start()) {
+            GameSocketAPI json = connect(simulator, false);
+            GameSocketAPI framed = connect(simulator, true);
+            try {
+                TargetsQueryParam query = TargetsQueryParam.builder()
+                        .type(Collections.emptyList())
+                        .faction("任意")
+                        .range("all")
+                        .build();
+
+                MapQueryResult expectedMap = json.mapQuery();
+                MapQueryResult map = framed.mapQuery();
+                List<Actor> expectedActors = json.queryActor(query);
+                List<Actor> actors = framed.queryActor(query);
+
+                assertEquals(1, countFiles(), "帧通道没有打开，查询走的是 JSON");
+                assertEquals(expectedMap, map);
+                assertFalse(expectedActors.isEmpty());
+                assertEquals(expectedActors, actors);
+            } finally {
+                json.close();
+                framed.close();
+            }
+            assertEquals(0, countFiles(), "关闭后映射文件没有删除");
+        }
+    }
+
+    private GameSocketAPI connect(GameSimulator simulator, boolean frames) {
+        Red95Properties properties = new Red95Properties();
+        properties.getQueryCache().setEnabled(false);
+        properties.getFrames().setEnabled(frames);
+        properties.getFrames().setDirectory(directory.toString());
+        GameSocketAPI api = new GameSocketAPI("127.0.0.1", simulator.getPort(), null, "zh",
+                new GameMetrics(new SimpleMeterRegistry(), "test"), properties);
+        api.init();
+        return api;
+    }
+
+    private long countFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
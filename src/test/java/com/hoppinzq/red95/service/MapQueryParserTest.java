@@ -0,0 +1,156 @@
+package com.hoppinzq.red95.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hoppinzq.red95.model.MapLayerArena;
+import com.hoppinzq.red95.model.MapLayerConfig;
+import com.hoppinzq.red95.model.MapLayers;
+import com.hoppinzq.red95.model.MapQueryResult;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式解析与 Jackson 整体反序列化的结果逐格对比
+ */
+class MapQueryParserTest {
+    private static final String[] TERRAINS = {"Clear", "Water", "Rock", "矿石"};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MapQueryParser parser = new MapQueryParser(objectMapper);
+
+    @Test
+    void parsesLayersWithDimensionsBeforeGrid() throws Exception {
+        assertMatchesTreeParse(randomMap(7, 5, true), null);
+    }
+
+    @Test
+    void parsesLayersWithDimensionsAfterGrid() throws Exception {
+        assertMatchesTreeParse(randomMap(7, 5, false), null);
+    }
+
+    @Test
+    void parsesLargeMapOffHeap() throws Exception {
+        MapLayerConfig config = new MapLayerConfig();
+        config.setOffHeap(true);
+        config.setMinCells(1024);
+        // 超过并行解析的阈值，各图层在 ForkJoin 公共池上解析
+        MapLayers layers = assertMatchesTreeParse(randomMap(300, 260, true), new MapLayerArena(config));
+        assertTrue(layers.isOffHeap());
+    }
+
+    @Test
+    void parsesEmptyMap() throws Exception {
+        assertMatchesTreeParse(randomMap(0, 0, true), null);
+    }
+
+    @Test
+    void sizesGridFromFirstLayerWhenDimensionsDiffer() throws Exception {
+        Map<String, Object> data = parse("{\"data\":{\"MapWidth\":5,\"MapHeight\":9,"
+                + "\"Height\":[[1,2],[3,4]],\"Terrain\":[[\"a\",null],[\"b\",\"a\"]]}}");
+        MapQueryResult result = ((MapLayers) data.get(MapQueryParser.LAYERS)).toResult(5, 9);
+
+        assertEquals(5, result.getMapWidth());
+        assertEquals(9, result.getMapHeight());
+        assertEquals(List.of(List.of(1, 2), List.of(3, 4)), result.getHeight());
+        assertEquals(List.of(Arrays.asList("a", null), List.of("b", "a")), result.getTerrain());
+    }
+
+    @Test
+    void rejectsRaggedLayer() {
+        assertThrows(JsonParseException.class, () -> parse("{\"data\":{\"Height\":[[1,2],[3]]}}"));
+        assertThrows(JsonParseException.class,
+                () -> parse("{\"data\":{\"Height\":[[1,2],[3,4]],\"Resources\":[[1,2],[3]]}}"));
+    }
+
+    @Test
+    void rejectsLayersOfDifferentShape() {
+        assertThrows(JsonParseException.class,
+                () -> parse("{\"data\":{\"Height\":[[1,2]],\"Resources\":[[1],[2]]}}"));
+        assertThrows(JsonParseException.class,
+                () -> parse("{\"data\":{\"Height\":[[1,2],[3,4]],\"Resources\":[[1,2,3],[4,5,6]]}}"));
+    }
+
+    @Test
+    void keepsOtherFields() throws Exception {
+        Map<String, Object> response = parser.parse(
+                "{\"requestId\":\"a\",\"status\":1,\"data\":{\"frame\":7}}".getBytes(StandardCharsets.UTF_8), null);
+        assertEquals("a", response.get("requestId"));
+        assertEquals(Map.of("frame", 7), response.get("data"));
+
+        Map<String, Object> error = parser.parse(
+                "{\"status\":-1,\"error\":{\"code\":\"X\",\"message\":\"m\"}}".getBytes(StandardCharsets.UTF_8), null);
+        assertEquals(-1, error.get("status"));
+        assertEquals(Map.of("code", "X", "message", "m"), error.get("error"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private MapLayers assertMatchesTreeParse(byte[] body, MapLayerArena arena) throws Exception {
+        Map<String, Object> expected = (Map<String, Object>) objectMapper.readValue(body, Map.class).get("data");
+        Map<String, Object> data = (Map<String, Object>) parser.parse(body, arena).get("data");
+        MapLayers layers = (MapLayers) data.get(MapQueryParser.LAYERS);
+        MapQueryResult result = layers.toResult((Integer) data.get("MapWidth"), (Integer) data.get("MapHeight"));
+
+        assertEquals(expected.get("MapWidth"), result.getMapWidth());
+        assertEquals(expected.get("MapHeight"), result.getMapHeight());
+        assertEquals(expected.get("Height"), result.getHeight());
+        assertEquals(expected.get("IsVisible"), result.getIsVisible());
+        assertEquals(expected.get("IsExplored"), result.getIsExplored());
+        assertEquals(expected.get("Terrain"), result.getTerrain());
+        assertEquals(expected.get("ResourcesType"), result.getResourcesType());
+        assertEquals(expected.get("Resources"), result.getResources());
+        return layers;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> parse(String json) throws Exception {
+        return (Map<String, Object>) parser.parse(json.getBytes(StandardCharsets.UTF_8), null).get("data");
+    }
+
+    private byte[] randomMap(int width, int height, boolean dimensionsFirst) throws Exception {
+        Random random = new Random(width * 31L + height);
+        int[][] heights = new int[width][height];
+        boolean[][] visible = new boolean[width][height];
+        boolean[][] explored = new boolean[width][height];
+        String[][] terrain = new String[width][height];
+        String[][] resourcesType = new String[width][height];
+        int[][] resources = new int[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                heights[x][y] = random.nextInt(10);
+                visible[x][y] = random.nextBoolean();
+                explored[x][y] = visible[x][y] || random.nextBoolean();
+                terrain[x][y] = TERRAINS[random.nextInt(TERRAINS.length)];
+                resourcesType[x][y] = random.nextInt(5) == 0 ? "Ore" : null;
+                resources[x][y] = random.nextInt(1000);
+            }
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        if (dimensionsFirst) {
+            data.put("MapWidth", width);
+            data.put("MapHeight", height);
+        }
+        data.put("Height", heights);
+        data.put("IsVisible", visible);
+        data.put("IsExplored", explored);
+        data.put("Terrain", terrain);
+        data.put("ResourcesType", resourcesType);
+        data.put("Resources", resources);
+        if (!dimensionsFirst) {
+            data.put("MapWidth", width);
+            data.put("MapHeight", height);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("requestId", "r1");
+        response.put("status", 1);
+        response.put("data", data);
+        return objectMapper.writeValueAsBytes(response);
+    }
+}